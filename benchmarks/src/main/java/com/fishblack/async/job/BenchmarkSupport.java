@@ -0,0 +1,36 @@
+package com.fishblack.async.job;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared pieces of the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    /**
+     * A callback doing nothing.
+     */
+    static final JobCallback<Job> NO_OP_CALLBACK = new JobCallback<Job>() {
+        @Override
+        public void onSucceeded(JobManager jobManager, Job job, JobResult result) {}
+
+        @Override
+        public void onCancelled(JobManager jobManager, Job job) {}
+
+        @Override
+        public void onFailed(JobManager jobManager, Job job, JobResult result) {}
+
+        @Override
+        public void onException(JobManager jobManager, Job job, Throwable cause) {}
+    };
+
+    private BenchmarkSupport() {}
+
+    /**
+     * Silence the job framework, so the benchmarks do not measure logging.
+     */
+    static void silenceLogging() {
+        Logger.getLogger("com.fishblack.async.job").setLevel(Level.OFF);
+    }
+}
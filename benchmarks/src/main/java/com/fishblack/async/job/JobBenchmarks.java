@@ -0,0 +1,47 @@
+package com.fishblack.async.job;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Run the benchmarks with the GC profiler, writing JSON results to compare between builds.
+ * The contended benchmarks are run at 1 to 64 threads.
+ * Usage: java -jar benchmarks.jar [benchmark class simple names...]
+ */
+public class JobBenchmarks {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static final List<Class<?>> BENCHMARKS = Arrays.<Class<?>>asList(SubmitJobBenchmark.class,
+            JobSubmitTaskBenchmark.class, JobLookupBenchmark.class, RunningJobRegistryBenchmark.class,
+            QueueContentionBenchmark.class);
+
+    private static final List<Class<?>> THREAD_SWEPT = Arrays.<Class<?>>asList(SubmitJobBenchmark.class,
+            QueueContentionBenchmark.class);
+
+    public static void main(String[] args) throws RunnerException {
+        List<String> selected = Arrays.asList(args);
+        for (Class<?> benchmark : BENCHMARKS) {
+            if (!selected.isEmpty() && !selected.contains(benchmark.getSimpleName())) {
+                continue;
+            }
+            int[] threadCounts = THREAD_SWEPT.contains(benchmark) ? THREAD_COUNTS : new int[] {1};
+            for (int threads : threadCounts) {
+                ChainedOptionsBuilder options = new OptionsBuilder()
+                        .include(benchmark.getName() + "\\.")
+                        .threads(threads)
+                        .addProfiler(GCProfiler.class)
+                        .resultFormat(ResultFormatType.JSON)
+                        .result("jmh-" + benchmark.getSimpleName() + "-t" + threads + ".json");
+                new Runner(options.build()).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run the job claiming of several nodes against the memory provider and an embedded H2 database, and check that
+ * every claimable job is claimed exactly once and that no two jobs of an object run at once.
+ * Every node claims as many jobs as a random count of idle threads, runs them for a few microseconds and claims again,
+ * until all the claimable jobs are claimed or a minute passed.
+ * One object in four gets a second job, of which only the newer one is claimable.
+ * Usage: java -cp benchmarks.jar com.fishblack.async.job.JobClaimReport [job count] [node count]
+ */
+public class JobClaimReport {
+
+    private static final int MAX_IDLE_THREADS = 16;
+    private static final long LEASE_DURATION = 60 * 1000;
+    private static final long MAX_DURATION = TimeUnit.MINUTES.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.silenceLogging();
+        int jobCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int nodeCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        report("memory", new MemJobDataProvider(), jobCount, nodeCount);
+        try (DBJobDataProvider provider = new DBJobDataProvider("jdbc:h2:mem:claims;DB_CLOSE_DELAY=-1", "sa", "",
+                nodeCount)) {
+            provider.createSchema();
+            report("h2", provider, jobCount, nodeCount);
+        }
+    }
+
+    private static void report(String name, JobDataProvider provider, int jobCount, int nodeCount) throws Exception {
+        List<Job> jobs = new ArrayList<>(jobCount);
+        Set<JobKey> objects = new HashSet<>();
+        for (int i = 0; i < jobCount; i++) {
+            int object = i % 4 == 3 ? i - 3 : i;
+            Job job = new Job("stripe" + (object % 8), "schema.object" + object, "DATASET", Job.JobType.NOOP);
+            jobs.add(job);
+            objects.add(JobKey.of(job));
+        }
+        provider.createJobs(jobs);
+
+        Map<String, String> claims = new ConcurrentHashMap<>();
+        Set<JobKey> runningObjects = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicateClaims = new AtomicInteger();
+        AtomicInteger overlappingRuns = new AtomicInteger();
+        ExecutorService nodes = Executors.newFixedThreadPool(nodeCount);
+        List<Future<Integer>> claimed = new ArrayList<>();
+        long startTime = System.nanoTime();
+        int expected = objects.size();
+        for (int n = 0; n < nodeCount; n++) {
+            String nodeId = "node" + n;
+            claimed.add(nodes.submit(() -> {
+                int count = 0;
+                while (claims.size() < expected && System.nanoTime() - startTime < MAX_DURATION) {
+                    int capacity = ThreadLocalRandom.current().nextInt(1, MAX_IDLE_THREADS + 1);
+                    List<Job> batch = provider.claimJobs(nodeId, new Timestamp(System.currentTimeMillis() + LEASE_DURATION),
+                            EnumSet.of(Job.JobType.NOOP), capacity);
+                    for (Job job : batch) {
+                        if (claims.putIfAbsent(job.getJobId(), nodeId) != null) {
+                            duplicateClaims.incrementAndGet();
+                        }
+                        if (!runningObjects.add(JobKey.of(job))) {
+                            overlappingRuns.incrementAndGet();
+                        }
+                    }
+                    TimeUnit.MICROSECONDS.sleep(50);
+                    for (Job job : batch) {
+                        runningObjects.remove(JobKey.of(job));
+                        run(provider, job);
+                    }
+                    count += batch.size();
+                }
+                return count;
+            }));
+        }
+        int total = 0;
+        StringBuilder distribution = new StringBuilder();
+        for (Future<Integer> count : claimed) {
+            total += count.get();
+            distribution.append(' ').append(count.get());
+        }
+        long elapsed = System.nanoTime() - startTime;
+        nodes.shutdown();
+
+        System.out.printf("%s provider, %d jobs of %d objects, %d nodes%n", name, jobCount, objects.size(), nodeCount);
+        System.out.printf("  claimed: %d, expected: %d, per node:%s%n", total, expected, distribution);
+        System.out.printf("  duplicate claims: %d, overlapping runs of an object: %d%n", duplicateClaims.get(),
+                overlappingRuns.get());
+        System.out.printf("  %.0f claims/s%n", total * 1e9 / elapsed);
+    }
+
+    private static void run(JobDataProvider provider, Job job) throws JobException {
+        if (provider.updateJobStatus(job, Job.Status.SUCCEEDED) != 1) {
+            throw new IllegalStateException("Claimed job " + job.getJobId() + " could not be finished");
+        }
+    }
+}
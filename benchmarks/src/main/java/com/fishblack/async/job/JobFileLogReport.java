@@ -0,0 +1,95 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.file.FileJobDataProvider;
+import com.fishblack.async.job.file.FileSyncPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measure the status updates per second of the file job data provider with every sync policy, and the time taken
+ * to load the jobs again from the log.
+ * Every thread updates the statuses of its own jobs in turns, as the job manager does while running them.
+ * Usage: java -cp benchmarks.jar com.fishblack.async.job.JobFileLogReport [directory] [thread count] [seconds]
+ */
+public class JobFileLogReport {
+
+    private static final int JOBS_PER_THREAD = 1000;
+    private static final Job.Status[] STATUSES = {Job.Status.RUNNING, Job.Status.SUCCEEDED, Job.Status.NOT_STARTED};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkSupport.silenceLogging();
+        Path parent = args.length > 0 ? Files.createDirectories(java.nio.file.Paths.get(args[0])) : null;
+        int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        for (FileSyncPolicy policy : FileSyncPolicy.values()) {
+            Path directory = parent == null ? Files.createTempDirectory("jobs") : Files.createTempDirectory(parent, "jobs");
+            try {
+                report(directory, policy, threadCount, seconds);
+            }
+            finally {
+                delete(directory);
+            }
+        }
+    }
+
+    private static void report(Path directory, FileSyncPolicy policy, int threadCount, int seconds) throws Exception {
+        long updates;
+        long elapsed;
+        try (FileJobDataProvider provider = new FileJobDataProvider(directory, policy)) {
+            List<List<Job>> jobs = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                List<Job> threadJobs = new ArrayList<>();
+                for (int i = 0; i < JOBS_PER_THREAD; i++) {
+                    threadJobs.add(new Job("stripe" + t, "schema.object" + i, "DATASET", Job.JobType.NOOP));
+                }
+                jobs.add(provider.createJobs(threadJobs));
+            }
+            ExecutorService threads = Executors.newFixedThreadPool(threadCount);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            long startTime = System.nanoTime();
+            List<Future<Long>> counts = new ArrayList<>();
+            for (List<Job> threadJobs : jobs) {
+                counts.add(threads.submit(() -> {
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        Job job = threadJobs.get((int) (count % JOBS_PER_THREAD));
+                        Job.Status status = STATUSES[(int) (count / JOBS_PER_THREAD % STATUSES.length)];
+                        if (provider.updateJobStatus(job, status) != 1) {
+                            throw new IllegalStateException("Job " + job.getJobId() + " could not be updated");
+                        }
+                        count++;
+                    }
+                    return count;
+                }));
+            }
+            updates = 0;
+            for (Future<Long> count : counts) {
+                updates += count.get();
+            }
+            elapsed = System.nanoTime() - startTime;
+            threads.shutdown();
+        }
+        long loadStart = System.nanoTime();
+        try (FileJobDataProvider provider = new FileJobDataProvider(directory, policy)) {
+            long loadTime = System.nanoTime() - loadStart;
+            System.out.printf("%s, %d threads: %.0f status updates/s, %d updates loaded again in %d ms%n", policy,
+                    threadCount, updates * 1e9 / elapsed, updates, TimeUnit.NANOSECONDS.toMillis(loadTime));
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
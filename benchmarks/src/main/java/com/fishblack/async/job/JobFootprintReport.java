@@ -0,0 +1,54 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Report the retained heap per job of the memory provider, against the former store of {@link Job} copies
+ * by job id with the index of the latest jobs.
+ * The jobs have 16 stripes, 4 object types and 64 namespaces, and ran to their end, so all their times are set.
+ * Usage: java -cp benchmarks.jar com.fishblack.async.job.JobFootprintReport [job count]
+ */
+public class JobFootprintReport {
+
+    private static final String[] OBJECT_TYPES = {"DATASET", "DATAFLOW", "MODEL", "WORKBOOK"};
+
+    public static void main(String[] args) throws JobException {
+        BenchmarkSupport.silenceLogging();
+        int jobCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        MemJobDataProvider provider = new MemJobDataProvider();
+        Map<String, Job> formerJobs = new ConcurrentHashMap<>();
+        Map<JobKey, String> formerLatestJobIds = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < jobCount; i++) {
+            //new strings for every job, as when the jobs come from requests
+            Job job = new Job("stripe" + (i % 16), "schema.object" + i, OBJECT_TYPES[i % OBJECT_TYPES.length],
+                    Job.JobType.NOOP);
+            job.setNameSpace("namespace" + (i % 64));
+            job.setObjectName("object" + i);
+            provider.createJob(job);
+            provider.updateJobStatus(job, Job.Status.RUNNING);
+            provider.updateJobStatus(job, Job.Status.SUCCEEDED);
+
+            Job former = new Job(job);
+            former.setRequestTime(new Timestamp(now));
+            former.setStartTime(new Timestamp(now));
+            former.setLastPingTime(new Timestamp(now));
+            former.setEndTime(new Timestamp(now));
+            former.setStatus(Job.Status.SUCCEEDED);
+            formerJobs.put(former.getJobId(), former);
+            formerLatestJobIds.put(JobKey.of(former), former.getJobId());
+        }
+        long formerSize = GraphLayout.parseInstance(formerJobs, formerLatestJobIds).totalSize();
+        long compactSize = GraphLayout.parseInstance(provider).totalSize();
+        System.out.printf("jobs: %d%n", jobCount);
+        System.out.printf("former store:  %,d bytes, %d bytes per job%n", formerSize, formerSize / jobCount);
+        System.out.printf("compact store: %,d bytes, %d bytes per job%n", compactSize, compactSize / jobCount);
+        System.out.printf("reduction: %.1f%%%n", 100.0 * (formerSize - compactSize) / formerSize);
+    }
+}
@@ -0,0 +1,64 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The object lookups done by every job submission, on the memory provider holding many jobs.
+ * One object in ten has a running job. The largest store needs a heap of several gigabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class JobLookupBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int jobCount;
+
+    private MemJobDataProvider provider;
+    private String[] twopartNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JobException {
+        BenchmarkSupport.silenceLogging();
+        provider = new MemJobDataProvider();
+        twopartNames = new String[jobCount];
+        for (int i = 0; i < jobCount; i++) {
+            twopartNames[i] = "schema.object" + i;
+            Job job = provider.createJob(new Job("stripe" + (i % 16), twopartNames[i], "DATASET", Job.JobType.NOOP));
+            if (i % 10 == 0) {
+                provider.updateJobStatus(job, Job.Status.RUNNING);
+            }
+        }
+    }
+
+    @Benchmark
+    public Job getLatestJob() throws JobException {
+        int i = ThreadLocalRandom.current().nextInt(jobCount);
+        return provider.getLatestJob("stripe" + (i % 16), twopartNames[i], "DATASET", Job.JobType.NOOP);
+    }
+
+    @Benchmark
+    public Job getRunningJob() throws JobException {
+        int i = ThreadLocalRandom.current().nextInt(jobCount);
+        return provider.getRunningJob("stripe" + (i % 16), twopartNames[i], "DATASET", Job.JobType.NOOP);
+    }
+}
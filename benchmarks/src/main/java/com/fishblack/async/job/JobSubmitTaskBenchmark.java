@@ -0,0 +1,68 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of dispatching a {@link JobSubmitTask}, without running any processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JobSubmitTaskBenchmark {
+
+    private JobManager jobManager;
+    private Job supersededJob;
+    private JobFairShareQueue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JobException {
+        BenchmarkSupport.silenceLogging();
+        MemJobDataProvider provider = new MemJobDataProvider();
+        jobManager = JobManager.getInstance(new JobManagerConfig(1, 1, 16), provider);
+        supersededJob = provider.createJob(new Job("benchmark", "object", "DATASET", Job.JobType.NOOP));
+        provider.createJob(new Job("benchmark", "object", "DATASET", Job.JobType.NOOP));
+        queue = new JobFairShareQueue(null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jobManager.stop();
+    }
+
+    /**
+     * A task of a job superseded by a newer job of its object: the latest and running job lookups, then nothing.
+     */
+    @Benchmark
+    public JobSubmitTask dispatchSuperseded() {
+        JobSubmitTask task = new JobSubmitTask(jobManager, supersededJob, BenchmarkSupport.NO_OP_CALLBACK);
+        task.run();
+        return task;
+    }
+
+    /**
+     * A task going through the executor queue.
+     */
+    @Benchmark
+    public Runnable enqueueAndTake() {
+        queue.offer(new JobSubmitTask(jobManager, supersededJob, BenchmarkSupport.NO_OP_CALLBACK));
+        return queue.poll();
+    }
+}
@@ -0,0 +1,75 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention on the executor queue, each thread putting a task in and taking one out, for a mix of priorities
+ * with and without fair sharing across stripes. The thread count is swept by {@link JobBenchmarks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueContentionBenchmark {
+
+    private static final int STRIPE_COUNT = 8;
+
+    /**
+     * SINGLE for one priority, MIXED for the three priorities at random.
+     */
+    @Param({"SINGLE", "MIXED"})
+    private String priorityMix;
+
+    @Param({"false", "true"})
+    private boolean fairShare;
+
+    private JobManager jobManager;
+    private JobFairShareQueue queue;
+    private Job[][] jobs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.silenceLogging();
+        jobManager = JobManager.getInstance(new JobManagerConfig(1, 1, 16), new MemJobDataProvider());
+        queue = new JobFairShareQueue(fairShare ? new JobFairSharePolicy() : null);
+        JobPriority[] priorities = JobPriority.values();
+        jobs = new Job[STRIPE_COUNT][priorities.length];
+        for (int s = 0; s < STRIPE_COUNT; s++) {
+            for (int p = 0; p < priorities.length; p++) {
+                jobs[s][p] = new Job("stripe" + s, "object", "DATASET", Job.JobType.NOOP, priorities[p]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jobManager.stop();
+    }
+
+    @Benchmark
+    public Runnable offerPoll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Job[] stripeJobs = jobs[random.nextInt(STRIPE_COUNT)];
+        Job job = "MIXED".equals(priorityMix) ? stripeJobs[random.nextInt(stripeJobs.length)] : stripeJobs[0];
+        queue.offer(new JobSubmitTask(jobManager, job, BenchmarkSupport.NO_OP_CALLBACK));
+        return queue.poll();
+    }
+}
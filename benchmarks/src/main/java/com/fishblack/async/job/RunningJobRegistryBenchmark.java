@@ -0,0 +1,69 @@
+package com.fishblack.async.job;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The running job bookkeeping of every status transition and of stripe cancellation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunningJobRegistryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Registry {
+        final RunningJobRegistry registry = new RunningJobRegistry();
+    }
+
+    @State(Scope.Thread)
+    public static class Jobs {
+        @Param({"1", "64"})
+        int jobsPerStripe;
+
+        Job[] jobs;
+        String stripe;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            stripe = "stripe-" + Thread.currentThread().getId();
+            jobs = new Job[jobsPerStripe];
+            for (int i = 0; i < jobsPerStripe; i++) {
+                jobs[i] = new Job(stripe, "object" + i, "DATASET", Job.JobType.NOOP);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean addRemove(Registry state, Jobs jobs) {
+        Job job = jobs.jobs[jobs.next++ % jobs.jobs.length];
+        state.registry.add(job);
+        return state.registry.remove(job.getJobId());
+    }
+
+    /**
+     * Register all the jobs of a stripe, then drop them the way a stripe cancellation does.
+     */
+    @Benchmark
+    public int cancelStripe(Registry state, Jobs jobs) {
+        for (Job job : jobs.jobs) {
+            state.registry.add(job);
+        }
+        return state.registry.removeAll(state.registry.getJobIds(jobs.stripe));
+    }
+}
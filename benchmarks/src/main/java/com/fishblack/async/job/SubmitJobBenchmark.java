@@ -0,0 +1,69 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.exception.JobRejectedException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of {@link JobManager#submitJob(Job, JobCallback)} on the memory provider.
+ * The jobs are of a type without processor, so the workers finish them at once in error and the queue
+ * stays short: what is measured is the persisting, the admission and the enqueue of the submitting threads.
+ * The submitting thread count is swept by {@link JobBenchmarks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubmitJobBenchmark {
+
+    private static final AtomicLong OBJECT_SEQUENCE = new AtomicLong();
+
+    private MemJobDataProvider provider;
+    private JobManager jobManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.silenceLogging();
+        provider = new MemJobDataProvider();
+        jobManager = JobManager.getInstance(new JobManagerConfig(4, 4, 1 << 16), provider);
+    }
+
+    @TearDown(Level.Iteration)
+    public void purgeFinishedJobs() throws JobException {
+        provider.handleLegacyJobs(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jobManager.stop();
+    }
+
+    @Benchmark
+    public boolean submitJob() throws JobException {
+        Job job = new Job("benchmark", "object" + OBJECT_SEQUENCE.incrementAndGet(), "DATASET", Job.JobType.DATA_INSIGHTS);
+        try {
+            jobManager.submitJob(job, BenchmarkSupport.NO_OP_CALLBACK);
+            return true;
+        }
+        catch (JobRejectedException ex) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.fishblack.async.job;
 
 import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.jfr.JobEvents;
+import com.fishblack.async.job.metrics.JobMetrics;
 
 import java.util.logging.Logger;
 
@@ -24,24 +26,80 @@ public abstract class AbstractJobProcessor<T extends Job> implements JobProcesso
      */
     @Override
     public void processJob(T job, JobCallback<T> callback) throws JobException {
-        boolean running = jobManager.updateJobStatus(job, Job.Status.RUNNING);
+        boolean running = jobManager.startJob(job);
         if(!running) {
+            jobManager.completeJob(job, new JobResult(null, JobResult.ResultType.CANCELLED));
             return;
         }
-        JobResult result = executeJob(job);
-        if (result.getResultType().equals(JobResult.ResultType.SUCCEEDED)) {
-            jobManager.updateJobStatus(job, Job.Status.SUCCEEDED);
-            callback.onSucceeded(jobManager, job, result);
+        jobManager.watchJob(job);
+        JobEvents.running(job);
+        JobMetrics metrics = jobManager.getMetrics();
+        try {
+            long startTime = System.nanoTime();
+            JobResult result = executeJob(job);
+            long callbackTime = System.nanoTime();
+            metrics.recordExecution(job, callbackTime - startTime);
+            Object callbackEvent = null;
+            if (result.getResultType().equals(JobResult.ResultType.SUCCEEDED)) {
+                if (!jobManager.updateJobStatus(job, Job.Status.SUCCEEDED)) {
+                    leaseLost(job, callback);
+                    return;
+                }
+                jobManager.completeJob(job, result);
+                callbackTime = System.nanoTime();
+                callbackEvent = JobEvents.beginCallback();
+                callback.onSucceeded(jobManager, job, result);
+            }
+            else if (result.getResultType().equals(JobResult.ResultType.FAILED)){
+                if (jobManager.retryJob(job, callback)) {
+                    return;
+                }
+                if (!jobManager.updateJobStatus(job, Job.Status.FAILED)) {
+                    leaseLost(job, callback);
+                    return;
+                }
+                jobManager.completeJob(job, result);
+                callbackTime = System.nanoTime();
+                callbackEvent = JobEvents.beginCallback();
+                callback.onFailed(jobManager, job, result);
+            }
+            else if (result.getResultType().equals(JobResult.ResultType.CANCELLED)){
+                if (isReclaimed(job)) {
+                    leaseLost(job, callback);
+                    return;
+                }
+                jobManager.completeJob(job, result);
+                callbackTime = System.nanoTime();
+                callbackEvent = JobEvents.beginCallback();
+                callback.onCancelled(jobManager, job);
+            }
+            metrics.recordCallback(job, System.nanoTime() - callbackTime);
+            JobEvents.endCallback(callbackEvent, job, result);
         }
-        else if (result.getResultType().equals(JobResult.ResultType.FAILED)){
-            jobManager.updateJobStatus(job, Job.Status.FAILED);
-            callback.onFailed(jobManager, job, result);
-        }
-        else if (result.getResultType().equals(JobResult.ResultType.CANCELLED)){
-            callback.onCancelled(jobManager, job);
+        finally {
+            jobManager.unwatchJob(job);
         }
     }
 
+    /**
+     * The result of a job could not be saved, because the job was reclaimed after this node lost its lease.
+     */
+    private void leaseLost(T job, JobCallback<T> callback) {
+        JobException ex = new JobException(JobException.DSSJobErrorCode.LEASE_LOST,
+                String.format("Job %s was reclaimed from node %s, its result is dropped", job.getJobId(), jobManager.getNodeId()));
+        logger.warning(ex.getErrorMessage());
+        jobManager.failJob(job, ex);
+        callback.onException(jobManager, job, ex);
+    }
+
+    /**
+     * Tell whether a job given up by its processor was reclaimed by a lease reaper rather than cancelled.
+     */
+    private boolean isReclaimed(T job) throws JobException {
+        Job.Status status = jobManager.getWatchedJobStatus(job);
+        return Job.Status.NOT_STARTED.equals(status) || Job.Status.ERROR.equals(status);
+    }
+
     /**
      * Get job manager
      * @return job manager
@@ -52,12 +110,13 @@ public abstract class AbstractJobProcessor<T extends Job> implements JobProcesso
 
     /**
      * Check the job if it was updated to request for cancel status.
+     * The status is the one last published by the shared cancellation poller, so no provider read is done here.
      * @param job the job to be checked
      * @return boolean value of check result
      * @throws JobException
      */
     public boolean checkForRequestForCancel(T job) throws JobException {
-        if(jobManager.isJobRequestForCancel(job)) {
+        if(Job.Status.REQUEST_FOR_CANCEL.equals(jobManager.getWatchedJobStatus(job))) {
             handleRequestForCancel(job);
             jobManager.updateJobStatus(job, Job.Status.CANCELLED);
             return true;
@@ -66,13 +125,15 @@ public abstract class AbstractJobProcessor<T extends Job> implements JobProcesso
     }
 
     /**
-     * Check the job if it was forced updated to cancelled status, e.g. cancelled by clean task for job expiration.
+     * Check the job if it was forced updated to cancelled status, e.g. cancelled by clean task for job expiration,
+     * or reclaimed by another node after the lease of this node expired.
      * @param job the job to be checked
      * @return boolean value of check result
      * @throws JobException
      */
     public boolean checkForForceCancelled(T job) throws JobException {
-        if(jobManager.isJobCancelled(job)) {
+        Job.Status status = jobManager.getWatchedJobStatus(job);
+        if(Job.Status.CANCELLED.equals(status) || Job.Status.NOT_STARTED.equals(status) || Job.Status.ERROR.equals(status)) {
             handleForceCancelled(job);
             return true;
         }
@@ -2,13 +2,14 @@ package com.fishblack.async.job;
 
 import java.sql.Connection;
 import java.sql.Timestamp;
-import java.util.UUID;
 
 /**
  * Background Job Entity Class.
  */
 public class Job {
-	
+
+	private static volatile JobIdGenerator idGenerator = JobIdGenerator.TIME_ORDERED;
+
 	private String jobId;
 	private String stripe;
 	private String objectType;
@@ -23,6 +24,11 @@ public class Job {
 	private Status status;
 	private JobPriority priority;
 	private Timestamp lastPingTime;
+	private String ownerId;
+	private Timestamp leaseExpiry;
+	private long fencingToken;
+	private int attempt = 1;
+	private Timestamp retryTime;
 
 	public enum JobType {
 		PARQUET_CONVERSION,
@@ -49,7 +55,32 @@ public class Job {
 	}
 
 	public Job(String stripe, String twopartName, String objectType, JobType jobType, JobPriority jobPriority) {
-		this.jobId = UUID.randomUUID().toString();
+		this(idGenerator.nextId(), stripe, twopartName, objectType, jobType, jobPriority);
+	}
+
+	/**
+	 * Set the generator of the ids of the jobs created from now on.
+	 * @param generator the id generator, {@link JobIdGenerator#TIME_ORDERED} by default
+	 */
+	public static void setIdGenerator(JobIdGenerator generator) {
+		idGenerator = generator == null ? JobIdGenerator.TIME_ORDERED : generator;
+	}
+
+	public static JobIdGenerator getIdGenerator() {
+		return idGenerator;
+	}
+
+	/**
+	 * Constructor of a job with a known id, used by job data providers to restore stored jobs.
+	 * @param jobId the job identifier
+	 * @param stripe the stripe
+	 * @param twopartName the two part name of the object
+	 * @param objectType the object type
+	 * @param jobType the job type
+	 * @param jobPriority the job priority
+	 */
+	public Job(String jobId, String stripe, String twopartName, String objectType, JobType jobType, JobPriority jobPriority) {
+		this.jobId = jobId;
 		this.stripe = stripe;
 		this.twopartName = twopartName;
 		this.objectType = objectType;
@@ -58,6 +89,32 @@ public class Job {
 		this.priority = jobPriority;
 	}
 
+	/**
+	 * Copy constructor, used by job data providers to hand out snapshots of stored jobs.
+	 * @param source the job to be copied
+	 */
+	public Job(Job source) {
+		this.jobId = source.jobId;
+		this.stripe = source.stripe;
+		this.objectType = source.objectType;
+		this.objectName = source.objectName;
+		this.nameSpace = source.nameSpace;
+		this.twopartName = source.twopartName;
+		this.requestTime = source.requestTime;
+		this.startTime = source.startTime;
+		this.endTime = source.endTime;
+		this.jobType = source.jobType;
+		this.jobDetail = source.jobDetail;
+		this.status = source.status;
+		this.priority = source.priority;
+		this.lastPingTime = source.lastPingTime;
+		this.ownerId = source.ownerId;
+		this.leaseExpiry = source.leaseExpiry;
+		this.fencingToken = source.fencingToken;
+		this.attempt = source.attempt;
+		this.retryTime = source.retryTime;
+	}
+
 	public String getStripe() {
 		return stripe;
 	}
@@ -174,6 +231,70 @@ public class Job {
 		this.lastPingTime = lastPingTime;
 	}
 
+	/**
+	 * Get the id of the node holding the lease of the job, i.e. the node running it.
+	 * @return the node id, null if the job was never run
+	 */
+	public String getOwnerId() {
+		return ownerId;
+	}
+
+	public void setOwnerId(String ownerId) {
+		this.ownerId = ownerId;
+	}
+
+	/**
+	 * Get the time the lease of the running job expires unless its owner renews it.
+	 * @return the lease expiry, null if the job is not running
+	 */
+	public Timestamp getLeaseExpiry() {
+		return leaseExpiry;
+	}
+
+	public void setLeaseExpiry(Timestamp leaseExpiry) {
+		this.leaseExpiry = leaseExpiry;
+	}
+
+	/**
+	 * Get the fencing token of the job, increased every time the job changes hands, i.e. when it starts running or
+	 * is claimed, when its expired lease is reclaimed, when it is put back for a retry and when it is cancelled by force.
+	 * The other transitions, e.g. a request for cancel or the end of a run by its owner, keep the token.
+	 * A status update carrying an older token is rejected.
+	 * @return the fencing token
+	 */
+	public long getFencingToken() {
+		return fencingToken;
+	}
+
+	public void setFencingToken(long fencingToken) {
+		this.fencingToken = fencingToken;
+	}
+
+	/**
+	 * Get the number of the attempt of the job, 1 for the first run, increased every time the job is retried
+	 * under the retry policy of its type.
+	 * @return the attempt number
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	public void setAttempt(int attempt) {
+		this.attempt = attempt;
+	}
+
+	/**
+	 * Get the time a retried job waits for before it runs again, so no node claims it earlier.
+	 * @return the retry time, null if the job was not retried
+	 */
+	public Timestamp getRetryTime() {
+		return retryTime;
+	}
+
+	public void setRetryTime(Timestamp retryTime) {
+		this.retryTime = retryTime;
+	}
+
 	@Override
 	public int hashCode(){
 		final int PRIME = 31;
@@ -209,6 +330,9 @@ public class Job {
 				.append(", status=").append(status.toString())
 				.append(", jobDetail=").append(jobDetail)
 				.append(", priority=").append(priority.toString())
+				.append(", ownerId=").append(ownerId)
+				.append(", fencingToken=").append(fencingToken)
+				.append(", attempt=").append(attempt)
 				.append("]");
 
 		return buf.toString();
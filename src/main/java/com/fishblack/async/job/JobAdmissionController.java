@@ -0,0 +1,70 @@
+package com.fishblack.async.job;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The admission control of job submissions.
+ * A permit is taken before a job is persisted and given back when its submission task leaves the
+ * executor queue, i.e. when {@link JobSubmitTask#run()} starts, so the count of queued submissions never exceeds
+ * the permit count, and a rejected job never reaches the job data provider.
+ * Only the submissions take a permit: the tasks the job manager enqueues again by itself, i.e. the jobs dispatched
+ * once the running job of their object finished or by their fallback, the delayed and the retried jobs, and the
+ * claimed jobs, are queued outside the bound, so the queue may hold more tasks than the permit count.
+ */
+public class JobAdmissionController {
+
+    private final int maxPermits;
+    private final Semaphore permits;
+
+    /**
+     * Constructor of this class
+     * @param maxPermits max count of jobs admitted and waiting in the queue
+     */
+    public JobAdmissionController(int maxPermits) {
+        this.maxPermits = maxPermits;
+        this.permits = new Semaphore(maxPermits);
+    }
+
+    /**
+     * Take a permit if one is available at once.
+     * @return true if the job is admitted
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Take a permit, waiting up to the timeout for one to be released.
+     * @param timeout the max time to wait
+     * @param unit the time unit of the timeout parameter
+     * @return true if the job is admitted
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        return permits.tryAcquire(timeout, unit);
+    }
+
+    /**
+     * Take a permit, waiting as long as needed.
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+    }
+
+    /**
+     * Give a permit back.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int getMaxPermits() {
+        return maxPermits;
+    }
+}
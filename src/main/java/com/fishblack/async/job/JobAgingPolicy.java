@@ -0,0 +1,55 @@
+package com.fishblack.async.job;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aging policy of queued jobs.
+ * A waiting job is promoted one priority level per promotion interval, so a LOW job waiting longer than
+ * two intervals runs ahead of a HIGH job submitted just now and no priority can starve.
+ *
+ * The promotion is folded into a rank computed once at enqueue time, i.e. enqueue time plus priority
+ * level times interval, so the order of two queued jobs never changes while they wait, which keeps the
+ * heap of the priority queue valid.
+ */
+public class JobAgingPolicy {
+
+    /**
+     * No aging, jobs are ordered by priority and then by submission order.
+     */
+    public static final JobAgingPolicy NONE = new JobAgingPolicy(0, TimeUnit.NANOSECONDS);
+
+    private final long promotionInterval;
+
+    /**
+     * Constructor of this class
+     * @param promotionInterval the waiting time to be promoted by one priority level, 0 for no aging
+     * @param unit the time unit of the promotionInterval parameter
+     */
+    public JobAgingPolicy(long promotionInterval, TimeUnit unit) {
+        if (promotionInterval < 0) {
+            throw new IllegalArgumentException("Promotion interval must not be negative");
+        }
+        this.promotionInterval = unit.toNanos(promotionInterval);
+    }
+
+    public boolean isEnabled() {
+        return promotionInterval > 0;
+    }
+
+    public long getPromotionInterval(TimeUnit unit) {
+        return unit.convert(promotionInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the rank of a job, a job with a lower rank runs first.
+     * @param priority the job priority
+     * @param enqueueTime the {@link System#nanoTime()} when the job was enqueued
+     * @return the rank
+     */
+    long rank(JobPriority priority, long enqueueTime) {
+        if (!isEnabled()) {
+            return priority.value();
+        }
+        return enqueueTime + priority.ordinal() * promotionInterval;
+    }
+}
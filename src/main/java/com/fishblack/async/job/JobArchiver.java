@@ -0,0 +1,19 @@
+package com.fishblack.async.job;
+
+import java.util.List;
+
+/**
+ * Implement this interface to keep the finished jobs the job manager sweeps from the job data provider,
+ * e.g. in a cheaper store, see {@link JobManagerConfig#setArchiver(JobArchiver)}.
+ */
+public interface JobArchiver {
+
+    /**
+     * Archive a batch of finished jobs before they are deleted. A job changed meanwhile, e.g. retried, is not deleted,
+     * so it may be archived again by a later sweep. It is called on the daemon timer of the job manager, so it must be quick.
+     * Providers not supporting the batched sweep, see {@link JobDataProvider#supportsSweeping()}, are swept without it.
+     * @param jobs the jobs to delete
+     * @throws Exception when the jobs could not be archived, which stops the sweep and keeps the jobs until the next one
+     */
+    void archive(List<Job> jobs) throws Exception;
+}
@@ -0,0 +1,181 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.jfr.JobEvents;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.fishblack.async.job.JobConstants.VIRTUAL_THREAD_KEEP_ALIVE_TIME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * An isolated partition of job execution: a thread pool with its own priority queue and its own admission control.
+ * Job types with a bulkhead of their own can not take the threads or the queue room of the other job types.
+ */
+public class JobBulkhead {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final JobAdmissionController admission;
+    private final JobFairShareQueue queue;
+    private final boolean fairShare;
+    private final boolean virtualThreads;
+
+    /**
+     * Constructor of this class
+     * @param name the bulkhead name, also the name prefix of its threads
+     * @param corePoolSize the corePoolSize of the thread pool
+     * @param maxPoolSize the maxPoolSize of the thread pool
+     * @param maxQueueSize max count of queued jobs
+     */
+    public JobBulkhead(String name, int corePoolSize, int maxPoolSize, int maxQueueSize) {
+        this(name, corePoolSize, maxPoolSize, maxQueueSize, null);
+    }
+
+    /**
+     * Constructor of this class
+     * @param name the bulkhead name, also the name prefix of its threads
+     * @param corePoolSize the corePoolSize of the thread pool
+     * @param maxPoolSize the maxPoolSize of the thread pool
+     * @param maxQueueSize max count of queued jobs
+     * @param fairSharePolicy the fair share policy of the stripes, null to queue all the jobs by priority only
+     */
+    public JobBulkhead(String name, int corePoolSize, int maxPoolSize, int maxQueueSize, JobFairSharePolicy fairSharePolicy) {
+        this(name, corePoolSize, maxPoolSize, maxQueueSize, fairSharePolicy, false);
+    }
+
+    /**
+     * Constructor of this class
+     * @param name the bulkhead name, also the name prefix of its threads
+     * @param corePoolSize the corePoolSize of the thread pool
+     * @param maxPoolSize the maxPoolSize of the thread pool
+     * @param maxQueueSize max count of queued jobs
+     * @param fairSharePolicy the fair share policy of the stripes, null to queue all the jobs by priority only
+     * @param virtualThreads true to run the jobs on virtual threads, which needs JDK 21 or later.
+     *                       The pool then takes maxPoolSize virtual threads for the jobs running at once,
+     *                       and the idle ones are let go.
+     * @exception UnsupportedOperationException when virtual threads are not supported
+     */
+    public JobBulkhead(String name, int corePoolSize, int maxPoolSize, int maxQueueSize, JobFairSharePolicy fairSharePolicy,
+                       boolean virtualThreads) {
+        this.name = name;
+        this.virtualThreads = virtualThreads;
+        this.admission = new JobAdmissionController(maxQueueSize);
+        this.fairShare = fairSharePolicy != null;
+        this.queue = new JobFairShareQueue(fairSharePolicy);
+        ThreadFactory threadFactory = virtualThreads ? VirtualThreads.newThreadFactory(name) : new JobThreadFactory(name);
+        //the queue is unbounded, so the pool never grows past the core threads
+        int coreThreads = virtualThreads ? maxPoolSize : corePoolSize;
+        long keepAliveTime = virtualThreads ? VIRTUAL_THREAD_KEEP_ALIVE_TIME : 0;
+        this.executor = new ThreadPoolExecutor(coreThreads, maxPoolSize, keepAliveTime, MILLISECONDS, queue, threadFactory) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                queue.complete(r);
+            }
+        };
+        if (fairShare) {
+            //every task must go through the queue to be counted in flight, not straight to a new core thread
+            executor.prestartAllCoreThreads();
+        }
+        else if (virtualThreads) {
+            executor.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Hand a submission task to the thread pool.
+     * @param task the submission task
+     * @exception RejectedExecutionException when the bulkhead has been shut down
+     */
+    void execute(JobSubmitTask task) {
+        executor.execute(task);
+        JobEvents.enqueued(task.getJob());
+    }
+
+    /**
+     * Hand many submission tasks to the thread pool, taking the queue lock once.
+     * The tasks go to the queue without the thread pool, so a shutdown racing with them is checked again once
+     * they are queued, and the tasks still queued are then taken back as {@link ThreadPoolExecutor#execute} does.
+     * @param tasks the submission tasks
+     * @return the tasks rejected because the bulkhead has been shut down, empty when all of them were queued
+     */
+    List<JobSubmitTask> executeAll(List<JobSubmitTask> tasks) {
+        if (executor.isShutdown()) {
+            return tasks;
+        }
+        queue.offerAll(tasks);
+        if (executor.isShutdown()) {
+            List<JobSubmitTask> rejected = new ArrayList<>();
+            for (JobSubmitTask task : tasks) {
+                if (queue.remove(task)) {
+                    rejected.add(task);
+                }
+            }
+            return rejected;
+        }
+        for (JobSubmitTask task : tasks) {
+            JobEvents.enqueued(task.getJob());
+        }
+        //the tasks did not go through execute(), so start the core threads it would have started
+        int missing = Math.min(tasks.size(), executor.getCorePoolSize() - executor.getPoolSize());
+        for (int i = 0; i < missing; i++) {
+            if (!executor.prestartCoreThread()) {
+                break;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    JobAdmissionController getAdmission() {
+        return admission;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the count of threads which would be idle with all the queued jobs running, at least 0
+     */
+    public int getIdleCapacity() {
+        //the pool does not grow past its core threads
+        return Math.max(0, executor.getCorePoolSize() - executor.getActiveCount() - executor.getQueue().size());
+    }
+
+    public int getMaxQueueSize() {
+        return admission.getMaxPermits();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    void shutdownNow() {
+        executor.shutdownNow();
+    }
+}
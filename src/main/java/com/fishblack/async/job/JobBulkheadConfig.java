@@ -0,0 +1,31 @@
+package com.fishblack.async.job;
+
+/**
+ * The configuration of the dedicated executor of a job type.
+ */
+public class JobBulkheadConfig {
+
+    private final int maxConcurrency;
+    private final int maxQueueSize;
+
+    /**
+     * Constructor of this class
+     * @param maxConcurrency max count of jobs of the type running at the same time
+     * @param maxQueueSize max count of jobs of the type waiting in the queue
+     */
+    public JobBulkheadConfig(int maxConcurrency, int maxQueueSize) {
+        if (maxConcurrency <= 0 || maxQueueSize <= 0) {
+            throw new IllegalArgumentException("Bulkhead concurrency and queue size must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+}
@@ -0,0 +1,94 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The shared cancellation watcher of the jobs processed on this node.
+ * Instead of every processor reading its own job from the provider, the statuses of all the
+ * watched jobs are read with one batched provider query per interval, and published for the
+ * processors to read from memory.
+ * Local status transitions are published at once, without waiting for the next poll.
+ */
+class JobCancellationPoller {
+	private static final Logger logger = Logger.getLogger(JobCancellationPoller.class.getName());
+
+	private final JobDataProvider jobDataProvider;
+	private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+	JobCancellationPoller(JobDataProvider jobDataProvider) {
+		this.jobDataProvider = jobDataProvider;
+	}
+
+	/**
+	 * Start watching a job being processed.
+	 * @param job the job
+	 */
+	void watch(Job job) {
+		watches.put(job.getJobId(), new Watch(job.getStatus()));
+	}
+
+	/**
+	 * Stop watching a job.
+	 * @param job the job
+	 */
+	void unwatch(Job job) {
+		watches.remove(job.getJobId());
+	}
+
+	/**
+	 * Get the last known status of a watched job.
+	 * @param jobId the job identifier
+	 * @return the status or null if the job is not watched
+	 */
+	Job.Status getStatus(String jobId) {
+		Watch watch = watches.get(jobId);
+		return watch == null ? null : watch.status;
+	}
+
+	/**
+	 * Publish a status transition made on this node.
+	 * @param jobId the job identifier
+	 * @param status the new status
+	 */
+	void publish(String jobId, Job.Status status) {
+		Watch watch = watches.get(jobId);
+		if (watch != null) {
+			watch.status = status;
+		}
+	}
+
+	/**
+	 * Refresh the statuses of all the watched jobs with one provider query.
+	 */
+	void poll() {
+		if (watches.isEmpty()) {
+			return;
+		}
+		try {
+			Map<String, Job.Status> statuses = jobDataProvider.getJobStatuses(watches.keySet());
+			for (Map.Entry<String, Job.Status> entry : statuses.entrySet()) {
+				publish(entry.getKey(), entry.getValue());
+			}
+		}
+		catch (JobException | RuntimeException ex) {
+			logger.log(Level.WARNING, "Failed to poll the statuses of running jobs", ex);
+		}
+	}
+
+	int size() {
+		return watches.size();
+	}
+
+	private static final class Watch {
+		private volatile Job.Status status;
+
+		private Watch(Job.Status status) {
+			this.status = status;
+		}
+	}
+}
@@ -11,12 +11,62 @@ public class JobConstants {
 
     public static final int KEEP_ON_TRACK_JOB_TIME_INTERVAL = 60 * 1000;
 
+    public static final int JOB_CANCELLATION_POLL_INTERVAL = 1000;
+
+    public static final int EXECUTOR_DEFAULT_CORE_POOL_SIZE = 4;
+
+    public static final int EXECUTOR_DEFAULT_MAX_POOL_SIZE = 8;
+
     public static final int EXECUTOR_DEFAULT_MAX_QUEUE_SIZE = 500;
 
+    public static final int VIRTUAL_THREAD_KEEP_ALIVE_TIME = 60 * 1000;
+
+    public static final String JOB_METRICS_MBEAN_NAME = "com.fishblack.async.job:type=JobMetrics";
+
+    public static final int DB_DEFAULT_CONNECTION_POOL_SIZE = 4;
+
+    public static final int DB_CONNECTION_BORROW_TIMEOUT = 30 * 1000;
+
+    public static final int JOB_TIMING_WHEEL_TICK_DURATION = 100;
+
+    public static final int JOB_TIMING_WHEEL_SIZE = 512;
+
+    public static final int JOB_SUPERSEDE_FALLBACK_TIMEOUT = 10 * 1000;
+
+    public static final int JOB_LEASE_DURATION = 30 * 1000;
+
+    public static final int JOB_LEASE_REAP_BATCH_SIZE = 100;
+
+    public static final int JOB_CLAIM_INTERVAL = 1000;
+
+    public static final int JOB_CLAIM_MAX_BATCH_SIZE = 100;
+
+    public static final int JOB_RETENTION_PERIOD = DURATION_ONE_DAY;
+
+    public static final int JOB_MAX_RUNNING_TIME = DURATION_ONE_DAY;
+
+    public static final int JOB_SWEEP_INTERVAL = 60 * 1000;
+
+    public static final int JOB_SWEEP_BATCH_SIZE = 100;
+
+    public static final int JOB_SWEEP_MIN_PAUSE = 100;
+
+    public static final int JOB_SWEEP_PAUSE_FACTOR = 4;
+
+    public static final int JOB_SWEEP_BUSY_PAUSE = 1000;
+
+    public static final int FILE_DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static final int FILE_DEFAULT_COMPACTION_THRESHOLD = 4;
+
+    public static final int FILE_SYNC_INTERVAL = 1000;
+
     public static final String JOB_RESCHEDULED_SUBMITTER = "RescheduledSubmitter";
 
     public static final String JOB_KEEP_ON_TRACK = "KeepOnTrackJobs";
 
+    public static final String FILE_JOB_LOG_THREAD_NAME = "FileJobLog";
+
     public static final String BACKGROUND_JOB_THREAD_NAME = "DSSJobThread";
 
 }
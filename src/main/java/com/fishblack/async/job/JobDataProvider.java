@@ -3,7 +3,12 @@ package com.fishblack.async.job;
 import com.fishblack.async.job.exception.JobException;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This interface of job data provider.
@@ -18,6 +23,26 @@ public interface JobDataProvider {
 	 */
 	Job createJob(Job job) throws JobException;
 
+	/**
+	 * Create many new background jobs at once.
+	 * The default implementation creates the jobs one by one, providers should override it with a bulk insert.
+	 * @param jobs the jobs to be saved
+	 * @return the created jobs in the order of the given ones, null for a job which could not be created
+	 * @exception JobException when the jobs can not be created at all
+	 */
+	default List<Job> createJobs(List<Job> jobs) throws JobException {
+		List<Job> created = new ArrayList<>(jobs.size());
+		for (Job job : jobs) {
+			try {
+				created.add(createJob(job));
+			}
+			catch (JobException ex) {
+				created.add(null);
+			}
+		}
+		return created;
+	}
+
     /**
      * Get job detail information by unique identifier.
      * @param jobId unique identifier for a job, UUID
@@ -26,6 +51,24 @@ public interface JobDataProvider {
      */
 	Job getJob(String jobId) throws JobException;
 
+	/**
+	 * Get the statuses of many jobs at once.
+	 * The default implementation reads the jobs one by one, providers should override it with a batched query.
+	 * @param jobIds unique identifiers of the jobs
+	 * @return the status of every job found, keyed by jobId
+	 * @exception JobException when any exception occurs
+	 */
+	default Map<String, Job.Status> getJobStatuses(Collection<String> jobIds) throws JobException {
+		Map<String, Job.Status> statuses = new HashMap<>();
+		for (String jobId : jobIds) {
+			Job job = getJob(jobId);
+			if (job != null) {
+				statuses.put(jobId, job.getStatus());
+			}
+		}
+		return statuses;
+	}
+
     /**
      * Get a running job especially of given parameters.
      * @param stripe stripe name
@@ -50,13 +93,147 @@ public interface JobDataProvider {
 
     /**
      * Update the job's status.
+     * The update only applies when the stored job has the fencing token of the given job, so that a node which
+     * lost the lease of a job can not change it anymore.
+     * Updating to RUNNING only applies to a NOT_STARTED job, e.g. not to a job cancelled before it started.
+     * It takes the lease of the job for {@link Job#getOwnerId()} until {@link Job#getLeaseExpiry()},
+     * and sets the new fencing token on the given job. Updating to a finished status releases the lease.
      * @param job the job to be updated
 	 * @param status the status to be updated to
-     * @return affected row of the operation
+     * @return affected row of the operation, 0 when the job does not exist, has another fencing token,
+     * or can not be started
 	 * @exception JobException when any exception occurs
      */
 	int updateJobStatus(Job job, Job.Status status) throws JobException;
 
+	/**
+	 * Extend the leases of the jobs a node is running. A job is renewed only while it is running under the lease
+	 * of the node, so the lease of a job the node stopped running, e.g. on an interruption, is left to expire.
+	 * @param ownerId the node id
+	 * @param jobIds unique identifiers of the jobs running on the node
+	 * @param leaseExpiry the new lease expiry
+	 * @return count of the renewed leases
+	 * @exception JobException when any exception occurs
+	 */
+	default int renewLeases(String ownerId, Collection<String> jobIds, Timestamp leaseExpiry) throws JobException {
+		return 0;
+	}
+
+	/**
+	 * Get the running jobs whose lease expired, i.e. whose node stopped renewing it, oldest expiry first.
+	 * @param now the current time
+	 * @param maxCount max count of jobs to return
+	 * @return the jobs with an expired lease
+	 * @exception JobException when any exception occurs
+	 */
+	default List<Job> getExpiredLeaseJobs(Timestamp now, int maxCount) throws JobException {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Take a job with an expired lease away from its owner, by updating it to NOT_STARTED to run it again or to
+	 * a finished status, and releasing its lease with a new fencing token set on the given job.
+	 * Nothing is done if the lease was renewed or the job was changed since it was read.
+	 * @param job the job, as read by {@link #getExpiredLeaseJobs(Timestamp, int)}
+	 * @param status the status to be updated to
+	 * @param now the current time
+	 * @return 1 if the job was reclaimed, 0 otherwise
+	 * @exception JobException when any exception occurs
+	 */
+	default int reclaimJob(Job job, Job.Status status, Timestamp now) throws JobException {
+		return 0;
+	}
+
+	/**
+	 * Claim NOT_STARTED jobs for a node: every claimed job is updated to RUNNING under the lease of the node with
+	 * a new fencing token, in one conditional update, so that a job is claimed by one node only.
+	 * Only the latest job of an object is claimed, and only while no job of the object is running.
+	 * The jobs of higher priority are claimed first, and then the oldest ones.
+	 * @param ownerId the node id
+	 * @param leaseExpiry the lease expiry of the claimed jobs
+	 * @param jobTypes the job types to claim
+	 * @param maxCount max count of jobs to claim
+	 * @return the claimed jobs
+	 * @exception JobException when any exception occurs, or the provider does not support claiming
+	 */
+	default List<Job> claimJobs(String ownerId, Timestamp leaseExpiry, Collection<Job.JobType> jobTypes, int maxCount)
+			throws JobException {
+		throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+				String.format("Job claiming is not supported by %s", getClass().getName()));
+	}
+
+	/**
+	 * Put a failed job back to NOT_STARTED to run it again, with the attempt and the retry time of the given job,
+	 * releasing its lease with a new fencing token set on the given job. A job waiting for its retry time is not claimed.
+	 * Nothing is done if the job was changed since it was read, or was requested to cancel or finished meanwhile.
+	 * @param job the job, with the number of its next attempt and its retry time
+	 * @return 1 if the job was put back, 0 otherwise
+	 * @exception JobException when any exception occurs, or the provider does not support retrying
+	 */
+	default int retryJob(Job job) throws JobException {
+		throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+				String.format("Job retrying is not supported by %s", getClass().getName()));
+	}
+
+	/**
+	 * Whether the provider sweeps the jobs in bounded batches, i.e. implements {@link #getFinishedJobs(Timestamp, int)},
+	 * {@link #deleteFinishedJobs(List)} and {@link #cureStuckJobs(Timestamp, int)}.
+	 * The job manager sweeps the other providers with {@link #handleLegacyJobs(long)}.
+	 * @return true if the batched sweep is supported, false by default
+	 */
+	default boolean supportsSweeping() {
+		return false;
+	}
+
+	/**
+	 * Get a bounded batch of the finished jobs which ended before a time.
+	 * @param endedBefore the end time the jobs ended before
+	 * @param maxCount max count of jobs to get
+	 * @return the finished jobs
+	 * @exception JobException when any exception occurs, or the provider does not support sweeping
+	 */
+	default List<Job> getFinishedJobs(Timestamp endedBefore, int maxCount) throws JobException {
+		throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+				String.format("Job sweeping is not supported by %s", getClass().getName()));
+	}
+
+	/**
+	 * Delete finished jobs, e.g. the ones got by {@link #getFinishedJobs(Timestamp, int)}.
+	 * A job is deleted only if it was not changed since it was read, so the batches of several nodes may overlap.
+	 * @param jobs the jobs to delete
+	 * @return the deleted jobs
+	 * @exception JobException when any exception occurs, or the provider does not support sweeping
+	 */
+	default List<Job> deleteFinishedJobs(List<Job> jobs) throws JobException {
+		throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+				String.format("Job sweeping is not supported by %s", getClass().getName()));
+	}
+
+	/**
+	 * Delete a bounded batch of the finished jobs which ended before a time.
+	 * @param endedBefore the end time the jobs ended before
+	 * @param maxCount max count of jobs to delete
+	 * @return the deleted jobs
+	 * @exception JobException when any exception occurs, or the provider does not support sweeping
+	 */
+	default List<Job> deleteFinishedJobs(Timestamp endedBefore, int maxCount) throws JobException {
+		List<Job> finished = getFinishedJobs(endedBefore, maxCount);
+		return finished.isEmpty() ? finished : deleteFinishedJobs(finished);
+	}
+
+	/**
+	 * Cancel a bounded batch of the running jobs not seen since a time, i.e. neither pinged nor started since,
+	 * releasing their leases with new fencing tokens.
+	 * @param lastSeenBefore the time the jobs were last seen before
+	 * @param maxCount max count of jobs to cancel
+	 * @return the cancelled jobs
+	 * @exception JobException when any exception occurs, or the provider does not support sweeping
+	 */
+	default List<Job> cureStuckJobs(Timestamp lastSeenBefore, int maxCount) throws JobException {
+		throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+				String.format("Job sweeping is not supported by %s", getClass().getName()));
+	}
+
     /**
      * Handle the legacy jobs including deleting finished job, and curing outage job.
      * @param jobMaxRunningTime the limitation of max running time of legacy job with time unit MINUTES
@@ -0,0 +1,74 @@
+package com.fishblack.async.job;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fair share policy of the stripes, i.e. the tenants, of queued jobs.
+ * Each stripe queues its jobs in a lane of its own, and the lanes are served by deficit round robin,
+ * so a stripe submitting many jobs can not delay the jobs of the other stripes behind its own.
+ *
+ * A stripe with weight n gets n jobs dispatched per round against 1 for a stripe of default weight.
+ * A stripe may also be capped to a max count of jobs in flight, its queued jobs then wait while the
+ * threads serve the other stripes.
+ */
+public class JobFairSharePolicy {
+
+    private final int defaultMaxInFlight;
+    private final Map<String, Integer> weights = new ConcurrentHashMap<>();
+    private final Map<String, Integer> maxInFlights = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor of a policy with equal weights and no in-flight cap.
+     */
+    public JobFairSharePolicy() {
+        this(0);
+    }
+
+    /**
+     * Constructor of this class
+     * @param defaultMaxInFlight max count of jobs in flight of a stripe without a cap of its own, 0 for no cap
+     */
+    public JobFairSharePolicy(int defaultMaxInFlight) {
+        if (defaultMaxInFlight < 0) {
+            throw new IllegalArgumentException("Max in-flight count must not be negative");
+        }
+        this.defaultMaxInFlight = defaultMaxInFlight;
+    }
+
+    /**
+     * @param stripe the stripe, null for the jobs without a stripe
+     * @param weight count of jobs dispatched for the stripe per round, 1 by default
+     */
+    public void setWeight(String stripe, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Stripe weight must be positive");
+        }
+        weights.put(keyOf(stripe), weight);
+    }
+
+    /**
+     * @param stripe the stripe, null for the jobs without a stripe
+     * @param maxInFlight max count of jobs of the stripe in flight, 0 for no cap
+     */
+    public void setMaxInFlight(String stripe, int maxInFlight) {
+        if (maxInFlight < 0) {
+            throw new IllegalArgumentException("Max in-flight count must not be negative");
+        }
+        maxInFlights.put(keyOf(stripe), maxInFlight);
+    }
+
+    public int getWeight(String stripe) {
+        Integer weight = weights.get(keyOf(stripe));
+        return weight == null ? 1 : weight;
+    }
+
+    public int getMaxInFlight(String stripe) {
+        Integer maxInFlight = maxInFlights.get(keyOf(stripe));
+        return maxInFlight == null ? defaultMaxInFlight : maxInFlight;
+    }
+
+    static String keyOf(String stripe) {
+        return stripe == null ? "" : stripe;
+    }
+}
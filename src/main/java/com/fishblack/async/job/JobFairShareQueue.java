@@ -0,0 +1,364 @@
+package com.fishblack.async.job;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The executor queue of submission tasks, ordered by priority and aging and then first in first out.
+ * Under a {@link JobFairSharePolicy} every stripe has a lane of its own, and the lanes with queued tasks are
+ * served by deficit round robin over their weights. A lane at its in-flight cap is skipped until one of its
+ * tasks completes, see {@link #complete(Runnable)}. Without a policy all the tasks share one lane.
+ *
+ * Only {@link JobSubmitTask} can be queued. The queue is unbounded, the queued count is bounded by the
+ * admission control of the bulkhead.
+ */
+class JobFairShareQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private final JobFairSharePolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, Lane> lanes = new HashMap<>();
+    //the lanes with queued tasks, in round robin order
+    private final ArrayDeque<Lane> activeLanes = new ArrayDeque<>();
+    private int count;
+
+    /**
+     * @param policy the fair share policy, null to queue all the tasks in one lane
+     */
+    JobFairShareQueue(JobFairSharePolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        JobSubmitTask submitTask = (JobSubmitTask) task;
+        lock.lock();
+        try {
+            enqueue(submitTask);
+            notEmpty.signal();
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue many tasks taking the lock once.
+     * @param tasks the tasks
+     */
+    void offerAll(Collection<JobSubmitTask> tasks) {
+        lock.lock();
+        try {
+            for (JobSubmitTask task : tasks) {
+                enqueue(task);
+            }
+            notEmpty.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            JobSubmitTask task;
+            while ((task = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return task;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            JobSubmitTask task;
+            while ((task = dequeue()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return task;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the in-flight slot of a task taken from this queue once it has been executed.
+     * @param task the executed task
+     */
+    void complete(Runnable task) {
+        if (policy == null) {
+            return;
+        }
+        String key = laneKey((JobSubmitTask) task);
+        lock.lock();
+        try {
+            Lane lane = lanes.get(key);
+            if (lane == null || lane.inFlight == 0) {
+                return;
+            }
+            lane.inFlight--;
+            if (!lane.tasks.isEmpty()) {
+                //the lane may have been skipped at its cap
+                notEmpty.signal();
+            }
+            else if (lane.inFlight == 0) {
+                lanes.remove(key);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            for (Lane lane : activeLanes) {
+                if (!lane.isCapped()) {
+                    return lane.tasks.peek();
+                }
+            }
+            return null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof JobSubmitTask)) {
+            return false;
+        }
+        String key = laneKey((JobSubmitTask) o);
+        lock.lock();
+        try {
+            Lane lane = lanes.get(key);
+            if (lane == null || !lane.tasks.remove(o)) {
+                return false;
+            }
+            count--;
+            if (lane.tasks.isEmpty()) {
+                deactivate(lane);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Drain the queued tasks regardless of the in-flight caps, e.g. on shutdown.
+     */
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !activeLanes.isEmpty()) {
+                Lane lane = activeLanes.peekFirst();
+                c.add(lane.tasks.poll());
+                count--;
+                drained++;
+                if (lane.tasks.isEmpty()) {
+                    deactivate(lane);
+                }
+            }
+            return drained;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Iterate over a snapshot of the queued tasks.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Lane lane : activeLanes) {
+                snapshot.addAll(lane.tasks);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            private Runnable current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                JobFairShareQueue.this.remove(current);
+            }
+        };
+    }
+
+    private void enqueue(JobSubmitTask task) {
+        String key = laneKey(task);
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = new Lane(key);
+            lanes.put(key, lane);
+        }
+        if (lane.tasks.isEmpty()) {
+            activeLanes.addLast(lane);
+        }
+        lane.tasks.add(task);
+        count++;
+    }
+
+    /**
+     * Take the next task by deficit round robin: the lane at the head is served until its deficit is spent,
+     * then it goes to the tail, and a lane at its in-flight cap gives up its turn.
+     * @return the task or null if every lane with queued tasks is at its cap
+     */
+    private JobSubmitTask dequeue() {
+        int skipped = 0;
+        while (skipped < activeLanes.size()) {
+            Lane lane = activeLanes.peekFirst();
+            if (lane.isCapped()) {
+                lane.deficit = 0;
+                activeLanes.addLast(activeLanes.pollFirst());
+                skipped++;
+                continue;
+            }
+            if (lane.deficit <= 0) {
+                //the turn of the lane starts
+                lane.deficit = policy == null ? 1 : policy.getWeight(lane.key);
+            }
+            JobSubmitTask task = lane.tasks.poll();
+            lane.deficit--;
+            if (policy != null) {
+                lane.inFlight++;
+            }
+            count--;
+            if (lane.tasks.isEmpty()) {
+                deactivate(lane);
+            }
+            else if (lane.deficit <= 0) {
+                activeLanes.addLast(activeLanes.pollFirst());
+            }
+            if (count > 0) {
+                //let another waiting thread look for a lane below its cap
+                notEmpty.signal();
+            }
+            return task;
+        }
+        return null;
+    }
+
+    private String laneKey(JobSubmitTask task) {
+        return policy == null ? "" : JobFairSharePolicy.keyOf(task.getJob().getStripe());
+    }
+
+    private void deactivate(Lane lane) {
+        lane.deficit = 0;
+        activeLanes.remove(lane);
+        //keep the only lane there is without a policy
+        if (lane.inFlight == 0 && policy != null) {
+            lanes.remove(lane.key);
+        }
+    }
+
+    private final class Lane {
+        private final String key;
+        private final PriorityQueue<JobSubmitTask> tasks = new PriorityQueue<>();
+        private int deficit;
+        private int inFlight;
+
+        private Lane(String key) {
+            this.key = key;
+        }
+
+        private boolean isCapped() {
+            if (policy == null) {
+                return false;
+            }
+            int maxInFlight = policy.getMaxInFlight(key);
+            return maxInFlight > 0 && inFlight >= maxInFlight;
+        }
+    }
+}
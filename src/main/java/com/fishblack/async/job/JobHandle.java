@@ -0,0 +1,85 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The handle of a job submitted by {@link JobManager#submitJobAsync(Job)}.
+ * The result future is completed by the job manager on the terminal transitions made on this node, so waiting
+ * for a job does not read the provider:
+ * with the job result when the job succeeded or failed, with a {@link JobResult.ResultType#CANCELLED} result when
+ * the job was cancelled or superseded by a newer job of the same object, and exceptionally when the job ended in
+ * error or the job manager was stopped.
+ * A job reclaimed by a lease reaper after the lease of this node expired fails the handle with
+ * {@link JobException.DSSJobErrorCode#LEASE_LOST}, even when the reclaimed job is run again.
+ */
+public class JobHandle {
+
+    private final JobManager jobManager;
+    private final Job job;
+    private final CompletableFuture<JobResult> future = new CompletableFuture<>();
+    //the dependent view given out, so the callers can not complete the future themselves
+    private final CompletableFuture<JobResult> result = future.thenApply(r -> r);
+    private volatile Job.Status status;
+
+    JobHandle(JobManager jobManager, Job job) {
+        this.jobManager = jobManager;
+        this.job = job;
+        this.status = job.getStatus();
+    }
+
+    public String getJobId() {
+        return job.getJobId();
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * Get the future of the job result.
+     * @return the future completed when the job terminates
+     */
+    public CompletableFuture<JobResult> getResult() {
+        return result;
+    }
+
+    /**
+     * Get the last status of the job set on this node.
+     * @return the job status
+     */
+    public Job.Status getStatus() {
+        return status;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Cancel the job. A queued job is cancelled at once, a running job is requested to cancel.
+     * @return false when the job was already finished
+     * @exception JobException when backend service exception occurs
+     */
+    public boolean cancel() throws JobException {
+        return !isDone() && jobManager.cancelJob(job);
+    }
+
+    void setStatus(Job.Status status) {
+        this.status = status;
+    }
+
+    void complete(JobResult jobResult) {
+        future.complete(jobResult);
+    }
+
+    void fail(Throwable cause) {
+        future.completeExceptionally(cause);
+    }
+
+    @Override
+    public String toString() {
+        return "[JobHandle: jobId=" + job.getJobId() + ", status=" + status + ", done=" + future.isDone() + "]";
+    }
+}
@@ -0,0 +1,25 @@
+package com.fishblack.async.job;
+
+/**
+ * The generator of the ids of new jobs, see {@link Job#setIdGenerator(JobIdGenerator)}.
+ * The ids must be unique across the nodes sharing a job store.
+ */
+@FunctionalInterface
+public interface JobIdGenerator {
+
+    /**
+     * The time-ordered UUID version 7 ids of {@link TimeOrderedJobIdGenerator}, the default.
+     */
+    JobIdGenerator TIME_ORDERED = new TimeOrderedJobIdGenerator();
+
+    /**
+     * The random UUID version 4 ids, drawn from the shared {@link java.security.SecureRandom}.
+     */
+    JobIdGenerator RANDOM = () -> java.util.UUID.randomUUID().toString();
+
+    /**
+     * Generate the id of a new job.
+     * @return the job id
+     */
+    String nextId();
+}
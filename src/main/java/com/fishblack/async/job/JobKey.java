@@ -0,0 +1,72 @@
+package com.fishblack.async.job;
+
+import java.util.Objects;
+
+/**
+ * The identity of the object a job works on, i.e. (stripe, twopartName, objectType, jobType).
+ * At most one job of the same key is running at any time, and the latest submitted one wins.
+ */
+public final class JobKey {
+
+	private final String stripe;
+	private final String twopartName;
+	private final String objectType;
+	private final Job.JobType jobType;
+	private final int hash;
+
+	public JobKey(String stripe, String twopartName, String objectType, Job.JobType jobType) {
+		this.stripe = stripe;
+		this.twopartName = twopartName;
+		this.objectType = objectType;
+		this.jobType = jobType;
+		this.hash = Objects.hash(stripe, twopartName, objectType, jobType);
+	}
+
+	/**
+	 * Get the key of a job.
+	 * @param job the job
+	 * @return the key of the object the job works on
+	 */
+	public static JobKey of(Job job) {
+		return new JobKey(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
+	}
+
+	public String getStripe() {
+		return stripe;
+	}
+
+	public String getTwopartName() {
+		return twopartName;
+	}
+
+	public String getObjectType() {
+		return objectType;
+	}
+
+	public Job.JobType getJobType() {
+		return jobType;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) return true;
+		if (!(o instanceof JobKey)) return false;
+		JobKey k = (JobKey) o;
+		return hash == k.hash &&
+				jobType == k.jobType &&
+				Objects.equals(stripe, k.stripe) &&
+				Objects.equals(twopartName, k.twopartName) &&
+				Objects.equals(objectType, k.objectType);
+	}
+
+	@Override
+	public String toString() {
+		return "[JobKey: stripe=" + stripe + ", twopartName=" + twopartName +
+				", objectType=" + objectType + ", jobType=" + jobType + "]";
+	}
+}
@@ -1,19 +1,35 @@
 package com.fishblack.async.job;
 
 import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.exception.JobRejectedException;
+import com.fishblack.async.job.jfr.JobEvents;
+import com.fishblack.async.job.metrics.DefaultJobMetrics;
+import com.fishblack.async.job.metrics.JobMetrics;
+import com.fishblack.async.job.metrics.JobMetricsJmx;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.Vector;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import static com.fishblack.async.job.JobConstants.*;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -26,33 +42,123 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 public class JobManager {
 	private static final Logger logger = Logger.getLogger(JobManager.class.getName());
 	private JobDataProvider jobDataProvider;
-    private ThreadPoolExecutor executor;
-    private int maxQueueSize;
+    private final JobBulkhead defaultBulkhead;
+    private final Map<Job.JobType, JobBulkhead> bulkheads = new EnumMap<>(Job.JobType.class);
+	private final JobAgingPolicy agingPolicy;
+	private final String nodeId;
+	private final long leaseDuration;
+	private final boolean requeueOrphanedJobs;
+	private final boolean claimJobs;
+	private final long claimInterval;
+	private final JobCallback claimCallback;
+	private final Map<JobBulkhead, Set<Job.JobType>> claimedJobTypes = new LinkedHashMap<>();
+	private final long retentionPeriod;
+	private final long maxRunningTime;
+	private final long sweepInterval;
+	private final int sweepBatchSize;
+	private final JobArchiver archiver;
+	private final Map<Job.JobType, JobRetryPolicy> retryPolicies = new EnumMap<>(Job.JobType.class);
 
-	private static volatile Timer scheduleTimer;
+	private volatile JobTimingWheel scheduleTimer;
+	private volatile boolean legacySweepWarned;
 	//Do not initialize the scheduleTimer in constructor but first required
 	private final Object timerLock = new Object();
 
+	private static final JobCallback<Job> NO_OP_CALLBACK = new JobCallback<Job>() {
+		@Override
+		public void onSucceeded(JobManager jobManager, Job job, JobResult result) {}
+
+		@Override
+		public void onCancelled(JobManager jobManager, Job job) {}
+
+		@Override
+		public void onFailed(JobManager jobManager, Job job, JobResult result) {}
+
+		@Override
+		public void onException(JobManager jobManager, Job job, Throwable cause) {}
+	};
+
 	private static Timer daemonTimer;
 	private static volatile JobManager instance = null;
-	private List<String> runningJobIds = new Vector<>();
+	private final RunningJobRegistry runningJobs = new RunningJobRegistry();
+	private final JobWaiterRegistry waiters = new JobWaiterRegistry();
+	private final JobCancellationPoller cancellationPoller;
+	private final Map<String, JobHandle> handles = new ConcurrentHashMap<>();
+	private final JobMetrics metrics;
+	private final JobProcessorRegistry processorRegistry;
+	private ObjectName metricsMBeanName;
 
     /**
-     * Constructor of this class
-     * @param corePoolSize  the corePoolSize of Scheduled thread pool executor
-     * @param maxQueueSize the thread pool blocking queue size, if job request count exceeded this value, may receive
-     *                     JobException for rejection
+     * Constructor of this class. The applications share the singleton of {@link #getInstance(JobManagerConfig, JobDataProvider)},
+     * a job manager of its own has no daemon timer unless {@link #scheduleDaemonTimer(int, int)} is called.
+     * @param config the configuration of the job manager
      * @param jobDataProvider with the jobDataProvider to take actions on jobs
      */
-	private JobManager(int corePoolSize,
-					   int maxPoolSize,
-					   int maxQueueSize,
-					   JobDataProvider jobDataProvider) {
+	JobManager(JobManagerConfig config, JobDataProvider jobDataProvider) {
 		this.jobDataProvider = jobDataProvider;
-		this.maxQueueSize = maxQueueSize;
-		logger.log(Level.INFO, "Creating job manager thread pool with corePoolSize={0}, maxPoolSize={1}, maxQueueSize={2}", new Object[] {corePoolSize, maxPoolSize, maxQueueSize});
-		this.executor = new ThreadPoolExecutor(corePoolSize, maxPoolSize, 0, MILLISECONDS,
-				new PriorityBlockingQueue<Runnable>(maxQueueSize), new JobThreadFactory(BACKGROUND_JOB_THREAD_NAME));
+		this.agingPolicy = config.getAgingPolicy();
+		this.nodeId = config.getNodeId();
+		this.leaseDuration = config.getLeaseDuration();
+		this.requeueOrphanedJobs = config.isRequeueOrphanedJobs();
+		this.cancellationPoller = new JobCancellationPoller(jobDataProvider);
+		this.metrics = config.getMetrics();
+		boolean virtualThreads = config.isVirtualThreads();
+		if (virtualThreads && !VirtualThreads.isSupported()){
+			logger.warning("Virtual threads are not supported by the running JDK, using platform threads");
+			virtualThreads = false;
+		}
+		logger.log(Level.INFO, "Creating job manager thread pool with corePoolSize={0}, maxPoolSize={1}, maxQueueSize={2}, virtualThreads={3}",
+				new Object[] {config.getCorePoolSize(), config.getMaxPoolSize(), config.getMaxQueueSize(), virtualThreads});
+		this.defaultBulkhead = new JobBulkhead(BACKGROUND_JOB_THREAD_NAME,
+				config.getCorePoolSize(), config.getMaxPoolSize(), config.getMaxQueueSize(), config.getFairSharePolicy(),
+				virtualThreads);
+		for (Map.Entry<Job.JobType, JobBulkheadConfig> entry : config.getBulkheads().entrySet()) {
+			JobBulkheadConfig bulkhead = entry.getValue();
+			logger.log(Level.INFO, "Creating job bulkhead for {0} with maxConcurrency={1}, maxQueueSize={2}",
+					new Object[] {entry.getKey(), bulkhead.getMaxConcurrency(), bulkhead.getMaxQueueSize()});
+			bulkheads.put(entry.getKey(), new JobBulkhead(BACKGROUND_JOB_THREAD_NAME + "-" + entry.getKey(),
+					bulkhead.getMaxConcurrency(), bulkhead.getMaxConcurrency(), bulkhead.getMaxQueueSize(),
+					config.getFairSharePolicy(), virtualThreads));
+		}
+		if (config.isJmxEnabled() && metrics instanceof DefaultJobMetrics){
+			registerMetricsMBean((DefaultJobMetrics) metrics);
+		}
+		this.claimJobs = config.isClaimJobs();
+		this.claimInterval = config.getClaimInterval();
+		this.claimCallback = config.getClaimCallback() != null ? config.getClaimCallback() : NO_OP_CALLBACK;
+		Set<Job.JobType> defaultJobTypes = EnumSet.allOf(Job.JobType.class);
+		for (Map.Entry<Job.JobType, JobBulkhead> entry : bulkheads.entrySet()) {
+			defaultJobTypes.remove(entry.getKey());
+			claimedJobTypes.put(entry.getValue(), EnumSet.of(entry.getKey()));
+		}
+		if (!defaultJobTypes.isEmpty()) {
+			claimedJobTypes.put(defaultBulkhead, defaultJobTypes);
+		}
+		this.retentionPeriod = config.getRetentionPeriod();
+		this.maxRunningTime = config.getMaxRunningTime();
+		this.sweepInterval = config.getSweepInterval();
+		this.sweepBatchSize = config.getSweepBatchSize();
+		this.archiver = config.getArchiver();
+		this.retryPolicies.putAll(config.getRetryPolicies());
+		this.processorRegistry = new JobProcessorRegistry(this, config.getProcessorProviders());
+		if (config.isWarmUpProcessors()){
+			processorRegistry.warmUp();
+		}
+	}
+
+	private void registerMetricsMBean(DefaultJobMetrics defaultMetrics) {
+		try {
+			ObjectName name = new ObjectName(JOB_METRICS_MBEAN_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(name)){
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(new JobMetricsJmx(defaultMetrics, this::getQueueDepth, this::getActiveThreads), name);
+			metricsMBeanName = name;
+		}
+		catch (JMException ex){
+			logger.log(Level.WARNING, "Failed to register the job metrics MBean", ex);
+		}
 	}
 
 	/**
@@ -67,10 +173,19 @@ public class JobManager {
 										 int maxPoolSize,
 										 int maxQueueSize,
 										 JobDataProvider jobDataProvider){
+		return getInstance(new JobManagerConfig(corePoolSize, maxPoolSize, maxQueueSize), jobDataProvider);
+	}
+
+	/**
+	 * Singleton instance of this class.
+	 * @param config the configuration of the job manager
+	 * @param jobDataProvider with the jobDataProvider to take actions on jobs
+	 */
+	public static JobManager getInstance(JobManagerConfig config, JobDataProvider jobDataProvider){
 		if (instance == null){
 			synchronized(JobManager.class) {
 				if (instance == null){
-					instance = new JobManager(corePoolSize, maxPoolSize, maxQueueSize, jobDataProvider);
+					instance = new JobManager(config, jobDataProvider);
 				}
 				instance.scheduleDaemonTimer(KEEP_ON_TRACK_JOB_TIME_INTERVAL, KEEP_ON_TRACK_JOB_TIME_INTERVAL);
 			}
@@ -78,45 +193,546 @@ public class JobManager {
 		return instance;
 	}
 
+	/**
+	 * Get the bulkhead executing the jobs of a type.
+	 * @param jobType the job type
+	 * @return the dedicated bulkhead of the type, or the default one shared by the types without one
+	 */
+	public JobBulkhead getBulkhead(Job.JobType jobType) {
+		JobBulkhead bulkhead = bulkheads.get(jobType);
+		return bulkhead != null ? bulkhead : defaultBulkhead;
+	}
+
+	/**
+	 * Get all the bulkheads, the default one first.
+	 * @return the bulkheads
+	 */
+	public List<JobBulkhead> getBulkheads() {
+		List<JobBulkhead> allBulkheads = new ArrayList<>(bulkheads.size() + 1);
+		allBulkheads.add(defaultBulkhead);
+		allBulkheads.addAll(bulkheads.values());
+		return allBulkheads;
+	}
+
+	/**
+	 * @return the count of the queued jobs of all the bulkheads
+	 */
+	public int getQueueDepth() {
+		int depth = defaultBulkhead.getQueueSize();
+		for (JobBulkhead bulkhead : bulkheads.values()) {
+			depth += bulkhead.getQueueSize();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the count of the threads running jobs in all the bulkheads
+	 */
+	public int getActiveThreads() {
+		int active = defaultBulkhead.getActiveCount();
+		for (JobBulkhead bulkhead : bulkheads.values()) {
+			active += bulkhead.getActiveCount();
+		}
+		return active;
+	}
+
+	public JobMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Get the registry of the job processors.
+	 * @return the processor registry
+	 */
+	public JobProcessorRegistry getProcessorRegistry() {
+		return processorRegistry;
+	}
+
+	private boolean isShutdown() {
+		return defaultBulkhead.isShutdown();
+	}
+
+	/**
+	 * Get the aging policy of queued jobs.
+	 * @return the aging policy
+	 */
+	public JobAgingPolicy getAgingPolicy() {
+		return agingPolicy;
+	}
+
+	/**
+	 * Get the retry policy of the failed jobs of a type.
+	 * @param jobType the job type
+	 * @return the retry policy, {@link JobRetryPolicy#NONE} when the jobs of the type are not retried
+	 */
+	public JobRetryPolicy getRetryPolicy(Job.JobType jobType) {
+		JobRetryPolicy retryPolicy = retryPolicies.get(jobType);
+		return retryPolicy != null ? retryPolicy : JobRetryPolicy.NONE;
+	}
+
+	/**
+	 * Get the id of this node, the owner of the leases of the jobs running here.
+	 * @return the node id
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
     /**
      * Submit a job
      * @param job the job to submit into job queue
      * @param callback the callback handler for job completion
-	 * @exception JobException when job data is empty or any exception occurs
+	 * @exception JobException when job data is empty or any exception occurs,
+	 * {@link JobRejectedException} without persisting the job when the job queue is full
      */
 	public void submitJob(Job job, JobCallback callback) throws JobException{
-		if (executor == null || executor.isShutdown()){
-			logger.fine("The executor has been shut down.");
+		if (!checkSubmission(job)){
 			return;
 		}
+		if (claimJobs){
+			persistClaimableJob(job);
+			return;
+		}
+		if (!getBulkhead(job.getJobType()).getAdmission().tryAcquire()){
+			metrics.recordRejected(job);
+			throw new JobRejectedException("Job rejected, the job queue is full");
+		}
+		enqueueAdmittedJob(job, callback);
+	}
+
+	/**
+	 * Submit a job and get a handle to wait for its result.
+	 * @param job the job to submit into job queue
+	 * @return the job handle, failed with {@link JobRejectedException} if the job manager has been stopped
+	 * @exception JobException when job data is empty or any exception occurs,
+	 * {@link JobRejectedException} without persisting the job when the job queue is full
+	 */
+	public JobHandle submitJobAsync(Job job) throws JobException{
+		return submitJobAsync(job, NO_OP_CALLBACK);
+	}
+
+	/**
+	 * Submit a job and get a handle to wait for its result.
+	 * @param job the job to submit into job queue
+	 * @param callback the callback handler for job completion
+	 * @return the job handle, failed with {@link JobRejectedException} if the job manager has been stopped
+	 * @exception JobException when job data is empty or any exception occurs,
+	 * {@link JobRejectedException} without persisting the job when the job queue is full
+	 */
+	public JobHandle submitJobAsync(Job job, JobCallback callback) throws JobException{
+		if (!checkSubmission(job)){
+			JobHandle handle = new JobHandle(this, job);
+			handle.fail(new JobRejectedException("Job rejected, the job manager has been stopped"));
+			return handle;
+		}
+		if (claimJobs){
+			//the job may run on any node, which would not complete the handle
+			JobHandle handle = new JobHandle(this, job);
+			handle.fail(new JobException(JobException.DSSJobErrorCode.JOB_REJECTED, "Job handles are not supported when the jobs are claimed"));
+			return handle;
+		}
+		if (!getBulkhead(job.getJobType()).getAdmission().tryAcquire()){
+			metrics.recordRejected(job);
+			throw new JobRejectedException("Job rejected, the job queue is full");
+		}
+		JobHandle handle = new JobHandle(this, job);
+		handles.put(job.getJobId(), handle);
+		try {
+			enqueueAdmittedJob(job, callback);
+		}
+		catch (JobException | RuntimeException ex){
+			handles.remove(job.getJobId());
+			throw ex;
+		}
+		return handle;
+	}
+
+	/**
+	 * Submit many jobs at once, e.g. the jobs of all the objects of an import.
+	 * The jobs are persisted with one bulk provider call and queued with one queue lock per executor.
+	 * A job is rejected on its own, without failing the others, when its job queue is full or it can not be created.
+	 * A job persisted but then rejected by a bulkhead shut down meanwhile is cancelled.
+	 * @param jobs the jobs to submit into job queue
+	 * @param callback the callback handler for job completion
+	 * @return the result of every job in the order of the given ones, all rejected if the job manager has been stopped
+	 * @exception JobException when job data is empty or the jobs can not be created at all
+	 */
+	public List<JobSubmitResult> submitJobs(Collection<? extends Job> jobs, JobCallback callback) throws JobException{
+		if (jobs == null){
+			throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "Job creation failed due to empty job list");
+		}
+		boolean stopped = false;
+		for (Job job : jobs){
+			stopped |= !checkSubmission(job);
+		}
+		if (claimJobs && !stopped){
+			return persistClaimableJobs(jobs);
+		}
+		JobSubmitResult[] results = new JobSubmitResult[jobs.size()];
+		List<Job> admitted = new ArrayList<>(jobs.size());
+		List<Integer> admittedIndexes = new ArrayList<>(jobs.size());
+		int index = 0;
+		for (Job job : jobs){
+			if (stopped){
+				results[index] = new JobSubmitResult(job, new JobRejectedException("Job rejected, the job manager has been stopped"));
+			}
+			else if (!getBulkhead(job.getJobType()).getAdmission().tryAcquire()){
+				metrics.recordRejected(job);
+				results[index] = new JobSubmitResult(job, new JobRejectedException("Job rejected, the job queue is full"));
+			}
+			else {
+				admitted.add(job);
+				admittedIndexes.add(index);
+			}
+			index++;
+		}
+		List<Job> created;
+		try {
+			created = admitted.isEmpty() ? admitted : jobDataProvider.createJobs(admitted);
+		}
+		catch (JobException | RuntimeException ex){
+			for (Job job : admitted){
+				getBulkhead(job.getJobType()).getAdmission().release();
+			}
+			throw ex;
+		}
+		Map<JobBulkhead, List<JobSubmitTask>> tasks = new LinkedHashMap<>();
+		Map<JobBulkhead, List<Integer>> taskIndexes = new LinkedHashMap<>();
+		for (int i = 0; i < admitted.size(); i++){
+			Job job = admitted.get(i);
+			JobBulkhead bulkhead = getBulkhead(job.getJobType());
+			Job jobCreated = created.get(i);
+			if (jobCreated == null){
+				bulkhead.getAdmission().release();
+				results[admittedIndexes.get(i)] = new JobSubmitResult(job,
+						new JobException(JobException.DSSJobErrorCode.CREATION_FAILED, "Job creation failed"));
+				continue;
+			}
+			logger.log(Level.FINE, "A new job submitted {0}", jobCreated);
+			JobEvents.submitted(jobCreated);
+			JobSubmitTask task = new JobSubmitTask(this, jobCreated, callback);
+			task.setAdmission(bulkhead.getAdmission());
+			tasks.computeIfAbsent(bulkhead, b -> new ArrayList<>()).add(task);
+			taskIndexes.computeIfAbsent(bulkhead, b -> new ArrayList<>()).add(admittedIndexes.get(i));
+			results[admittedIndexes.get(i)] = new JobSubmitResult(jobCreated, null);
+		}
+		for (Map.Entry<JobBulkhead, List<JobSubmitTask>> entry : tasks.entrySet()){
+			JobBulkhead bulkhead = entry.getKey();
+			List<JobSubmitTask> bulkheadTasks = entry.getValue();
+			Set<JobSubmitTask> rejected = new HashSet<>(bulkhead.executeAll(bulkheadTasks));
+			List<Integer> indexes = taskIndexes.get(bulkhead);
+			for (int i = 0; i < bulkheadTasks.size(); i++){
+				Job job = bulkheadTasks.get(i).getJob();
+				if (!rejected.contains(bulkheadTasks.get(i))){
+					metrics.recordSubmitted(job);
+					continue;
+				}
+				bulkhead.getAdmission().release();
+				metrics.recordRejected(job);
+				cancelRejectedJob(job);
+				results[indexes.get(i)] = new JobSubmitResult(job,
+						new JobRejectedException("Job rejected, the job manager has been stopped"));
+			}
+		}
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Submit a job, waiting up to the timeout for room in the job queue.
+	 * @param job the job to submit into job queue
+	 * @param callback the callback handler for job completion
+	 * @param timeout the max time to wait for room in the job queue
+	 * @param unit the time unit of the timeout parameter
+	 * @return true if the job was submitted, false if the queue stayed full or the executor has been shut down
+	 * @exception JobException when job data is empty or any exception occurs
+	 */
+	public boolean trySubmitJob(Job job, JobCallback callback, long timeout, TimeUnit unit) throws JobException{
+		if (!checkSubmission(job)){
+			return false;
+		}
+		if (claimJobs){
+			persistClaimableJob(job);
+			return true;
+		}
+		try {
+			if (!getBulkhead(job.getJobType()).getAdmission().tryAcquire(timeout, unit)){
+				metrics.recordRejected(job);
+				return false;
+			}
+		}
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new JobException(JobException.DSSJobErrorCode.INTERRUPTED, "Interrupted waiting for room in the job queue", ex);
+		}
+		enqueueAdmittedJob(job, callback);
+		return true;
+	}
+
+	/**
+	 * Submit a job, waiting as long as needed for room in the job queue.
+	 * @param job the job to submit into job queue
+	 * @param callback the callback handler for job completion
+	 * @exception JobException when job data is empty or any exception occurs
+	 */
+	public void submitJobBlocking(Job job, JobCallback callback) throws JobException{
+		if (!checkSubmission(job)){
+			return;
+		}
+		if (claimJobs){
+			persistClaimableJob(job);
+			return;
+		}
+		try {
+			getBulkhead(job.getJobType()).getAdmission().acquire();
+		}
+		catch (InterruptedException ex){
+			Thread.currentThread().interrupt();
+			throw new JobException(JobException.DSSJobErrorCode.INTERRUPTED, "Interrupted waiting for room in the job queue", ex);
+		}
+		enqueueAdmittedJob(job, callback);
+	}
+
+	/**
+	 * Validate a submission.
+	 * @return false when the executor has been shut down
+	 */
+	private boolean checkSubmission(Job job) throws JobException {
+		if (isShutdown()){
+			logger.fine("The executor has been shut down.");
+			return false;
+		}
 		if (job == null){
             throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "Job creation failed due to empty job entity");
         }
         if (jobDataProvider == null){
             throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR, "Empty jobDataProvider found");
         }
-		Job jobCreated = jobDataProvider.createJob(job);
-		if (jobCreated != null) {
-            logger.log(Level.FINE, "A new job submitted {0}", job.toString());
-
-            //The scheduled thread pool using unlimited blocking queue, so using this queue size to limit the request count
-            //Getting this queue size ignoring thread-unsafe for not bring bottle neck.
-		    int size = executor.getQueue().size();
-		    if ( size < this.maxQueueSize ) {
-		        try {
-                    executor.execute(new JobSubmitTask(this, jobCreated, callback));
-                }
-                catch (RejectedExecutionException ex){
-                    throw new JobException(JobException.DSSJobErrorCode.JOB_REJECTED, "Job rejected by executor", ex);
-                }
-            }
-            else {
-                throw new JobException(JobException.DSSJobErrorCode.JOB_REJECTED, "Job rejected by executor");
-            }
+		return true;
+	}
+
+	/**
+	 * Persist and enqueue a job which holds an admission permit.
+	 * The permit goes with the submission task, or is given back when the job can not be enqueued.
+	 */
+	private void enqueueAdmittedJob(Job job, JobCallback callback) throws JobException {
+		JobBulkhead bulkhead = getBulkhead(job.getJobType());
+		JobAdmissionController admission = bulkhead.getAdmission();
+		Job jobCreated;
+		try {
+			jobCreated = jobDataProvider.createJob(job);
 		}
-		else {
+		catch (JobException | RuntimeException ex){
+			admission.release();
+			throw ex;
+		}
+		if (jobCreated == null) {
+			admission.release();
 			logger.warning("Job submit failed");
-            throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED, "Job creation failed");
+			throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED, "Job creation failed");
+		}
+		logger.log(Level.FINE, "A new job submitted {0}", jobCreated);
+		JobEvents.submitted(jobCreated);
+		JobSubmitTask task = new JobSubmitTask(this, jobCreated, callback);
+		task.setAdmission(admission);
+		try {
+			bulkhead.execute(task);
+			metrics.recordSubmitted(jobCreated);
+		}
+		catch (RejectedExecutionException ex){
+			admission.release();
+			metrics.recordRejected(jobCreated);
+			cancelRejectedJob(jobCreated);
+			throw new JobException(JobException.DSSJobErrorCode.JOB_REJECTED, "Job rejected by executor", ex);
+		}
+	}
+
+	/**
+	 * Cancel a job persisted but then rejected by its shut down bulkhead, rather than leave it not started
+	 * with no task to run it.
+	 * @param job the rejected job
+	 */
+	private void cancelRejectedJob(Job job) {
+		job.setStatus(Job.Status.CANCELLED);
+		try {
+			jobDataProvider.updateJobStatus(job, Job.Status.CANCELLED);
+		}
+		catch (JobException | RuntimeException ex){
+			logger.log(Level.WARNING, String.format("Rejected job %s could not be cancelled", job.getJobId()), ex);
+		}
+	}
+
+	/**
+	 * Persist a job for any node to claim.
+	 */
+	private void persistClaimableJob(Job job) throws JobException {
+		Job jobCreated = jobDataProvider.createJob(job);
+		if (jobCreated == null) {
+			logger.warning("Job submit failed");
+			throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED, "Job creation failed");
+		}
+		claimableJobPersisted(jobCreated);
+	}
+
+	/**
+	 * Persist many jobs for any node to claim, with one bulk provider call.
+	 */
+	private List<JobSubmitResult> persistClaimableJobs(Collection<? extends Job> jobs) throws JobException {
+		List<Job> created = jobDataProvider.createJobs(new ArrayList<>(jobs));
+		List<JobSubmitResult> results = new ArrayList<>(jobs.size());
+		int index = 0;
+		for (Job job : jobs){
+			Job jobCreated = created.get(index++);
+			if (jobCreated == null){
+				results.add(new JobSubmitResult(job, new JobException(JobException.DSSJobErrorCode.CREATION_FAILED, "Job creation failed")));
+				continue;
+			}
+			try {
+				claimableJobPersisted(jobCreated);
+			}
+			catch (JobException ex){
+				logger.log(Level.WARNING, String.format("Failed to request the running job of job %s to cancel", jobCreated.getJobId()), ex);
+			}
+			results.add(new JobSubmitResult(jobCreated, null));
+		}
+		return results;
+	}
+
+	/**
+	 * Request the running job of the object of a persisted job to cancel, as the node running the job does
+	 * when a newer job is submitted to it, so that the newer job can be claimed once it finishes.
+	 */
+	private void claimableJobPersisted(Job job) throws JobException {
+		logger.log(Level.FINE, "A new job submitted {0}", job);
+		JobEvents.submitted(job);
+		metrics.recordSubmitted(job);
+		Job runningJob = getRunningJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
+		if (runningJob != null && Job.Status.RUNNING.equals(runningJob.getStatus())){
+			updateJobStatus(runningJob, Job.Status.REQUEST_FOR_CANCEL);
+		}
+	}
+
+	/**
+	 * Claim as many NOT_STARTED jobs from the job data provider as the bulkheads have idle threads for,
+	 * and run them on this node. The batch of a bulkhead is claimed again while it comes back full, so a node
+	 * fills its idle threads in one round, and a busy node leaves the jobs to the other nodes.
+	 * @return count of claimed jobs
+	 * @exception JobException when backend service exception occurs
+	 */
+	public int claimJobs() throws JobException {
+		int claimed = 0;
+		for (Map.Entry<JobBulkhead, Set<Job.JobType>> entry : claimedJobTypes.entrySet()){
+			JobBulkhead bulkhead = entry.getKey();
+			int capacity;
+			while (!isShutdown() && (capacity = bulkhead.getIdleCapacity()) > 0){
+				int batchSize = Math.min(capacity, JOB_CLAIM_MAX_BATCH_SIZE);
+				List<Job> jobs = jobDataProvider.claimJobs(nodeId, new Timestamp(System.currentTimeMillis() + leaseDuration),
+						entry.getValue(), batchSize);
+				for (Job job : jobs){
+					dispatchClaimedJob(bulkhead, job);
+				}
+				claimed += jobs.size();
+				if (jobs.size() < batchSize){
+					break;
+				}
+			}
+		}
+		return claimed;
+	}
+
+	/**
+	 * Sweep the job data provider: delete the finished jobs past the retention period, once the archiver kept them,
+	 * and cancel the running jobs not seen for the max running time. The jobs are swept in bounded batches,
+	 * so that no lock or transaction of the provider grows with the count of jobs to sweep.
+	 * A provider not supporting the batched sweep is swept at once by {@link JobDataProvider#handleLegacyJobs(long)}.
+	 * @return count of swept jobs
+	 * @exception JobException when backend service exception occurs, or the archiver failed
+	 */
+	public int sweepJobs() throws JobException {
+		int swept = 0;
+		int batch;
+		while ((batch = sweepBatch()) >= sweepBatchSize){
+			swept += batch;
+		}
+		return swept + batch;
+	}
+
+	/**
+	 * Sweep a batch of running jobs and a batch of finished jobs. The finished jobs are archived before they are deleted,
+	 * and are left in place when the archiver fails, so they are swept again by the next sweep.
+	 * @return the size of the fuller batch, the batch size if there may be more to sweep
+	 */
+	private int sweepBatch() throws JobException {
+		if (retentionPeriod == 0 && maxRunningTime == 0){
+			return 0;
+		}
+		if (!jobDataProvider.supportsSweeping()){
+			sweepLegacyJobs();
+			return 0;
+		}
+		Timestamp now = jobDataProvider.getCurrentTimestamp();
+		int batch = 0;
+		if (maxRunningTime > 0){
+			List<Job> cured = jobDataProvider.cureStuckJobs(new Timestamp(now.getTime() - maxRunningTime), sweepBatchSize);
+			if (!cured.isEmpty()){
+				metrics.recordSwept(0, cured.size());
+				logger.log(Level.INFO, "Cancelled {0} out of track jobs", cured.size());
+			}
+			batch = cured.size();
+		}
+		if (retentionPeriod > 0){
+			List<Job> finished = jobDataProvider.getFinishedJobs(new Timestamp(now.getTime() - retentionPeriod), sweepBatchSize);
+			if (!finished.isEmpty()){
+				archive(finished);
+				List<Job> deleted = jobDataProvider.deleteFinishedJobs(finished);
+				metrics.recordSwept(deleted.size(), 0);
+				logger.log(Level.INFO, "Swept {0} finished jobs", deleted.size());
+			}
+			batch = Math.max(batch, finished.size());
+		}
+		return batch;
+	}
+
+	private void archive(List<Job> jobs) throws JobException {
+		if (archiver == null){
+			return;
+		}
+		try {
+			archiver.archive(jobs);
+		}
+		catch (Exception ex){
+			throw new JobException(JobException.DSSJobErrorCode.CLEAN_JOB_FAILED,
+					String.format("Failed to archive %d finished jobs, they are kept until the next sweep", jobs.size()), ex);
+		}
+	}
+
+	/**
+	 * Sweep a provider not supporting the batched sweep, with the longer of the retention period and the max running time
+	 * rounded up to minutes as the threshold of both the finished and the running jobs.
+	 */
+	private void sweepLegacyJobs() throws JobException {
+		if (!legacySweepWarned){
+			legacySweepWarned = true;
+			logger.warning(String.format("%s does not support the batched sweep, its jobs are swept at once%s",
+					jobDataProvider.getClass().getName(), archiver == null ? "" : " and are not archived"));
+		}
+		long threshold = Math.max(retentionPeriod, maxRunningTime);
+		int deleted = jobDataProvider.handleLegacyJobs((threshold + TimeUnit.MINUTES.toMillis(1) - 1) / TimeUnit.MINUTES.toMillis(1));
+		if (deleted > 0){
+			metrics.recordSwept(deleted, 0);
+			logger.log(Level.INFO, "Swept {0} finished jobs", deleted);
+		}
+	}
+
+	private void dispatchClaimedJob(JobBulkhead bulkhead, Job job) {
+		logger.log(Level.FINE, "A job claimed {0}", job);
+		JobSubmitTask task = new JobSubmitTask(this, job, claimCallback);
+		task.setClaimed(true);
+		try {
+			bulkhead.execute(task);
+		}
+		catch (RejectedExecutionException ex){
+			//the lease is not renewed anymore, so the job is reclaimed once it expired
+			logger.log(Level.WARNING, String.format("Claimed job %s rejected by executor", job.getJobId()), ex);
 		}
 	}
 
@@ -126,28 +742,16 @@ public class JobManager {
      * @param delay the time from now to delay execution
      * @param unit the time unit of the delay parameter
      * @param callback the callback handler for job completion
+	 * @return the handle to cancel the delayed submission, null when the executor has been shut down
 	 * @exception JobException when job data is empty or not illegal
      */
-	public void scheduleJob(Job job, long delay, TimeUnit unit, JobCallback callback) throws JobException{
-		if (executor == null || executor.isShutdown()){
+	public JobTimingWheel.JobTimeout scheduleJob(Job job, long delay, TimeUnit unit, JobCallback callback) throws JobException{
+		if (isShutdown()){
 			logger.fine("The executor has been shut down.");
-			return;
+			return null;
 		}
 		if (job != null) {
-			JobManager jobManager = this;
-			if (scheduleTimer == null){
-				synchronized (timerLock){
-					if (scheduleTimer == null) {
-						scheduleTimer = new Timer(JOB_RESCHEDULED_SUBMITTER);
-					}
-				}
-			}
-			scheduleTimer.schedule(new TimerTask() {
-				@Override
-				public void run() {
-					executor.execute(new JobSubmitTask(jobManager, job, callback));
-				}
-			}, MILLISECONDS.convert(delay, unit));
+			return scheduleTask(new JobSubmitTask(this, job, callback), delay, unit);
 		}
 		else {
 			logger.warning("Job re-scheduled failed due to empty job entity");
@@ -155,6 +759,100 @@ public class JobManager {
 		}
 
 	}
+
+	private JobTimingWheel.JobTimeout scheduleTask(JobSubmitTask task, long delay, TimeUnit unit) {
+		if (scheduleTimer == null){
+			synchronized (timerLock){
+				if (scheduleTimer == null) {
+					scheduleTimer = newScheduleTimer();
+				}
+			}
+		}
+		return scheduleTimer.schedule(task, delay, unit);
+	}
+
+	private JobTimingWheel newScheduleTimer() {
+		return new JobTimingWheel(JOB_RESCHEDULED_SUBMITTER, JOB_TIMING_WHEEL_TICK_DURATION,
+				MILLISECONDS, JOB_TIMING_WHEEL_SIZE, this::dispatchScheduledJobs);
+	}
+
+	/**
+	 * Park a job until the running job of the same object reaches a terminal status on this node.
+	 * The job is dispatched as soon as that happens, and a fallback submission covers the running
+	 * jobs of other nodes, whose transitions are not seen here.
+	 * @param job the waiting job
+	 * @param callback the callback handler for job completion
+	 * @exception JobException when backend service exception occurs
+	 */
+	void awaitRunningJob(Job job, JobCallback callback) throws JobException {
+		if (isShutdown()){
+			logger.fine("The executor has been shut down.");
+			return;
+		}
+		JobWaiterRegistry.Waiter waiter = waiters.register(job, callback);
+		metrics.recordRescheduled(job);
+		waiter.setFallback(scheduleTask(new JobSubmitTask(this, job, callback, waiter),
+				JOB_SUPERSEDE_FALLBACK_TIMEOUT, MILLISECONDS));
+		//the running job may have finished before the waiter was registered
+		if (getRunningJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType()) == null) {
+			wakeWaiter(JobKey.of(job));
+		}
+	}
+
+	/**
+	 * Drop a waiter which has been claimed by its fallback submission.
+	 * @param waiter the waiter
+	 */
+	void removeWaiter(JobWaiterRegistry.Waiter waiter) {
+		waiters.remove(waiter);
+	}
+
+	private void wakeWaiter(JobKey key) {
+		JobWaiterRegistry.Waiter waiter = waiters.take(key);
+		if (waiter != null) {
+			dispatchWaiter(waiter);
+		}
+	}
+
+	private void dispatchWaiter(JobWaiterRegistry.Waiter waiter) {
+		JobTimingWheel.JobTimeout fallback = waiter.getFallback();
+		if (fallback != null) {
+			fallback.cancel();
+		}
+		if (isShutdown()) {
+			logger.fine("The executor has been shut down, waiting job dropped.");
+			return;
+		}
+		logger.fine(String.format("Waiting job with id %s is dispatched", waiter.getJob().getJobId()));
+		metrics.recordRescheduleDelay(waiter.getJob(), System.nanoTime() - waiter.getRegisterTime());
+		try {
+			getBulkhead(waiter.getJob().getJobType()).execute(new JobSubmitTask(this, waiter.getJob(), waiter.getCallback()));
+		}
+		catch (RejectedExecutionException ex) {
+			logger.log(Level.WARNING, "Waiting job submission rejected by executor", ex);
+		}
+	}
+
+	/**
+	 * Hand the expired delayed submissions of a timing wheel tick to the executor.
+	 * @param tasks the expired submission tasks
+	 */
+	private void dispatchScheduledJobs(List<Runnable> tasks) {
+		for (Runnable task : tasks) {
+			if (isShutdown()) {
+				logger.fine("The executor has been shut down, delayed job submission dropped.");
+				return;
+			}
+			JobSubmitTask submitTask = (JobSubmitTask) task;
+			submitTask.markEnqueued();
+			try {
+				getBulkhead(submitTask.getJob().getJobType()).execute(submitTask);
+			}
+			catch (RejectedExecutionException ex) {
+				logger.log(Level.WARNING, "Delayed job submission rejected by executor", ex);
+			}
+		}
+	}
 	
     /**
      * Check if the job's status changed to Cancelled.
@@ -252,6 +950,20 @@ public class JobManager {
 		return job.getStatus();
 	}
 
+	/**
+	 * Start a job by taking its lease, i.e. updating it to RUNNING, unless this node claimed it and holds the lease.
+	 * @param job the job to be started
+	 * @return false if the job could not be started, e.g. it was cancelled meanwhile
+	 * @exception JobException when backend service exception occurs
+	 */
+	public boolean startJob(Job job) throws JobException {
+		if (Job.Status.RUNNING.equals(job.getStatus()) && nodeId.equals(job.getOwnerId())){
+			addRunningJob(job);
+			return true;
+		}
+		return updateJobStatus(job, Job.Status.RUNNING);
+	}
+
     /**
      * Update only job status and related timestamp properties.
      * @param job the job to be updated
@@ -262,9 +974,19 @@ public class JobManager {
 	public boolean updateJobStatus(Job job, Job.Status status) throws JobException {
         logger.fine(String.format("job with id %s is going to be updated with status %s." , job.getJobId(), status.toString()));
 		job.setStatus(status);
+		if (status == Job.Status.RUNNING){
+			//take the lease of the job
+			job.setOwnerId(nodeId);
+			job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + leaseDuration));
+		}
 		int retCode = jobDataProvider.updateJobStatus(job, status);
 		logger.fine(String.format("job with id %s was updated with status %s. Return code is  %s." , job.getJobId(), status.toString(), retCode));
 		if (retCode == 1){
+			cancellationPoller.publish(job.getJobId(), status);
+			JobHandle handle = handles.get(job.getJobId());
+			if (handle != null){
+				handle.setStatus(status);
+			}
 			switch (status){
 				case NOT_STARTED:
 					break;
@@ -275,7 +997,11 @@ public class JobManager {
 					addRunningJob(job);
 					break;
 				default:
+					job.setLeaseExpiry(null);
+					metrics.recordTerminated(job, status);
+					JobEvents.terminated(job, status);
 					removeRunningJob(job);
+					wakeWaiter(JobKey.of(job));
 					break;
 			}
 			return true;
@@ -283,6 +1009,154 @@ public class JobManager {
         return false;
     }
 
+	/**
+	 * Cancel a job, at once if it has not been started, otherwise by requesting it to cancel.
+	 * @param job the job to be cancelled
+	 * @return false when the job was already finished
+	 * @exception JobException when backend service exception occurs
+	 */
+	public boolean cancelJob(Job job) throws JobException {
+		Job.Status status = getWatchedJobStatus(job);
+		if (Job.Status.NOT_STARTED.equals(status)){
+			if (!updateJobStatus(job, Job.Status.CANCELLED)){
+				return false;
+			}
+			completeJob(job, new JobResult(null, JobResult.ResultType.CANCELLED));
+			return true;
+		}
+		if (Job.Status.RUNNING.equals(status)){
+			return updateJobStatus(job, Job.Status.REQUEST_FOR_CANCEL);
+		}
+		return Job.Status.REQUEST_FOR_CANCEL.equals(status);
+	}
+
+	/**
+	 * Retry a job which returned a FAILED result, if the retry policy of its type retries them.
+	 * @param job the failed job
+	 * @param callback the callback handler for job completion
+	 * @return true if the job will run again, false if it must end
+	 */
+	boolean retryJob(Job job, JobCallback callback) {
+		JobRetryPolicy retryPolicy = getRetryPolicy(job.getJobType());
+		return retryPolicy.isRetryFailedResults() && retryJob(job, retryPolicy, callback);
+	}
+
+	/**
+	 * Retry a job which ended in an error, if the retry policy of its type retries the error.
+	 * @param job the job
+	 * @param cause the error
+	 * @param callback the callback handler for job completion
+	 * @return true if the job will run again, false if it must end
+	 */
+	boolean retryJob(Job job, Throwable cause, JobCallback callback) {
+		JobRetryPolicy retryPolicy = getRetryPolicy(job.getJobType());
+		return retryPolicy.isRetryable(cause) && retryJob(job, retryPolicy, callback);
+	}
+
+	/**
+	 * Put a job back to NOT_STARTED with its next attempt, and submit it again once the backoff delay passed,
+	 * through the timing wheel so that no thread waits for it. When the jobs are claimed, the job is left
+	 * for any node to claim after its retry time instead.
+	 */
+	private boolean retryJob(Job job, JobRetryPolicy retryPolicy, JobCallback callback) {
+		if (!retryPolicy.hasAttemptsLeft(job) || isShutdown()){
+			return false;
+		}
+		int attempt = job.getAttempt();
+		Timestamp retryTime = job.getRetryTime();
+		long delay = retryPolicy.nextDelay(attempt, MILLISECONDS);
+		job.setAttempt(attempt + 1);
+		job.setRetryTime(new Timestamp(System.currentTimeMillis() + delay));
+		try {
+			if (jobDataProvider.retryJob(job) != 1){
+				//cancelled or reclaimed meanwhile
+				job.setAttempt(attempt);
+				job.setRetryTime(retryTime);
+				return false;
+			}
+		}
+		catch (JobException ex){
+			logger.log(Level.WARNING, String.format("Job %s could not be retried", job.getJobId()), ex);
+			job.setAttempt(attempt);
+			job.setRetryTime(retryTime);
+			return false;
+		}
+		logger.info(String.format("Attempt %d of job %s failed, the job is retried in %d ms", attempt, job.getJobId(), delay));
+		job.setStatus(Job.Status.NOT_STARTED);
+		job.setLeaseExpiry(null);
+		cancellationPoller.publish(job.getJobId(), Job.Status.NOT_STARTED);
+		JobHandle handle = handles.get(job.getJobId());
+		if (handle != null){
+			handle.setStatus(Job.Status.NOT_STARTED);
+		}
+		metrics.recordRetried(job);
+		removeRunningJob(job);
+		wakeWaiter(JobKey.of(job));
+		if (!claimJobs){
+			scheduleTask(new JobSubmitTask(this, job, callback), delay, MILLISECONDS);
+		}
+		return true;
+	}
+
+	/**
+	 * Complete the handle of a terminated job, if it was submitted with one.
+	 * @param job the terminated job
+	 * @param result the job result
+	 */
+	void completeJob(Job job, JobResult result) {
+		JobHandle handle = handles.remove(job.getJobId());
+		if (handle != null){
+			handle.complete(result);
+		}
+	}
+
+	/**
+	 * Fail the handle of a job ended in error, if it was submitted with one.
+	 * @param job the job
+	 * @param cause the error
+	 */
+	void failJob(Job job, Throwable cause) {
+		JobHandle handle = handles.remove(job.getJobId());
+		if (handle != null){
+			handle.fail(cause);
+		}
+	}
+
+	/**
+	 * Let the cancellation poller watch a job being processed on this node.
+	 * @param job the job being processed
+	 */
+	void watchJob(Job job) {
+		cancellationPoller.watch(job);
+	}
+
+	/**
+	 * Stop watching a job which is not processed anymore.
+	 * @param job the processed job
+	 */
+	void unwatchJob(Job job) {
+		cancellationPoller.unwatch(job);
+	}
+
+	/**
+	 * Get the status of a job being processed as last seen by the cancellation poller,
+	 * falling back to the provider for the jobs not watched.
+	 * @param job the job
+	 * @return the job status
+	 * @exception JobException when backend service exception occurs
+	 */
+	Job.Status getWatchedJobStatus(Job job) throws JobException {
+		Job.Status status = cancellationPoller.getStatus(job.getJobId());
+		return status != null ? status : getJobStatus(job.getJobId());
+	}
+
+	/**
+	 * Refresh the statuses of the jobs being processed on this node.
+	 */
+	public void pollJobStatuses(){
+		cancellationPoller.poll();
+	}
+
     /**
      * Get current timestamp.
      * @return current timestamp
@@ -300,7 +1174,10 @@ public class JobManager {
         List<String> cancelledIds = jobDataProvider.cancelJobs(stripeName);
 		logger.warning(String.format("All the running jobs of this service '%s' have been cancelled", stripeName));
 		if (cancelledIds != null) {
-			runningJobIds = runningJobIds.stream().filter(id -> !cancelledIds.contains(id)).collect(Collectors.toList());
+			runningJobs.removeAll(cancelledIds);
+		}
+		for (JobWaiterRegistry.Waiter waiter : waiters.takeAll(stripeName)) {
+			dispatchWaiter(waiter);
 		}
 	}
 
@@ -308,25 +1185,52 @@ public class JobManager {
 	 * Shutdown the job thread pool.
 	 */
 	public void stop() {
-		if (scheduleTimer != null){
-			scheduleTimer.cancel();
-			scheduleTimer = null;
+		//the stopped wheel is kept, so the jobs scheduled from now on are dropped rather than start a new wheel
+		synchronized (timerLock){
+			if (scheduleTimer == null){
+				scheduleTimer = newScheduleTimer();
+			}
+			scheduleTimer.stop();
+		}
+		if (daemonTimer != null){
+			daemonTimer.cancel();
+			daemonTimer = null;
 		}
-		if (executor != null && !executor.isShutdown()){
-			executor.shutdown();
+		if (!isShutdown()){
+			List<JobBulkhead> allBulkheads = new ArrayList<>(bulkheads.values());
+			allBulkheads.add(defaultBulkhead);
+			for (JobBulkhead bulkhead : allBulkheads) {
+				bulkhead.shutdown();
+			}
 			try {
 				// Give any running task a chance to finish
 				boolean isDown = false;
 				int count = 0;
 				while (!isDown && count < 5) {
-					isDown = executor.awaitTermination(1, TimeUnit.SECONDS);
+					isDown = true;
+					for (JobBulkhead bulkhead : allBulkheads) {
+						isDown &= bulkhead.awaitTermination(1, TimeUnit.SECONDS);
+					}
 					count ++ ;
 				}
 			} catch (InterruptedException e) {
 				logger.info("Wait for threads termination complete");
 			}
-			executor.shutdownNow();
-			executor = null;
+			for (JobBulkhead bulkhead : allBulkheads) {
+				bulkhead.shutdownNow();
+			}
+			if (metricsMBeanName != null) {
+				try {
+					ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsMBeanName);
+				}
+				catch (JMException ex) {
+					logger.log(Level.FINE, "Failed to unregister the job metrics MBean", ex);
+				}
+				metricsMBeanName = null;
+			}
+			for (JobHandle handle : handles.values()) {
+				failJob(handle.getJob(), new JobException(JobException.DSSJobErrorCode.INTERRUPTED, "The job manager has been stopped"));
+			}
 			logger.warning("Job manager thread pool is shut down");
 		}
 	}
@@ -337,9 +1241,7 @@ public class JobManager {
 	 * @return
 	 */
 	public boolean addRunningJob(Job job){
-		if (!runningJobIds.contains(job.getJobId())) {
-			return runningJobIds.add(job.getJobId());
-		}
+		runningJobs.add(job);
 		return true;
 	}
 
@@ -349,14 +1251,99 @@ public class JobManager {
 	 * @return
 	 */
 	public boolean removeRunningJob(Job job){
-		return runningJobIds.remove(job.getJobId());
+		return runningJobs.remove(job.getJobId());
+	}
+
+	/**
+	 * Get the ids of the jobs of a stripe running on this node.
+	 * @param stripeName The service ID
+	 * @return jobId list
+	 */
+	public List<String> getRunningJobIds(String stripeName){
+		return runningJobs.getJobIds(stripeName);
 	}
 
 	/**
 	 * Keep update running job lastPingTime.
 	 */
 	public void keepOnTrackJobs(){
-		jobDataProvider.keepOnTrackJobs(runningJobIds);
+		jobDataProvider.keepOnTrackJobs(runningJobs.snapshot());
+	}
+
+	/**
+	 * Extend the leases of the jobs running on this node.
+	 */
+	public void renewLeases(){
+		try {
+			jobDataProvider.renewLeases(nodeId, runningJobs.snapshot(), new Timestamp(System.currentTimeMillis() + leaseDuration));
+		}
+		catch (JobException ex){
+			logger.log(Level.WARNING, "Failed to renew the job leases", ex);
+		}
+	}
+
+	/**
+	 * Reclaim the running jobs whose lease expired, e.g. because their node died, so that they do not block
+	 * the new jobs of their objects. The reclaimed jobs are run again on this node or end in ERROR,
+	 * see {@link JobManagerConfig#setRequeueOrphanedJobs(boolean)}. A node still running a reclaimed job
+	 * can not update it anymore.
+	 * @return count of reclaimed jobs
+	 * @exception JobException when backend service exception occurs
+	 */
+	public int reapExpiredLeases() throws JobException {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		Job.Status status = requeueOrphanedJobs ? Job.Status.NOT_STARTED : Job.Status.ERROR;
+		int reclaimed = 0;
+		for (Job job : jobDataProvider.getExpiredLeaseJobs(now, JOB_LEASE_REAP_BATCH_SIZE)){
+			if (jobDataProvider.reclaimJob(job, status, now) != 1){
+				//renewed or changed meanwhile
+				continue;
+			}
+			reclaimed++;
+			logger.warning(String.format("The lease of job %s held by node %s expired at %s, the job is reclaimed as %s",
+					job.getJobId(), job.getOwnerId(), job.getLeaseExpiry(), status));
+			job.setStatus(status);
+			//the handle on this node is failed before its processor sees the job reclaimed, even if the job runs again
+			failJob(job, new JobException(JobException.DSSJobErrorCode.LEASE_LOST,
+					String.format("The lease of job %s expired", job.getJobId())));
+			cancellationPoller.publish(job.getJobId(), status);
+			removeRunningJob(job);
+			if (requeueOrphanedJobs){
+				requeueOrphanedJob(job);
+			}
+			else {
+				metrics.recordTerminated(job, status);
+				JobEvents.terminated(job, status);
+			}
+			wakeWaiter(JobKey.of(job));
+		}
+		return reclaimed;
+	}
+
+	/**
+	 * Run again a reclaimed job on this node. Its callback was lost with its former node.
+	 * @param job the reclaimed job
+	 */
+	private void requeueOrphanedJob(Job job) {
+		if (claimJobs){
+			//left not started for the next claim of any node
+			return;
+		}
+		JobBulkhead bulkhead = getBulkhead(job.getJobType());
+		if (isShutdown() || !bulkhead.getAdmission().tryAcquire()){
+			logger.warning(String.format("Reclaimed job %s could not be queued, it is left not started", job.getJobId()));
+			return;
+		}
+		JobSubmitTask task = new JobSubmitTask(this, job, NO_OP_CALLBACK);
+		task.setAdmission(bulkhead.getAdmission());
+		try {
+			bulkhead.execute(task);
+			metrics.recordSubmitted(job);
+		}
+		catch (RejectedExecutionException ex){
+			bulkhead.getAdmission().release();
+			logger.warning(String.format("Reclaimed job %s could not be queued, it is left not started", job.getJobId()));
+		}
 	}
 
 	/**
@@ -370,6 +1357,16 @@ public class JobManager {
 		}
 		daemonTimer = new Timer(JOB_KEEP_ON_TRACK, true);
 		daemonTimer.schedule(new KeepOnTrackJobsTask(), delay, period);
+		daemonTimer.schedule(new PollJobStatusesTask(), JOB_CANCELLATION_POLL_INTERVAL, JOB_CANCELLATION_POLL_INTERVAL);
+		long renewPeriod = Math.max(1, leaseDuration / 3);
+		daemonTimer.schedule(new RenewLeasesTask(), renewPeriod, renewPeriod);
+		daemonTimer.schedule(new ReapExpiredLeasesTask(), leaseDuration, Math.max(1, leaseDuration / 2));
+		if (claimJobs){
+			daemonTimer.schedule(new ClaimJobsTask(), claimInterval, claimInterval);
+		}
+		if (retentionPeriod > 0 || maxRunningTime > 0){
+			daemonTimer.schedule(new SweepJobsTask(daemonTimer), sweepInterval);
+		}
 	}
 
 	class KeepOnTrackJobsTask extends TimerTask {
@@ -378,4 +1375,92 @@ public class JobManager {
 			keepOnTrackJobs();
 		}
 	}
-}
\ No newline at end of file
+
+	class PollJobStatusesTask extends TimerTask {
+		@Override
+		public void run() {
+			pollJobStatuses();
+		}
+	}
+
+	class RenewLeasesTask extends TimerTask {
+		@Override
+		public void run() {
+			renewLeases();
+		}
+	}
+
+	class ReapExpiredLeasesTask extends TimerTask {
+		@Override
+		public void run() {
+			try {
+				reapExpiredLeases();
+			}
+			catch (JobException | RuntimeException ex) {
+				logger.log(Level.WARNING, "Failed to reap the expired job leases", ex);
+			}
+		}
+	}
+
+	class ClaimJobsTask extends TimerTask {
+		@Override
+		public void run() {
+			try {
+				claimJobs();
+			}
+			catch (JobException | RuntimeException ex) {
+				logger.log(Level.WARNING, "Failed to claim jobs", ex);
+			}
+		}
+	}
+
+	/**
+	 * A batch of the sweep, scheduling the next one: soon while the batches come back full, after a pause a few times
+	 * as long as the batch took so that the sweep takes a small share of the job data provider, and later while
+	 * jobs are queued for want of threads, unless the sweep has been put off for a whole sweep interval already.
+	 * The next batch is scheduled on the same timer, so the sweep stops with it.
+	 */
+	class SweepJobsTask extends TimerTask {
+		private final Timer timer;
+		private final long deferredSince;
+
+		SweepJobsTask(Timer timer) {
+			this(timer, 0);
+		}
+
+		private SweepJobsTask(Timer timer, long deferredSince) {
+			this.timer = timer;
+			this.deferredSince = deferredSince;
+		}
+
+		@Override
+		public void run() {
+			long now = System.currentTimeMillis();
+			if (getQueueDepth() > 0 && (deferredSince == 0 || now - deferredSince < sweepInterval)){
+				schedule(new SweepJobsTask(timer, deferredSince == 0 ? now : deferredSince), JOB_SWEEP_BUSY_PAUSE);
+				return;
+			}
+			long delay = sweepInterval;
+			long startTime = System.nanoTime();
+			try {
+				if (sweepBatch() >= sweepBatchSize){
+					long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+					delay = Math.max(JOB_SWEEP_MIN_PAUSE, elapsed * JOB_SWEEP_PAUSE_FACTOR);
+				}
+			}
+			catch (JobException | RuntimeException ex) {
+				logger.log(Level.WARNING, "Failed to sweep jobs", ex);
+			}
+			schedule(new SweepJobsTask(timer), delay);
+		}
+
+		private void schedule(SweepJobsTask next, long delay) {
+			try {
+				timer.schedule(next, delay);
+			}
+			catch (IllegalStateException ex) {
+				//the timer was cancelled, the sweep goes on with the new daemon timer
+			}
+		}
+	}
+}
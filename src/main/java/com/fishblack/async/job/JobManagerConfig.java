@@ -0,0 +1,353 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.metrics.DefaultJobMetrics;
+import com.fishblack.async.job.metrics.JobMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.fishblack.async.job.JobConstants.*;
+
+/**
+ * The configuration of the job manager.
+ */
+public class JobManagerConfig {
+
+    private int corePoolSize = EXECUTOR_DEFAULT_CORE_POOL_SIZE;
+    private int maxPoolSize = EXECUTOR_DEFAULT_MAX_POOL_SIZE;
+    private int maxQueueSize = EXECUTOR_DEFAULT_MAX_QUEUE_SIZE;
+    private JobAgingPolicy agingPolicy = JobAgingPolicy.NONE;
+    private JobFairSharePolicy fairSharePolicy;
+    private boolean virtualThreads;
+    private JobMetrics metrics = new DefaultJobMetrics();
+    private boolean jmxEnabled = true;
+    private final Map<Job.JobType, JobBulkheadConfig> bulkheads = new EnumMap<>(Job.JobType.class);
+    private final Map<Job.JobType, JobRetryPolicy> retryPolicies = new EnumMap<>(Job.JobType.class);
+    private final List<JobProcessorProvider> processorProviders = new ArrayList<>();
+    private boolean warmUpProcessors;
+    private String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+    private long leaseDuration = JOB_LEASE_DURATION;
+    private boolean requeueOrphanedJobs;
+    private boolean claimJobs;
+    private long claimInterval = JOB_CLAIM_INTERVAL;
+    private JobCallback claimCallback;
+    private long retentionPeriod = JOB_RETENTION_PERIOD;
+    private long maxRunningTime = JOB_MAX_RUNNING_TIME;
+    private long sweepInterval = JOB_SWEEP_INTERVAL;
+    private int sweepBatchSize = JOB_SWEEP_BATCH_SIZE;
+    private JobArchiver archiver;
+
+    public JobManagerConfig() {}
+
+    public JobManagerConfig(int corePoolSize, int maxPoolSize, int maxQueueSize) {
+        this.corePoolSize = corePoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    /**
+     * @param corePoolSize the corePoolSize of the job thread pool
+     */
+    public void setCorePoolSize(int corePoolSize) {
+        this.corePoolSize = corePoolSize;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the maxPoolSize of the job thread pool
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @param maxQueueSize max count of queued jobs, if job request count exceeded this value, may receive
+     *                     JobException for rejection. The jobs enqueued again by the job manager, e.g. the retried
+     *                     ones, are not counted, see {@link JobAdmissionController}
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public JobAgingPolicy getAgingPolicy() {
+        return agingPolicy;
+    }
+
+    /**
+     * @param agingPolicy the aging policy of queued jobs, {@link JobAgingPolicy#NONE} by default
+     */
+    public void setAgingPolicy(JobAgingPolicy agingPolicy) {
+        this.agingPolicy = agingPolicy == null ? JobAgingPolicy.NONE : agingPolicy;
+    }
+
+    public JobFairSharePolicy getFairSharePolicy() {
+        return fairSharePolicy;
+    }
+
+    /**
+     * @param fairSharePolicy the fair share policy of the stripes in every executor, null by default to queue
+     *                        the jobs of all the stripes together by priority
+     */
+    public void setFairSharePolicy(JobFairSharePolicy fairSharePolicy) {
+        this.fairSharePolicy = fairSharePolicy;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @param virtualThreads true to run the jobs on virtual threads on JDK 21 or later, false by default.
+     *                       The max pool size and the max concurrency of the bulkheads are then the counts of jobs
+     *                       running at once, and may be set to thousands for I/O bound jobs.
+     *                       Platform threads are used when the JDK does not support virtual threads.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics the instrumentation of the job manager, a {@link DefaultJobMetrics} by default.
+     *                Use {@link JobMetrics#NONE} to record nothing, or an own implementation to record into another registry.
+     */
+    public void setMetrics(JobMetrics metrics) {
+        this.metrics = metrics == null ? JobMetrics.NONE : metrics;
+    }
+
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * @param jmxEnabled true to register the MBean of a {@link DefaultJobMetrics}, true by default
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    public Map<Job.JobType, JobBulkheadConfig> getBulkheads() {
+        return Collections.unmodifiableMap(bulkheads);
+    }
+
+    /**
+     * Give a job type a dedicated executor. The job types without one share the default executor.
+     * @param jobType the job type
+     * @param maxConcurrency max count of jobs of the type running at the same time
+     * @param maxQueueSize max count of jobs of the type waiting in the queue
+     */
+    public void setBulkhead(Job.JobType jobType, int maxConcurrency, int maxQueueSize) {
+        bulkheads.put(jobType, new JobBulkheadConfig(maxConcurrency, maxQueueSize));
+    }
+
+    public Map<Job.JobType, JobRetryPolicy> getRetryPolicies() {
+        return Collections.unmodifiableMap(retryPolicies);
+    }
+
+    /**
+     * Retry the failed jobs of a type. The job types without a retry policy are not retried.
+     * The callback and the handle of a retried job only learn the outcome of its last attempt.
+     * @param jobType the job type
+     * @param retryPolicy the retry policy, null or {@link JobRetryPolicy#NONE} to not retry
+     */
+    public void setRetryPolicy(Job.JobType jobType, JobRetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            retryPolicies.remove(jobType);
+        }
+        else {
+            retryPolicies.put(jobType, retryPolicy);
+        }
+    }
+
+    public List<JobProcessorProvider> getProcessorProviders() {
+        return Collections.unmodifiableList(processorProviders);
+    }
+
+    /**
+     * Register the processors of a job type, in place of the ones discovered by {@link java.util.ServiceLoader}.
+     * @param provider the processor provider
+     */
+    public void registerProcessor(JobProcessorProvider provider) {
+        processorProviders.add(provider);
+    }
+
+    public boolean isWarmUpProcessors() {
+        return warmUpProcessors;
+    }
+
+    /**
+     * @param warmUpProcessors true to create and warm up all the job processors when the job manager starts,
+     *                         false by default to create them on first use
+     */
+    public void setWarmUpProcessors(boolean warmUpProcessors) {
+        this.warmUpProcessors = warmUpProcessors;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @param nodeId the id of this node as the owner of the leases of its running jobs, unique among the nodes
+     *               sharing a job store, the pid@host name of the JVM by default
+     */
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    /**
+     * @param leaseDuration milliseconds the lease of a running job lasts unless renewed, 30 seconds by default.
+     *                      The leases are renewed every third of it, and a job is reclaimed from its node
+     *                      once its lease expired, so the clocks of the nodes must agree well within it.
+     */
+    public void setLeaseDuration(long leaseDuration) {
+        if (leaseDuration <= 0) {
+            throw new IllegalArgumentException("Lease duration must be positive");
+        }
+        this.leaseDuration = leaseDuration;
+    }
+
+    public boolean isRequeueOrphanedJobs() {
+        return requeueOrphanedJobs;
+    }
+
+    /**
+     * @param requeueOrphanedJobs true to run again the jobs reclaimed from a node which lost their leases,
+     *                            false by default to end them in ERROR
+     */
+    public void setRequeueOrphanedJobs(boolean requeueOrphanedJobs) {
+        this.requeueOrphanedJobs = requeueOrphanedJobs;
+    }
+
+    public boolean isClaimJobs() {
+        return claimJobs;
+    }
+
+    /**
+     * @param claimJobs true to only persist the submitted jobs, and let every node claim them from the job data provider
+     *                  as it has idle threads, so the load is spread over the nodes sharing the job store.
+     *                  False by default to run the jobs on the node they were submitted to.
+     *                  The claimed jobs are run with the claim callback, not with the callback given at submission,
+     *                  and {@link JobManager#submitJobAsync(Job)} is not supported.
+     */
+    public void setClaimJobs(boolean claimJobs) {
+        this.claimJobs = claimJobs;
+    }
+
+    public long getClaimInterval() {
+        return claimInterval;
+    }
+
+    /**
+     * @param claimInterval milliseconds between the claims of jobs, 1 second by default
+     */
+    public void setClaimInterval(long claimInterval) {
+        if (claimInterval <= 0) {
+            throw new IllegalArgumentException("Claim interval must be positive");
+        }
+        this.claimInterval = claimInterval;
+    }
+
+    public JobCallback getClaimCallback() {
+        return claimCallback;
+    }
+
+    /**
+     * @param claimCallback the callback handler for the completion of the claimed jobs, none by default
+     */
+    public void setClaimCallback(JobCallback claimCallback) {
+        this.claimCallback = claimCallback;
+    }
+
+    public long getRetentionPeriod() {
+        return retentionPeriod;
+    }
+
+    /**
+     * @param retentionPeriod milliseconds the finished jobs are kept after their end, 1 day by default.
+     *                        Older ones are swept from the job data provider, 0 to keep them forever.
+     */
+    public void setRetentionPeriod(long retentionPeriod) {
+        if (retentionPeriod < 0) {
+            throw new IllegalArgumentException("Retention period must not be negative");
+        }
+        this.retentionPeriod = retentionPeriod;
+    }
+
+    public long getMaxRunningTime() {
+        return maxRunningTime;
+    }
+
+    /**
+     * @param maxRunningTime milliseconds a running job may go without being seen, i.e. started or pinged by its node,
+     *                       before it is swept to CANCELLED, 1 day by default, 0 to never sweep running jobs
+     */
+    public void setMaxRunningTime(long maxRunningTime) {
+        if (maxRunningTime < 0) {
+            throw new IllegalArgumentException("Max running time must not be negative");
+        }
+        this.maxRunningTime = maxRunningTime;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * @param sweepInterval milliseconds between the sweeps of the jobs, 1 minute by default.
+     *                      A sweep goes on in batches while they come back full, pausing between them.
+     */
+    public void setSweepInterval(long sweepInterval) {
+        if (sweepInterval <= 0) {
+            throw new IllegalArgumentException("Sweep interval must be positive");
+        }
+        this.sweepInterval = sweepInterval;
+    }
+
+    public int getSweepBatchSize() {
+        return sweepBatchSize;
+    }
+
+    /**
+     * @param sweepBatchSize max count of jobs deleted, or cancelled, by a batch of a sweep, 100 by default
+     */
+    public void setSweepBatchSize(int sweepBatchSize) {
+        if (sweepBatchSize <= 0) {
+            throw new IllegalArgumentException("Sweep batch size must be positive");
+        }
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    public JobArchiver getArchiver() {
+        return archiver;
+    }
+
+    /**
+     * @param archiver the archiver of the swept finished jobs, none by default
+     */
+    public void setArchiver(JobArchiver archiver) {
+        this.archiver = archiver;
+    }
+}
@@ -15,4 +15,12 @@ public interface JobProcessor<T extends Job> {
      */
     void processJob(T job, JobCallback<T> callback) throws JobException;
 
+    /**
+     * Prepare the processor before its first job, e.g. load codecs or fill caches.
+     * Called by {@link JobProcessorRegistry#warmUp()} when the warm-up is configured.
+     * @throws JobException
+     */
+    default void warmUp() throws JobException {
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.fishblack.async.job;
+
+/**
+ * The provider of the processors of a job type, registered in the {@link JobProcessorRegistry} explicitly by
+ * {@link JobManagerConfig#registerProcessor(JobProcessorProvider)} or discovered by {@link java.util.ServiceLoader}
+ * from META-INF/services/com.fishblack.async.job.JobProcessorProvider.
+ */
+public interface JobProcessorProvider {
+
+    /**
+     * @return the job type processed by the processors of this provider
+     */
+    Job.JobType getJobType();
+
+    /**
+     * Create a processor.
+     * @param jobManager the job manager
+     * @return the new processor
+     */
+    JobProcessor<? extends Job> createProcessor(JobManager jobManager);
+
+    /**
+     * Get the count of the processors kept for the job type.
+     * A stateless processor is shared by all the jobs of the type, while each instance of a stateful one is used by
+     * one job at a time, so that many jobs of the type run at once at most and the others wait for an instance.
+     * @return 0 for a stateless processor, the pool size otherwise
+     */
+    default int getPoolSize() {
+        return 0;
+    }
+}
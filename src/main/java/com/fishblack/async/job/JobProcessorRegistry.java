@@ -0,0 +1,214 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The registry of the processors of each job type.
+ * The providers found by {@link ServiceLoader} are registered first, then the ones of the configuration, which
+ * replace the discovered ones of the same job type.
+ * The processors are created on first use, or all at once by {@link #warmUp()}, and are then reused:
+ * a stateless processor is a singleton, a stateful one is taken from a bounded pool and must be released after use.
+ */
+public class JobProcessorRegistry {
+
+    private static final Logger logger = Logger.getLogger(JobProcessorRegistry.class.getName());
+    private final JobManager jobManager;
+    private final Map<Job.JobType, Entry> entries = new EnumMap<>(Job.JobType.class);
+
+    /**
+     * Constructor of this class
+     * @param jobManager the job manager given to the processors
+     * @param providers the providers registered explicitly
+     */
+    JobProcessorRegistry(JobManager jobManager, Iterable<JobProcessorProvider> providers) {
+        this.jobManager = jobManager;
+        for (JobProcessorProvider provider : ServiceLoader.load(JobProcessorProvider.class,
+                JobProcessorRegistry.class.getClassLoader())) {
+            register(provider);
+        }
+        for (JobProcessorProvider provider : providers) {
+            register(provider);
+        }
+    }
+
+    private void register(JobProcessorProvider provider) {
+        logger.log(Level.INFO, "Registering job processor provider {0} for {1}, poolSize={2}",
+                new Object[] {provider.getClass().getName(), provider.getJobType(), provider.getPoolSize()});
+        entries.put(provider.getJobType(), provider.getPoolSize() > 0 ? new PooledEntry(provider) : new SingletonEntry(provider));
+    }
+
+    public boolean isRegistered(Job.JobType jobType) {
+        return entries.containsKey(jobType);
+    }
+
+    /**
+     * Take the processor of a job type, waiting for a pooled processor to be released if all are in use.
+     * @param jobType the job type
+     * @return the processor, to be given back by {@link #release(Job.JobType, JobProcessor)}
+     * @exception JobException when no processor is registered for the job type, or the wait is interrupted
+     */
+    public JobProcessor<? extends Job> acquire(Job.JobType jobType) throws JobException {
+        return getEntry(jobType).acquire();
+    }
+
+    /**
+     * Give back a processor taken by {@link #acquire(Job.JobType)}.
+     * @param jobType the job type
+     * @param processor the processor
+     */
+    public void release(Job.JobType jobType, JobProcessor<? extends Job> processor) {
+        Entry entry = entries.get(jobType);
+        if (entry != null) {
+            entry.release(processor);
+        }
+    }
+
+    /**
+     * Create a new processor of a job type, not kept by the registry.
+     * @param jobType the job type
+     * @return the new processor
+     * @exception JobException when no processor is registered for the job type
+     */
+    JobProcessor<? extends Job> createProcessor(Job.JobType jobType) throws JobException {
+        return getEntry(jobType).provider.createProcessor(jobManager);
+    }
+
+    /**
+     * Create all the processors and warm them up, so the first jobs do not pay for their setup.
+     * A processor failing to warm up is logged and kept.
+     */
+    public void warmUp() {
+        for (Map.Entry<Job.JobType, Entry> entry : entries.entrySet()) {
+            logger.log(Level.INFO, "Warming up the job processors of {0}", entry.getKey());
+            entry.getValue().warmUp();
+        }
+    }
+
+    private Entry getEntry(Job.JobType jobType) throws JobException {
+        Entry entry = entries.get(jobType);
+        if (entry == null) {
+            throw new JobException(JobException.DSSJobErrorCode.JOB_TYPE_NOT_SUPPORTED,
+                    String.format("Not supported job type %s", jobType));
+        }
+        return entry;
+    }
+
+    private static void warmUpProcessor(JobProcessor<? extends Job> processor) {
+        try {
+            processor.warmUp();
+        }
+        catch (JobException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Job processor warm-up failed", ex);
+        }
+    }
+
+    private abstract class Entry {
+        final JobProcessorProvider provider;
+
+        Entry(JobProcessorProvider provider) {
+            this.provider = provider;
+        }
+
+        abstract JobProcessor<? extends Job> acquire() throws JobException;
+
+        abstract void release(JobProcessor<? extends Job> processor);
+
+        abstract void warmUp();
+    }
+
+    private final class SingletonEntry extends Entry {
+        private volatile JobProcessor<? extends Job> processor;
+
+        SingletonEntry(JobProcessorProvider provider) {
+            super(provider);
+        }
+
+        @Override
+        JobProcessor<? extends Job> acquire() {
+            JobProcessor<? extends Job> current = processor;
+            if (current == null) {
+                synchronized (this) {
+                    current = processor;
+                    if (current == null) {
+                        current = provider.createProcessor(jobManager);
+                        processor = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        @Override
+        void release(JobProcessor<? extends Job> processor) {
+        }
+
+        @Override
+        void warmUp() {
+            warmUpProcessor(acquire());
+        }
+    }
+
+    private final class PooledEntry extends Entry {
+        private final Semaphore permits;
+        private final ConcurrentLinkedQueue<JobProcessor<? extends Job>> idle = new ConcurrentLinkedQueue<>();
+
+        PooledEntry(JobProcessorProvider provider) {
+            super(provider);
+            this.permits = new Semaphore(provider.getPoolSize());
+        }
+
+        @Override
+        JobProcessor<? extends Job> acquire() throws JobException {
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new JobException(JobException.DSSJobErrorCode.INTERRUPTED,
+                        "Interrupted while waiting for a job processor", ex);
+            }
+            JobProcessor<? extends Job> processor = idle.poll();
+            if (processor == null) {
+                try {
+                    processor = provider.createProcessor(jobManager);
+                }
+                catch (RuntimeException ex) {
+                    permits.release();
+                    throw ex;
+                }
+            }
+            return processor;
+        }
+
+        @Override
+        void release(JobProcessor<? extends Job> processor) {
+            idle.offer(processor);
+            permits.release();
+        }
+
+        @Override
+        void warmUp() {
+            //create the processors missing from the pool and warm up all the idle ones
+            int available = permits.drainPermits();
+            try {
+                for (int i = idle.size(); i < available; i++) {
+                    idle.offer(provider.createProcessor(jobManager));
+                }
+                for (JobProcessor<? extends Job> processor : idle) {
+                    warmUpProcessor(processor);
+                }
+            }
+            finally {
+                permits.release(available);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The retry policy of the jobs of a type.
+ * A job which returned a FAILED result, or ended in an error of a retryable code, is put back to NOT_STARTED and run
+ * again until it made the max count of attempts. The retry after attempt n waits for a random delay between 0 and
+ * the initial delay times 2^(n-1), capped at the max delay, i.e. an exponential backoff with full jitter, so the jobs
+ * which failed together, e.g. on an outage of a backend, are not retried together.
+ */
+public class JobRetryPolicy {
+
+    /**
+     * The error codes retried by default, the ones of a failed execution and of the job store.
+     */
+    public static final Set<JobException.DSSJobErrorCode> DEFAULT_RETRYABLE_ERRORS = Collections.unmodifiableSet(EnumSet.of(
+            JobException.DSSJobErrorCode.JOB_EXECUTION_FAILED,
+            JobException.DSSJobErrorCode.QUERY_ERROR,
+            JobException.DSSJobErrorCode.UPDATE_FAILED));
+
+    /**
+     * No retry, every attempt is the last one.
+     */
+    public static final JobRetryPolicy NONE = new JobRetryPolicy(1, 0, 0, TimeUnit.MILLISECONDS);
+
+    private final int maxAttempts;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final boolean retryFailedResults;
+    private final Set<JobException.DSSJobErrorCode> retryableErrors;
+
+    /**
+     * Constructor of a policy retrying the FAILED results and the {@link #DEFAULT_RETRYABLE_ERRORS}.
+     * @param maxAttempts max count of attempts of a job, the first run included
+     * @param initialDelay the delay bound of the first retry
+     * @param maxDelay the delay bound of any retry
+     * @param unit the time unit of the delays
+     */
+    public JobRetryPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit) {
+        this(maxAttempts, initialDelay, maxDelay, unit, true, DEFAULT_RETRYABLE_ERRORS);
+    }
+
+    /**
+     * Constructor of this class
+     * @param maxAttempts max count of attempts of a job, the first run included
+     * @param initialDelay the delay bound of the first retry
+     * @param maxDelay the delay bound of any retry
+     * @param unit the time unit of the delays
+     * @param retryFailedResults true to retry the jobs returning a FAILED result
+     * @param retryableErrors the codes of the job exceptions to be retried, an error of another code ends the job
+     */
+    public JobRetryPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit, boolean retryFailedResults,
+                          Set<JobException.DSSJobErrorCode> retryableErrors) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+        if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Initial delay must not be negative nor exceed max delay");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = unit.toMillis(initialDelay);
+        this.maxDelay = unit.toMillis(maxDelay);
+        this.retryFailedResults = retryFailedResults;
+        this.retryableErrors = retryableErrors.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(retryableErrors));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialDelay(TimeUnit unit) {
+        return unit.convert(initialDelay, TimeUnit.MILLISECONDS);
+    }
+
+    public long getMaxDelay(TimeUnit unit) {
+        return unit.convert(maxDelay, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRetryFailedResults() {
+        return retryFailedResults;
+    }
+
+    public Set<JobException.DSSJobErrorCode> getRetryableErrors() {
+        return retryableErrors;
+    }
+
+    /**
+     * Tell whether a job may be retried after its current attempt.
+     * @param job the job
+     * @return true if the job made less than the max count of attempts
+     */
+    public boolean hasAttemptsLeft(Job job) {
+        return job.getAttempt() < maxAttempts;
+    }
+
+    /**
+     * Tell whether an error is worth a retry.
+     * @param cause the error a job ended in
+     * @return true for a job exception of a retryable code
+     */
+    public boolean isRetryable(Throwable cause) {
+        return cause instanceof JobException && retryableErrors.contains(((JobException) cause).getErrorCode());
+    }
+
+    /**
+     * Draw the delay of the retry after an attempt.
+     * @param attempt the number of the failed attempt, from 1
+     * @param unit the time unit of the delay
+     * @return a random delay between 0 and the backoff bound of the attempt
+     */
+    public long nextDelay(int attempt, TimeUnit unit) {
+        int shift = Math.max(0, attempt - 1);
+        //the bound stays at max delay once doubling the initial delay would overflow
+        long bound = shift < Long.numberOfLeadingZeros(initialDelay) - 1 ? Math.min(maxDelay, initialDelay << shift) : maxDelay;
+        long delay = bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound);
+        return unit.convert(delay, TimeUnit.MILLISECONDS);
+    }
+}
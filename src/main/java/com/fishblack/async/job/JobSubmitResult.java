@@ -0,0 +1,43 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+/**
+ * The result of one job of a batch submission.
+ */
+public class JobSubmitResult {
+
+    private final Job job;
+    private final JobException error;
+
+    public JobSubmitResult(Job job, JobException error) {
+        this.job = job;
+        this.error = error;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    /**
+     * @return true if the job was persisted and queued
+     */
+    public boolean isAccepted() {
+        return error == null;
+    }
+
+    /**
+     * Get the reason of the rejection, e.g. a {@link com.fishblack.async.job.exception.JobRejectedException}
+     * when the job queue was full.
+     * @return the error or null if the job was accepted
+     */
+    public JobException getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "[JobSubmitResult: jobId=" + (job == null ? null : job.getJobId()) + ", accepted=" + isAccepted() +
+                (error == null ? "" : ", error=" + error.getErrorCode()) + "]";
+    }
+}
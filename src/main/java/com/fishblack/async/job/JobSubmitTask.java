@@ -1,8 +1,9 @@
 package com.fishblack.async.job;
 
 import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.jfr.JobEvents;
 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,72 +13,194 @@ import java.util.logging.Logger;
 @SuppressWarnings("unchecked")
 public class JobSubmitTask implements Runnable, Comparable<JobSubmitTask> {
 	private static final Logger logger = Logger.getLogger(JobSubmitTask.class.getName());
+	private static final AtomicLong SEQUENCE = new AtomicLong();
 	private Job job;
 	private JobCallback callback;
 	private JobManager jobManager;
+	private JobWaiterRegistry.Waiter waiter;
+	private JobAdmissionController admission;
+	private boolean claimed;
+	private long sequence;
+	private long enqueueTime;
+	private long rank;
 
 	public JobSubmitTask(JobManager jobManager, Job job, JobCallback callback) {
 		super();
 		this.jobManager = jobManager;
 		this.job = job;
 		this.callback = callback;
+		markEnqueued();
+	}
+
+	/**
+	 * Constructor of the fallback submission of a waiting job, which only runs if the waiter has not been woken up.
+	 * @param jobManager the job manager
+	 * @param job the waiting job
+	 * @param callback the callback handler for job completion
+	 * @param waiter the waiter of the job
+	 */
+	JobSubmitTask(JobManager jobManager, Job job, JobCallback callback, JobWaiterRegistry.Waiter waiter) {
+		this(jobManager, job, callback);
+		this.waiter = waiter;
+	}
+
+	/**
+	 * Let the task hold the admission permit of its job until it leaves the executor queue.
+	 * @param admission the admission control which granted the permit
+	 */
+	void setAdmission(JobAdmissionController admission) {
+		this.admission = admission;
+	}
+
+	/**
+	 * Mark the job of the task as claimed by this node, i.e. already running under the lease of this node,
+	 * so it is processed without the checks against the other jobs of its object.
+	 * @param claimed true if the job was claimed
+	 */
+	void setClaimed(boolean claimed) {
+		this.claimed = claimed;
+	}
+
+	/**
+	 * Stamp the task with its enqueue order and its rank under the aging policy.
+	 * Must be called before the task is handed to the executor, and not while it is queued.
+	 */
+	void markEnqueued() {
+		this.sequence = SEQUENCE.incrementAndGet();
+		this.enqueueTime = System.nanoTime();
+		this.rank = jobManager.getAgingPolicy().rank(job.getPriority(), enqueueTime);
+	}
+
+	Job getJob() {
+		return job;
+	}
+
+	/**
+	 * Get the time the task was enqueued.
+	 * @return the {@link System#nanoTime()} of enqueue
+	 */
+	public long getEnqueueTime() {
+		return enqueueTime;
 	}
 
     /**
      * The whole process of the submission task.
      * Do nothing when found latest job is not current job.
      * Do nothing when found latest job is running.
-     * Request to cancel previous running job and then reschedule a submission.
+     * Request to cancel previous running job and then wait for it to finish.
      * Start to process current job.
      */
 	@Override
 	public void run() {
-		try {
-			Job latestJob = jobManager.getLatestJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
-			if (latestJob == null){
-				//job cleaned.
+		if (admission != null) {
+			admission.release();
+			admission = null;
+		}
+		if (waiter != null) {
+			if (!waiter.claim()) {
+				//woken up already by the finish of the running job
 				return;
 			}
-			//get Running job (contains job in RUNNING or REQUEST_FOR_CANCEL status)
-			Job runningJob = jobManager.getRunningJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
-
-			if (!job.getJobId().equals(latestJob.getJobId())) {
-				//other nodes submitted new job, do nothing
+			jobManager.removeWaiter(waiter);
+			jobManager.getMetrics().recordRescheduleDelay(job, System.nanoTime() - waiter.getRegisterTime());
+		}
+		else {
+			jobManager.getMetrics().recordQueueWait(job, System.nanoTime() - enqueueTime);
+		}
+		JobEvents.dequeued(job, System.nanoTime() - enqueueTime);
+		try {
+			if (!claimed && !isReadyToRun()) {
 				return;
 			}
 
-			if (runningJob != null) {
-				//request existing job to cancel
-				if (runningJob.getStatus().equals(Job.Status.RUNNING)) {
-					jobManager.updateJobStatus(runningJob, Job.Status.REQUEST_FOR_CANCEL);
-				}
-				//try to submit it again 10 seconds later
-				jobManager.scheduleJob(job, 10, TimeUnit.SECONDS, callback);
-				return;
+			JobProcessorRegistry processors = jobManager.getProcessorRegistry();
+			JobProcessor processor = processors.acquire(job.getJobType());
+			try {
+				processor.processJob(job, callback);
+			}
+			finally {
+				processors.release(job.getJobType(), processor);
 			}
-
-			JobProcessor processor = JobProcessorFactory.createJobProcessor(jobManager, job.getJobType());
-			processor.processJob(job, callback);
 		}
 		catch (JobException ex){
 			if (ex.getErrorCode().equals(JobException.DSSJobErrorCode.INTERRUPTED)){
 				logger.log(Level.INFO, ex.getErrorMessage());
+				jobManager.failJob(job, ex);
 			}
 			else {
-				logger.log(Level.WARNING, "Job execution error", ex);
-				try {
-					jobManager.updateJobStatus(job, Job.Status.ERROR);
-					callback.onException(jobManager, job, ex);
-				} catch (JobException e) {
-					callback.onException(jobManager, job, e);
-				}
+				handleError(ex);
+			}
+		}
+		catch (RuntimeException ex){
+			//end the job rather than leave it running
+			handleError(new JobException(JobException.DSSJobErrorCode.JOB_EXECUTION_FAILED, "Job execution error", ex));
+		}
+
+	}
+
+	/**
+	 * Check the job against the other jobs of its object.
+	 * @return true if the job can be processed, false if it was superseded, cancelled, or rescheduled
+	 * to wait for the running job of its object
+	 */
+	private boolean isReadyToRun() throws JobException {
+		Job latestJob = jobManager.getLatestJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
+		if (latestJob == null){
+			//job cleaned.
+			jobManager.completeJob(job, new JobResult(null, JobResult.ResultType.CANCELLED));
+			return false;
+		}
+		//get Running job (contains job in RUNNING or REQUEST_FOR_CANCEL status)
+		Job runningJob = jobManager.getRunningJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
+
+		if (!job.getJobId().equals(latestJob.getJobId())) {
+			//other nodes submitted new job, do nothing
+			jobManager.completeJob(job, new JobResult(null, JobResult.ResultType.CANCELLED));
+			return false;
+		}
+
+		if (Job.Status.CANCELLED.equals(latestJob.getStatus())) {
+			//cancelled before it started
+			jobManager.completeJob(job, new JobResult(null, JobResult.ResultType.CANCELLED));
+			return false;
+		}
+
+		if (runningJob != null) {
+			//request existing job to cancel
+			if (runningJob.getStatus().equals(Job.Status.RUNNING)) {
+				jobManager.updateJobStatus(runningJob, Job.Status.REQUEST_FOR_CANCEL);
 			}
+			//submit it again once the running job finishes
+			JobEvents.rescheduled(job);
+			jobManager.awaitRunningJob(job, callback);
+			return false;
 		}
+		return true;
+	}
 
+	private void handleError(JobException ex) {
+		logger.log(Level.WARNING, "Job execution error", ex);
+		if (jobManager.retryJob(job, ex, callback)) {
+			return;
+		}
+		try {
+			//the status is saved before the handle is failed, so that its waiters read the job in ERROR
+			jobManager.updateJobStatus(job, Job.Status.ERROR);
+			jobManager.failJob(job, ex);
+			callback.onException(jobManager, job, ex);
+		} catch (JobException e) {
+			jobManager.failJob(job, e);
+			callback.onException(jobManager, job, e);
+		}
 	}
 
+	/**
+	 * Order by rank, i.e. by priority or by aged priority, and then first in first out.
+	 */
 	@Override
 	public int compareTo(JobSubmitTask o) {
-		return Integer.compare( job.getPriority().value() , o.job.getPriority().value());
+		//ranks may be nanoTime based, so compare the difference to stay safe from overflow
+		int result = Long.signum(rank - o.rank);
+		return result != 0 ? result : Long.compare(sequence, o.sequence);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,374 @@
+package com.fishblack.async.job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel for delayed job submissions.
+ * Scheduling and cancelling are O(1): new timeouts are handed over through a lock-free queue and
+ * placed into their bucket by the wheel thread, which on every tick collects the expired tasks of
+ * the current bucket and hands them to the dispatcher as one batch.
+ * The wheel thread never runs the tasks itself, so a slow or failing task can not delay the others.
+ */
+public class JobTimingWheel {
+	private static final Logger logger = Logger.getLogger(JobTimingWheel.class.getName());
+
+	//bound the transfer work of a single tick when a storm of timeouts are scheduled at once
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private static final int STATE_INIT = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_STOPPED = 2;
+
+	private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+	private final long tickDuration;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<JobTimeout> newTimeouts = new ConcurrentLinkedQueue<>();
+	private final Queue<JobTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	private final AtomicLong pendingTimeouts = new AtomicLong();
+	private final Consumer<List<Runnable>> dispatcher;
+	private final Thread workerThread;
+	private final List<Runnable> unprocessedTasks = new ArrayList<>();
+	private volatile long startTime;
+	private long tick;
+
+	/**
+	 * Constructor of this class
+	 * @param threadName name of the wheel thread
+	 * @param tickDuration the duration between ticks
+	 * @param unit the time unit of the tickDuration parameter
+	 * @param wheelSize count of buckets, rounded up to a power of two
+	 * @param dispatcher receives the tasks expired in a tick
+	 */
+	public JobTimingWheel(String threadName, long tickDuration, TimeUnit unit, int wheelSize,
+						  Consumer<List<Runnable>> dispatcher) {
+		if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Illegal tick duration or wheel size");
+		}
+		int size = 1;
+		while (size < wheelSize) {
+			size <<= 1;
+		}
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.tickDuration = unit.toNanos(tickDuration);
+		this.dispatcher = dispatcher;
+		this.workerThread = new Thread(this::runWheel, threadName);
+		this.workerThread.setDaemon(true);
+	}
+
+	/**
+	 * Schedule a task to be dispatched after the delay.
+	 * The task is dispatched within one tick after it expires. A task scheduled once the wheel has been stopped
+	 * is dropped, e.g. the retry of a job failing during the shutdown, and its handle is cancelled already.
+	 * @param task the task to be dispatched
+	 * @param delay the time from now to delay dispatch
+	 * @param unit the time unit of the delay parameter
+	 * @return the handle to cancel the task
+	 */
+	public JobTimeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if (!start()) {
+			logger.fine("Job timing wheel has been stopped, the task is dropped");
+			JobTimeout timeout = new JobTimeout(this, task, 0);
+			timeout.state = JobTimeout.ST_CANCELLED;
+			return timeout;
+		}
+		JobTimeout timeout = new JobTimeout(this, task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime);
+		pendingTimeouts.incrementAndGet();
+		newTimeouts.add(timeout);
+		if (state.get() == STATE_STOPPED) {
+			//stopped meanwhile, the wheel thread may be done with the new timeouts
+			timeout.cancel();
+		}
+		return timeout;
+	}
+
+	/**
+	 * Get count of tasks waiting for expiration.
+	 * @return pending task count
+	 */
+	public long getPendingCount() {
+		return pendingTimeouts.get();
+	}
+
+	/**
+	 * Stop the wheel thread.
+	 * @return the tasks which have not been dispatched
+	 */
+	public List<Runnable> stop() {
+		if (state.getAndSet(STATE_STOPPED) != STATE_STARTED) {
+			return new ArrayList<>();
+		}
+		workerThread.interrupt();
+		try {
+			workerThread.join(1000);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (unprocessedTasks) {
+			return new ArrayList<>(unprocessedTasks);
+		}
+	}
+
+	/**
+	 * Start the wheel thread unless it is started already.
+	 * @return false if the wheel has been stopped
+	 */
+	private boolean start() {
+		switch (state.get()) {
+			case STATE_INIT:
+				if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+					startTime = System.nanoTime();
+					workerThread.start();
+				}
+				else if (state.get() == STATE_STOPPED) {
+					return false;
+				}
+				break;
+			case STATE_STARTED:
+				break;
+			default:
+				return false;
+		}
+		while (startTime == 0) {
+			//the start time is published by the thread which started the wheel
+			Thread.yield();
+		}
+		return true;
+	}
+
+	private void runWheel() {
+		List<Runnable> expired = new ArrayList<>();
+		while (state.get() == STATE_STARTED) {
+			long deadline = waitForNextTick();
+			if (deadline < 0) {
+				break;
+			}
+			removeCancelledTimeouts();
+			transferTimeoutsToBuckets();
+			wheel[(int) (tick & mask)].expireTimeouts(deadline, expired);
+			tick++;
+			if (!expired.isEmpty()) {
+				dispatch(expired);
+				expired = new ArrayList<>();
+			}
+		}
+		synchronized (unprocessedTasks) {
+			for (Bucket bucket : wheel) {
+				bucket.drainTasks(unprocessedTasks);
+			}
+			JobTimeout timeout;
+			while ((timeout = newTimeouts.poll()) != null) {
+				if (!timeout.isCancelled()) {
+					unprocessedTasks.add(timeout.task);
+				}
+			}
+		}
+	}
+
+	private void dispatch(List<Runnable> expired) {
+		try {
+			dispatcher.accept(expired);
+		}
+		catch (Throwable t) {
+			logger.log(Level.WARNING, "Failed to dispatch expired job tasks", t);
+		}
+	}
+
+	/**
+	 * Sleep until the next tick.
+	 * @return the deadline of the tick relative to the start time, or -1 when the wheel was stopped
+	 */
+	private long waitForNextTick() {
+		long deadline = tickDuration * (tick + 1);
+		while (true) {
+			long currentTime = System.nanoTime() - startTime;
+			long sleepMillis = (deadline - currentTime + 999999) / 1000000;
+			if (sleepMillis <= 0) {
+				return currentTime;
+			}
+			try {
+				Thread.sleep(sleepMillis);
+			}
+			catch (InterruptedException ex) {
+				if (state.get() == STATE_STOPPED) {
+					return -1;
+				}
+			}
+		}
+	}
+
+	private void transferTimeoutsToBuckets() {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			JobTimeout timeout = newTimeouts.poll();
+			if (timeout == null) {
+				break;
+			}
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long calculated = timeout.deadline / tickDuration;
+			timeout.remainingRounds = (calculated - tick) / wheel.length;
+			//schedule the ones already expired into the current tick
+			long ticks = Math.max(calculated, tick);
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelledTimeouts() {
+		JobTimeout timeout;
+		while ((timeout = cancelledTimeouts.poll()) != null) {
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * The handle of a scheduled task.
+	 */
+	public static final class JobTimeout {
+		private static final int ST_PENDING = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+		private static final AtomicIntegerFieldUpdater<JobTimeout> STATE_UPDATER =
+				AtomicIntegerFieldUpdater.newUpdater(JobTimeout.class, "state");
+
+		private final JobTimingWheel timingWheel;
+		private final Runnable task;
+		private final long deadline;
+		private volatile int state = ST_PENDING;
+
+		//the fields below are only touched by the wheel thread
+		private long remainingRounds;
+		private JobTimeout next;
+		private JobTimeout prev;
+		private Bucket bucket;
+
+		private JobTimeout(JobTimingWheel timingWheel, Runnable task, long deadline) {
+			this.timingWheel = timingWheel;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancel the task if it has not been dispatched yet.
+		 * @return true if the task was cancelled by this call
+		 */
+		public boolean cancel() {
+			if (!STATE_UPDATER.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+				return false;
+			}
+			timingWheel.pendingTimeouts.decrementAndGet();
+			timingWheel.cancelledTimeouts.add(this);
+			return true;
+		}
+
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state == ST_EXPIRED;
+		}
+
+		public Runnable getTask() {
+			return task;
+		}
+
+		private boolean expire() {
+			if (!STATE_UPDATER.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+				return false;
+			}
+			timingWheel.pendingTimeouts.decrementAndGet();
+			return true;
+		}
+	}
+
+	/**
+	 * A doubly linked list of the timeouts of a wheel slot, only touched by the wheel thread.
+	 */
+	private static final class Bucket {
+		private JobTimeout head;
+		private JobTimeout tail;
+
+		void add(JobTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			}
+			else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expireTimeouts(long deadline, List<Runnable> expired) {
+			JobTimeout timeout = head;
+			while (timeout != null) {
+				JobTimeout next = timeout.next;
+				if (timeout.isCancelled()) {
+					remove(timeout);
+				}
+				else if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+					remove(timeout);
+					if (timeout.expire()) {
+						expired.add(timeout.task);
+					}
+				}
+				else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(JobTimeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = timeout.next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+
+		void drainTasks(List<Runnable> tasks) {
+			JobTimeout timeout = head;
+			while (timeout != null) {
+				JobTimeout next = timeout.next;
+				remove(timeout);
+				if (!timeout.isCancelled()) {
+					tasks.add(timeout.task);
+				}
+				timeout = next;
+			}
+		}
+	}
+}
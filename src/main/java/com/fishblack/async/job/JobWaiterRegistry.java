@@ -0,0 +1,114 @@
+package com.fishblack.async.job;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The registry of jobs waiting for the running job of the same object to finish.
+ * Only the latest waiting job of an object matters, an older one is superseded anyway,
+ * so at most one waiter is kept per {@link JobKey}.
+ */
+class JobWaiterRegistry {
+
+	private final Map<JobKey, Waiter> waiters = new ConcurrentHashMap<>();
+
+	/**
+	 * Register a job waiting for its object.
+	 * @param job the waiting job
+	 * @param callback the callback handler of the waiting job
+	 * @return the waiter
+	 */
+	Waiter register(Job job, JobCallback callback) {
+		Waiter waiter = new Waiter(JobKey.of(job), job, callback);
+		waiters.put(waiter.key, waiter);
+		return waiter;
+	}
+
+	/**
+	 * Take the waiter of an object, which then can only be claimed by the caller.
+	 * @param key the object key
+	 * @return the waiter or null if no job is waiting or it has been claimed
+	 */
+	Waiter take(JobKey key) {
+		Waiter waiter = waiters.remove(key);
+		return waiter != null && waiter.claim() ? waiter : null;
+	}
+
+	/**
+	 * Take all the waiters of a stripe.
+	 * @param stripe the stripe name
+	 * @return the claimed waiters
+	 */
+	List<Waiter> takeAll(String stripe) {
+		List<Waiter> taken = new ArrayList<>();
+		for (JobKey key : waiters.keySet()) {
+			if (stripe != null && stripe.equals(key.getStripe())) {
+				Waiter waiter = take(key);
+				if (waiter != null) {
+					taken.add(waiter);
+				}
+			}
+		}
+		return taken;
+	}
+
+	/**
+	 * Remove a waiter which has been claimed by its fallback.
+	 * @param waiter the waiter
+	 */
+	void remove(Waiter waiter) {
+		waiters.remove(waiter.key, waiter);
+	}
+
+	int size() {
+		return waiters.size();
+	}
+
+	/**
+	 * A waiting job. It is dispatched exactly once, either by the finish of the running job or by its fallback timeout.
+	 */
+	static final class Waiter {
+		private final JobKey key;
+		private final Job job;
+		private final JobCallback callback;
+		private final AtomicBoolean claimed = new AtomicBoolean(false);
+		private volatile JobTimingWheel.JobTimeout fallback;
+		private final long registerTime = System.nanoTime();
+
+		private Waiter(JobKey key, Job job, JobCallback callback) {
+			this.key = key;
+			this.job = job;
+			this.callback = callback;
+		}
+
+		/**
+		 * @return the {@link System#nanoTime()} of the registration
+		 */
+		long getRegisterTime() {
+			return registerTime;
+		}
+
+		boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		Job getJob() {
+			return job;
+		}
+
+		JobCallback getCallback() {
+			return callback;
+		}
+
+		JobTimingWheel.JobTimeout getFallback() {
+			return fallback;
+		}
+
+		void setFallback(JobTimingWheel.JobTimeout fallback) {
+			this.fallback = fallback;
+		}
+	}
+}
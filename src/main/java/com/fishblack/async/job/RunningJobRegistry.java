@@ -0,0 +1,112 @@
+package com.fishblack.async.job;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The registry of jobs running on this node, indexed by jobId and grouped by stripe.
+ * Add, remove and contains are constant time and lock free for readers;
+ * the updates of one job are serialized so both indexes always agree.
+ */
+public class RunningJobRegistry {
+
+	//ConcurrentHashMap does not accept null keys
+	private static final String NO_STRIPE = "";
+
+	private final Map<String, String> stripeOfJob = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> jobsOfStripe = new ConcurrentHashMap<>();
+
+	/**
+	 * Register a running job.
+	 * @param job the running job
+	 * @return true if the job was not registered before
+	 */
+	public boolean add(Job job) {
+		String stripe = job.getStripe() == null ? NO_STRIPE : job.getStripe();
+		boolean[] added = new boolean[1];
+		stripeOfJob.compute(job.getJobId(), (jobId, current) -> {
+			if (current != null) {
+				return current;
+			}
+			//added under the lock of the stripe, so a concurrent removal of its last job can not drop the set meanwhile
+			jobsOfStripe.compute(stripe, (s, jobIds) -> {
+				Set<String> ids = jobIds == null ? ConcurrentHashMap.newKeySet() : jobIds;
+				ids.add(jobId);
+				return ids;
+			});
+			added[0] = true;
+			return stripe;
+		});
+		return added[0];
+	}
+
+	/**
+	 * Unregister a job.
+	 * @param jobId the job identifier
+	 * @return true if the job was registered
+	 */
+	public boolean remove(String jobId) {
+		boolean[] removed = new boolean[1];
+		stripeOfJob.computeIfPresent(jobId, (id, stripe) -> {
+			jobsOfStripe.computeIfPresent(stripe, (s, jobIds) -> {
+				jobIds.remove(id);
+				return jobIds.isEmpty() ? null : jobIds;
+			});
+			removed[0] = true;
+			return null;
+		});
+		return removed[0];
+	}
+
+	/**
+	 * Unregister jobs.
+	 * @param jobIds the job identifiers
+	 * @return count of jobs unregistered
+	 */
+	public int removeAll(Collection<String> jobIds) {
+		int count = 0;
+		for (String jobId : jobIds) {
+			if (remove(jobId)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Check if a job is registered.
+	 * @param jobId the job identifier
+	 * @return true if the job is registered
+	 */
+	public boolean contains(String jobId) {
+		return jobId != null && stripeOfJob.containsKey(jobId);
+	}
+
+	/**
+	 * Get a snapshot of the registered jobs of a stripe.
+	 * @param stripe the stripe name
+	 * @return jobId list
+	 */
+	public List<String> getJobIds(String stripe) {
+		Set<String> jobIds = jobsOfStripe.get(stripe == null ? NO_STRIPE : stripe);
+		return jobIds == null ? Collections.emptyList() : new ArrayList<>(jobIds);
+	}
+
+	/**
+	 * Get a snapshot of all the registered jobs.
+	 * @return jobId list
+	 */
+	public List<String> snapshot() {
+		return new ArrayList<>(stripeOfJob.keySet());
+	}
+
+	public int size() {
+		return stripeOfJob.size();
+	}
+
+}
@@ -0,0 +1,63 @@
+package com.fishblack.async.job;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The generator of UUID version 7 ids (RFC 9562): 48 bits of Unix epoch milliseconds, then a 12 bit counter,
+ * then 62 random bits, in the canonical lower case form.
+ * The ids sort by creation time as strings as well as numbers, so the inserts into a primary key index stay at its
+ * end and the latest of the jobs created in the same millisecond can be told by its id.
+ *
+ * The state is kept per thread, so no lock nor shared random source is taken: the ids of a thread are strictly
+ * increasing, the counter starting at a random value below its half every millisecond, and the ids of different
+ * threads in the same millisecond are told apart by their random bits.
+ */
+public class TimeOrderedJobIdGenerator implements JobIdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final int COUNTER_LIMIT = 1 << COUNTER_BITS;
+    private static final long VERSION = 7L << COUNTER_BITS;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    private final ThreadLocal<State> states = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public String nextId() {
+        State state = states.get();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        if (now > state.time) {
+            state.time = now;
+            state.counter = random.nextInt(COUNTER_LIMIT / 2);
+        }
+        else if (++state.counter == COUNTER_LIMIT) {
+            //counter exhausted, or the clock went back: borrow from the next millisecond to stay increasing
+            state.time++;
+            state.counter = 0;
+        }
+        long mostSigBits = (state.time << 16) | VERSION | state.counter;
+        long leastSigBits = VARIANT | (random.nextLong() & RANDOM_MASK);
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * Get the creation time of a time-ordered id.
+     * @param jobId the job id made by this generator
+     * @return the Unix epoch milliseconds of the id
+     * @exception IllegalArgumentException when the id is not a UUID version 7
+     */
+    public static long getTimestamp(String jobId) {
+        UUID uuid = UUID.fromString(jobId);
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a time-ordered job id: " + jobId);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    private static final class State {
+        private long time;
+        private int counter;
+    }
+}
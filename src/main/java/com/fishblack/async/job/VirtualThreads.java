@@ -0,0 +1,29 @@
+package com.fishblack.async.job;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads, which need JDK 21 or later.
+ * This is the version for older JDKs, the multi-release jar carries the JDK 21 version under META-INF/versions/21.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the running JDK supports virtual threads
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Create a factory of virtual threads.
+     * @param threadNamePrefix the name prefix of the threads
+     * @return the thread factory
+     * @exception UnsupportedOperationException when the running JDK does not support virtual threads
+     */
+    static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require JDK 21 or later");
+    }
+}
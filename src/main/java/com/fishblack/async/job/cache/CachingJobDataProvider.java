@@ -0,0 +1,343 @@
+package com.fishblack.async.job.cache;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A read-through near cache of jobs in front of any @JobDataProvider.
+ * Only {@link #getJob(String)} is served from the cache, which is what the status checks of JobManager use.
+ * The object lookups and the batched status reads always go to the underlying provider,
+ * because job submission and cancellation polling must see the other nodes' changes.
+ *
+ * The cache is split into segments, each a LRU map bounded in size, and entries expire after a TTL.
+ * Status updates, cancellations, pings and lease renewals made through this provider invalidate the cached entries,
+ * so the changes made on this node are seen at once.
+ */
+public class CachingJobDataProvider implements JobDataProvider {
+
+	private static final int SEGMENT_COUNT = 16;
+
+	private final JobDataProvider delegate;
+	private final long ttl;
+	private final Segment[] segments;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * Constructor of this class
+	 * @param delegate the provider to be cached
+	 * @param maxSize max count of cached jobs
+	 * @param ttl the time a cached job stays valid after it was loaded or updated
+	 * @param unit the time unit of the ttl parameter
+	 */
+	public CachingJobDataProvider(JobDataProvider delegate, int maxSize, long ttl, TimeUnit unit) {
+		if (delegate == null || maxSize <= 0 || ttl <= 0) {
+			throw new IllegalArgumentException("Illegal job cache configuration");
+		}
+		this.delegate = delegate;
+		this.ttl = unit.toNanos(ttl);
+		this.segments = new Segment[SEGMENT_COUNT];
+		int segmentSize = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(segmentSize, evictionCount);
+		}
+	}
+
+	@Override
+	public Job createJob(Job job) throws JobException {
+		Job created = delegate.createJob(job);
+		if (created != null) {
+			segmentFor(created.getJobId()).putJob(created.getJobId(), new Job(created), ttl);
+		}
+		return created;
+	}
+
+	@Override
+	public List<Job> createJobs(List<Job> jobs) throws JobException {
+		List<Job> created = delegate.createJobs(jobs);
+		for (Job job : created) {
+			if (job != null) {
+				segmentFor(job.getJobId()).putJob(job.getJobId(), new Job(job), ttl);
+			}
+		}
+		return created;
+	}
+
+	@Override
+	public Job getJob(String jobId) throws JobException {
+		if (jobId == null) {
+			return delegate.getJob(null);
+		}
+		Segment segment = segmentFor(jobId);
+		Job cached = segment.getJob(jobId);
+		if (cached != null) {
+			hitCount.increment();
+			return new Job(cached);
+		}
+		missCount.increment();
+		long generation = segment.getGeneration();
+		Job job = delegate.getJob(jobId);
+		if (job != null) {
+			//do not cache what was read before a concurrent update of the segment
+			segment.putIfUnchanged(jobId, new Job(job), ttl, generation);
+		}
+		return job;
+	}
+
+	@Override
+	public Map<String, Job.Status> getJobStatuses(Collection<String> jobIds) throws JobException {
+		return delegate.getJobStatuses(jobIds);
+	}
+
+	@Override
+	public Job getRunningJob(String stripe, String twopartName, String objType, Job.JobType jobType) throws JobException {
+		return delegate.getRunningJob(stripe, twopartName, objType, jobType);
+	}
+
+	@Override
+	public Job getLatestJob(String stripe, String twopartName, String objType, Job.JobType jobType) throws JobException {
+		return delegate.getLatestJob(stripe, twopartName, objType, jobType);
+	}
+
+	@Override
+	public int updateJobStatus(Job job, Job.Status status) throws JobException {
+		//the provider sets the times of the transition too, so the job is read again rather than patched
+		try {
+			return delegate.updateJobStatus(job, status);
+		}
+		finally {
+			segmentFor(job.getJobId()).invalidate(job.getJobId());
+		}
+	}
+
+	@Override
+	public int renewLeases(String ownerId, Collection<String> jobIds, Timestamp leaseExpiry) throws JobException {
+		try {
+			return delegate.renewLeases(ownerId, jobIds, leaseExpiry);
+		}
+		finally {
+			invalidate(jobIds);
+		}
+	}
+
+	@Override
+	public List<Job> getExpiredLeaseJobs(Timestamp now, int maxCount) throws JobException {
+		return delegate.getExpiredLeaseJobs(now, maxCount);
+	}
+
+	@Override
+	public int reclaimJob(Job job, Job.Status status, Timestamp now) throws JobException {
+		try {
+			return delegate.reclaimJob(job, status, now);
+		}
+		finally {
+			segmentFor(job.getJobId()).invalidate(job.getJobId());
+		}
+	}
+
+	@Override
+	public List<Job> claimJobs(String ownerId, Timestamp leaseExpiry, Collection<Job.JobType> jobTypes, int maxCount)
+			throws JobException {
+		List<Job> claimed = delegate.claimJobs(ownerId, leaseExpiry, jobTypes, maxCount);
+		for (Job job : claimed) {
+			segmentFor(job.getJobId()).putJob(job.getJobId(), new Job(job), ttl);
+		}
+		return claimed;
+	}
+
+	@Override
+	public int retryJob(Job job) throws JobException {
+		try {
+			return delegate.retryJob(job);
+		}
+		finally {
+			segmentFor(job.getJobId()).invalidate(job.getJobId());
+		}
+	}
+
+	@Override
+	public boolean supportsSweeping() {
+		return delegate.supportsSweeping();
+	}
+
+	@Override
+	public List<Job> getFinishedJobs(Timestamp endedBefore, int maxCount) throws JobException {
+		return delegate.getFinishedJobs(endedBefore, maxCount);
+	}
+
+	@Override
+	public List<Job> deleteFinishedJobs(List<Job> jobs) throws JobException {
+		List<Job> deleted = delegate.deleteFinishedJobs(jobs);
+		for (Job job : deleted) {
+			segmentFor(job.getJobId()).invalidate(job.getJobId());
+		}
+		return deleted;
+	}
+
+	@Override
+	public List<Job> cureStuckJobs(Timestamp lastSeenBefore, int maxCount) throws JobException {
+		List<Job> cured = delegate.cureStuckJobs(lastSeenBefore, maxCount);
+		for (Job job : cured) {
+			segmentFor(job.getJobId()).invalidate(job.getJobId());
+		}
+		return cured;
+	}
+
+	@Override
+	public int handleLegacyJobs(long jobMaxRunningTime) throws JobException {
+		try {
+			return delegate.handleLegacyJobs(jobMaxRunningTime);
+		}
+		finally {
+			invalidateAll();
+		}
+	}
+
+	@Override
+	public Timestamp getCurrentTimestamp() throws JobException {
+		return delegate.getCurrentTimestamp();
+	}
+
+	@Override
+	public List<String> cancelJobs(String stripeName) {
+		List<String> cancelledIds = delegate.cancelJobs(stripeName);
+		if (cancelledIds != null) {
+			invalidate(cancelledIds);
+		}
+		return cancelledIds;
+	}
+
+	@Override
+	public void keepOnTrackJobs(List<String> jobIds) {
+		try {
+			delegate.keepOnTrackJobs(jobIds);
+		}
+		finally {
+			invalidate(jobIds);
+		}
+	}
+
+	/**
+	 * Drop all the cached jobs.
+	 */
+	public void invalidateAll() {
+		for (Segment segment : segments) {
+			segment.clearAll();
+		}
+	}
+
+	/**
+	 * Get the cache statistics.
+	 * @return a snapshot of the statistics
+	 */
+	public JobCacheStats getStats() {
+		long size = 0;
+		for (Segment segment : segments) {
+			size += segment.count();
+		}
+		return new JobCacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), size);
+	}
+
+	public JobDataProvider getDelegate() {
+		return delegate;
+	}
+
+	private void invalidate(Collection<String> jobIds) {
+		for (String jobId : jobIds) {
+			segmentFor(jobId).invalidate(jobId);
+		}
+	}
+
+	private Segment segmentFor(String jobId) {
+		int h = jobId.hashCode();
+		return segments[(h ^ (h >>> 16)) & (SEGMENT_COUNT - 1)];
+	}
+
+	private static final class CachedJob {
+		private final Job job;
+		private final long expireTime;
+
+		private CachedJob(Job job, long expireTime) {
+			this.job = job;
+			this.expireTime = expireTime;
+		}
+	}
+
+	/**
+	 * A LRU map guarded by its own monitor. The generation counts the writes, so a loader can tell whether
+	 * the segment changed while it was reading the underlying provider.
+	 */
+	private static final class Segment extends LinkedHashMap<String, CachedJob> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+		private final transient LongAdder evictionCount;
+		private long generation;
+
+		private Segment(int maxSize, LongAdder evictionCount) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictionCount = evictionCount;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedJob> eldest) {
+			if (size() > maxSize) {
+				evictionCount.increment();
+				return true;
+			}
+			return false;
+		}
+
+		synchronized Job getJob(String jobId) {
+			CachedJob entry = get(jobId);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expireTime - System.nanoTime() <= 0) {
+				remove(jobId);
+				return null;
+			}
+			return entry.job;
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		synchronized void putJob(String jobId, Job job, long ttl) {
+			generation++;
+			put(jobId, new CachedJob(job, System.nanoTime() + ttl));
+		}
+
+		synchronized void putIfUnchanged(String jobId, Job job, long ttl, long expectedGeneration) {
+			if (generation == expectedGeneration) {
+				put(jobId, new CachedJob(job, System.nanoTime() + ttl));
+			}
+		}
+
+		synchronized void invalidate(String jobId) {
+			generation++;
+			remove(jobId);
+		}
+
+		synchronized void clearAll() {
+			generation++;
+			clear();
+		}
+
+		synchronized int count() {
+			return size();
+		}
+	}
+}
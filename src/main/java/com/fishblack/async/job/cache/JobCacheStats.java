@@ -0,0 +1,50 @@
+package com.fishblack.async.job.cache;
+
+/**
+ * A snapshot of the statistics of a {@link CachingJobDataProvider}.
+ */
+public class JobCacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+
+    public JobCacheStats(long hitCount, long missCount, long evictionCount, long size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the ratio of the reads served from the cache.
+     * @return hit ratio between 0 and 1, 1 when nothing has been read yet
+     */
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "[JobCacheStats: hitCount=" + hitCount + ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount + ", size=" + size + "]";
+    }
+}
@@ -2,60 +2,957 @@ package com.fishblack.async.job.db;
 
 import com.fishblack.async.job.Job;
 import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.JobPriority;
 import com.fishblack.async.job.exception.JobException;
 
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.fishblack.async.job.JobConstants.DB_CONNECTION_BORROW_TIMEOUT;
+import static com.fishblack.async.job.JobConstants.DB_DEFAULT_CONNECTION_POOL_SIZE;
+import static com.fishblack.async.job.db.JobSqlStatements.*;
+
 /**
  * This class is the implementation of JobDataProvider interface for database.
+ * Connections come from a small pool and every connection reuses its prepared statements.
+ * Operations on many jobs run as one batch or one set-based statement in a single transaction.
  */
-public class DBJobDataProvider implements JobDataProvider {
+public class DBJobDataProvider implements JobDataProvider, AutoCloseable {
 	private static final Logger logger = Logger.getLogger(DBJobDataProvider.class.getName());
+	private static final int CLAIM_CANDIDATE_FACTOR = 4;
+	private static final Comparator<String> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+	private static final Comparator<Job> OBJECT_ORDER = Comparator.comparing(Job::getStripe, NULLS_FIRST)
+			.thenComparing(Job::getTwopartName, NULLS_FIRST).thenComparing(Job::getObjectType, NULLS_FIRST)
+			.thenComparing(Job::getJobType).thenComparing(Job::getJobId);
+
+	private final JobConnectionPool pool;
+	private volatile String currentTimestampQuery;
+
+	/**
+	 * Constructor of this class
+	 * @param url jdbc url of the job database
+	 * @param user database user
+	 * @param password database password
+	 */
+	public DBJobDataProvider(String url, String user, String password) {
+		this(url, user, password, DB_DEFAULT_CONNECTION_POOL_SIZE);
+	}
+
+	/**
+	 * Constructor of this class
+	 * @param url jdbc url of the job database
+	 * @param user database user
+	 * @param password database password
+	 * @param poolSize max count of open connections
+	 */
+	public DBJobDataProvider(String url, String user, String password, int poolSize) {
+		this.pool = new JobConnectionPool(url, user, password, poolSize, DB_CONNECTION_BORROW_TIMEOUT);
+	}
+
+	/**
+	 * Create the job table and its indexes when they do not exist yet,
+	 * or add the lease and retry columns and the claim and sweep indexes to a job table created before them.
+	 * @exception JobException when any exception occurs
+	 */
+	public void createSchema() throws JobException {
+		try {
+			withConnection(conn -> {
+				Connection connection = conn.getConnection();
+				try (ResultSet rs = connection.getMetaData().getTables(null, null, TABLE_NAME, null)) {
+					if (rs.next()) {
+						addColumns(connection, LEASE_COLUMNS, "Lease", CREATE_LEASE_INDEX);
+						addColumns(connection, RETRY_COLUMNS, "Retry");
+						addIndex(connection, CLAIM_INDEX_NAME, CREATE_CLAIM_INDEX);
+						addIndex(connection, SWEEP_INDEX_NAME, CREATE_SWEEP_INDEX);
+						return null;
+					}
+				}
+				try (Statement stmt = connection.createStatement()) {
+					stmt.executeUpdate(CREATE_TABLE);
+					stmt.executeUpdate(CREATE_OBJECT_INDEX);
+					stmt.executeUpdate(CREATE_STATUS_INDEX);
+					stmt.executeUpdate(CREATE_LEASE_INDEX);
+					stmt.executeUpdate(CREATE_CLAIM_INDEX);
+					stmt.executeUpdate(CREATE_SWEEP_INDEX);
+				}
+				logger.info(String.format("Job table %s created", TABLE_NAME));
+				return null;
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR, "Failed to create job table", ex);
+		}
+	}
+
+	/**
+	 * Add a group of columns and their indexes, unless the last column of the group exists.
+	 */
+	private static void addColumns(Connection connection, String[][] columns, String group, String... createIndexes)
+			throws SQLException {
+		try (ResultSet rs = connection.getMetaData().getColumns(null, null, TABLE_NAME, columns[columns.length - 1][0])) {
+			if (rs.next()) {
+				return;
+			}
+		}
+		try (Statement stmt = connection.createStatement()) {
+			for (String[] column : columns) {
+				stmt.executeUpdate("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + column[0] + " " + column[1]);
+			}
+			for (String createIndex : createIndexes) {
+				stmt.executeUpdate(createIndex);
+			}
+		}
+		logger.info(String.format("%s columns added to job table %s", group, TABLE_NAME));
+	}
+
+	private static void addIndex(Connection connection, String indexName, String createIndex) throws SQLException {
+		try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, TABLE_NAME, false, false)) {
+			while (rs.next()) {
+				if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+					return;
+				}
+			}
+		}
+		try (Statement stmt = connection.createStatement()) {
+			stmt.executeUpdate(createIndex);
+		}
+		logger.info(String.format("Index %s added to job table %s", indexName, TABLE_NAME));
+	}
 
 	@Override
 	public Job createJob(Job job) throws JobException {
-		return null;
+		if (job == null || job.getJobId() == null) {
+			throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "Job creation failed due to empty job entity");
+		}
+		job.setStatus(Job.Status.NOT_STARTED);
+		if (job.getRequestTime() == null) {
+			job.setRequestTime(new Timestamp(System.currentTimeMillis()));
+		}
+		try {
+			int count = withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(INSERT_JOB);
+				bindJob(stmt, job);
+				return stmt.executeUpdate();
+			});
+			return count == 1 ? job : null;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED,
+					String.format("Failed to create job %s", job.getJobId()), ex);
+		}
+	}
+
+	/**
+	 * Create the jobs with one insert batch in a single transaction.
+	 * When the batch fails, e.g. on a duplicate id, it is rolled back and the jobs are created one by one
+	 * to find out which of them can be created.
+	 * @param jobs the jobs to be saved
+	 * @return the created jobs in the order of the given ones, null for a job which could not be created
+	 * @exception JobException when any exception occurs
+	 */
+	@Override
+	public List<Job> createJobs(List<Job> jobs) throws JobException {
+		//an invalid job is not created, without failing the others
+		List<Job> created = new ArrayList<>(Collections.<Job>nCopies(jobs.size(), null));
+		List<Job> valid = new ArrayList<>(jobs.size());
+		List<Integer> validIndexes = new ArrayList<>(jobs.size());
+		for (int i = 0; i < jobs.size(); i++) {
+			Job job = jobs.get(i);
+			if (job == null || job.getJobId() == null) {
+				continue;
+			}
+			job.setStatus(Job.Status.NOT_STARTED);
+			if (job.getRequestTime() == null) {
+				job.setRequestTime(new Timestamp(System.currentTimeMillis()));
+			}
+			valid.add(job);
+			validIndexes.add(i);
+		}
+		if (valid.isEmpty()) {
+			return created;
+		}
+		try {
+			int[] counts = inTransaction(conn -> {
+				PreparedStatement stmt = conn.prepare(INSERT_JOB);
+				for (Job job : valid) {
+					bindJob(stmt, job);
+					stmt.addBatch();
+				}
+				return stmt.executeBatch();
+			});
+			for (int i = 0; i < valid.size(); i++) {
+				created.set(validIndexes.get(i), counts[i] == 0 ? null : valid.get(i));
+			}
+			return created;
+		}
+		catch (BatchUpdateException ex) {
+			logger.log(Level.WARNING, "Job insert batch failed, creating the jobs one by one", ex);
+			for (int i = 0; i < valid.size(); i++) {
+				try {
+					created.set(validIndexes.get(i), createJob(valid.get(i)));
+				}
+				catch (JobException e) {
+					//left null
+				}
+			}
+			return created;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED,
+					String.format("Failed to create %d jobs", valid.size()), ex);
+		}
 	}
 
 	@Override
 	public Job getJob(String jobId) throws JobException {
-		return null;
+		try {
+			return withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(SELECT_JOB);
+				stmt.setString(1, jobId);
+				return readJob(stmt);
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR,
+					String.format("Failed to get job %s", jobId), ex);
+		}
+	}
+
+	/**
+	 * Read the statuses with one query per {@value JobSqlStatements#STATUS_QUERY_CHUNK_SIZE} jobs.
+	 * @param jobIds unique identifiers of the jobs
+	 * @return the status of every job found, keyed by jobId
+	 * @exception JobException when any exception occurs
+	 */
+	@Override
+	public Map<String, Job.Status> getJobStatuses(Collection<String> jobIds) throws JobException {
+		Map<String, Job.Status> statuses = new HashMap<>();
+		if (jobIds == null || jobIds.isEmpty()) {
+			return statuses;
+		}
+		List<String> ids = new ArrayList<>(jobIds);
+		try {
+			return withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(SELECT_STATUSES);
+				for (int from = 0; from < ids.size(); from += STATUS_QUERY_CHUNK_SIZE) {
+					for (int i = 0; i < STATUS_QUERY_CHUNK_SIZE; i++) {
+						stmt.setString(i + 1, ids.get(Math.min(from + i, ids.size() - 1)));
+					}
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							statuses.put(rs.getString(1), Job.Status.valueOf(rs.getString(2)));
+						}
+					}
+				}
+				return statuses;
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR, "Failed to get job statuses", ex);
+		}
 	}
 
 	@Override
 	public Job getRunningJob(String stripe, String twopartName, String objType, Job.JobType jobType) throws JobException {
-		return null;
+		return queryObjectJob(stripe, twopartName, objType, jobType, true);
 	}
 
 	@Override
 	public Job getLatestJob(String stripe, String twopartName, String objType, Job.JobType jobType) throws JobException {
-		return null;
+		return queryObjectJob(stripe, twopartName, objType, jobType, false);
 	}
 
 	@Override
 	public int updateJobStatus(Job job, Job.Status status) throws JobException {
-		return 0;
+		String sql;
+		switch (status) {
+			case RUNNING:
+				sql = UPDATE_STATUS_RUNNING;
+				break;
+			case SUCCEEDED:
+			case CANCELLED:
+			case FAILED:
+			case ERROR:
+				sql = UPDATE_STATUS_FINISHED;
+				break;
+			default:
+				sql = UPDATE_STATUS;
+				break;
+		}
+		try {
+			int count = withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(sql);
+				int index = 1;
+				stmt.setString(index++, status.name());
+				if (status == Job.Status.RUNNING) {
+					stmt.setString(index++, job.getOwnerId());
+					setTimestamp(stmt, index++, job.getLeaseExpiry());
+				}
+				stmt.setString(index++, job.getJobId());
+				stmt.setLong(index, job.getFencingToken());
+				return stmt.executeUpdate();
+			});
+			if (count == 1 && status == Job.Status.RUNNING) {
+				job.setFencingToken(job.getFencingToken() + 1);
+			}
+			return count;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.UPDATE_FAILED,
+					String.format("Failed to update job %s to status %s", job.getJobId(), status), ex);
+		}
+	}
+
+	/**
+	 * Renew the leases of the jobs in one batch, like {@link #keepOnTrackJobs(List)}.
+	 */
+	@Override
+	public int renewLeases(String ownerId, Collection<String> jobIds, Timestamp leaseExpiry) throws JobException {
+		if (jobIds.isEmpty()) {
+			return 0;
+		}
+		try {
+			return inTransaction(conn -> {
+				PreparedStatement stmt = conn.prepare(RENEW_LEASE);
+				for (String jobId : jobIds) {
+					stmt.setTimestamp(1, leaseExpiry);
+					stmt.setString(2, jobId);
+					stmt.setString(3, ownerId);
+					stmt.addBatch();
+				}
+				int renewed = 0;
+				for (int count : stmt.executeBatch()) {
+					renewed += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+				}
+				return renewed;
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.UPDATE_FAILED,
+					String.format("Failed to renew the leases of node %s", ownerId), ex);
+		}
+	}
+
+	@Override
+	public List<Job> getExpiredLeaseJobs(Timestamp now, int maxCount) throws JobException {
+		try {
+			return withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(SELECT_EXPIRED_LEASES);
+				stmt.setMaxRows(maxCount);
+				stmt.setTimestamp(1, now);
+				List<Job> jobs = new ArrayList<>();
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						jobs.add(toJob(rs));
+					}
+				}
+				return jobs;
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR, "Failed to get the jobs with expired leases", ex);
+		}
+	}
+
+	@Override
+	public int reclaimJob(Job job, Job.Status status, Timestamp now) throws JobException {
+		try {
+			int count = withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(RECLAIM_JOB);
+				stmt.setString(1, status.name());
+				setTimestamp(stmt, 2, status == Job.Status.NOT_STARTED ? job.getEndTime() : now);
+				stmt.setString(3, job.getJobId());
+				stmt.setLong(4, job.getFencingToken());
+				stmt.setTimestamp(5, now);
+				return stmt.executeUpdate();
+			});
+			if (count == 1) {
+				job.setFencingToken(job.getFencingToken() + 1);
+			}
+			return count;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.UPDATE_FAILED,
+					String.format("Failed to reclaim job %s", job.getJobId()), ex);
+		}
+	}
+
+	/**
+	 * Claim the jobs with a batch of conditional updates in a single transaction. Like SKIP LOCKED, a node does not
+	 * wait for the jobs another node claimed at the same time: its updates of these jobs claim nothing, and the next
+	 * candidates are tried instead, out of four times as many as asked for. The candidates of the same priority are
+	 * shuffled, so that the nodes claiming at the same time mostly try different jobs.
+	 * The candidates are read one priority after the other, each by a walk of the claim index.
+	 * The jobs of the object of a candidate are locked before it is claimed, so that the claims of the jobs of
+	 * an object are serialized, and the claim sees a job of the object claimed or created by another node meanwhile.
+	 */
+	@Override
+	public List<Job> claimJobs(String ownerId, Timestamp leaseExpiry, Collection<Job.JobType> jobTypes, int maxCount)
+			throws JobException {
+		List<Job> claimed = new ArrayList<>();
+		if (jobTypes.isEmpty() || maxCount <= 0) {
+			return claimed;
+		}
+		String jobTypeCondition = " AND JOB_TYPE IN (" + String.join(", ", Collections.nCopies(jobTypes.size(), "?")) + ")";
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		int candidateCount = maxCount * CLAIM_CANDIDATE_FACTOR;
+		try {
+			List<Job> candidates = withConnection(conn -> {
+				List<Job> jobs = new ArrayList<>();
+				for (String priority : CLAIM_PRIORITIES) {
+					PreparedStatement stmt = conn.prepare(SELECT_CLAIMABLE_JOBS + priority + jobTypeCondition + AND_RETRY_DUE + ORDER_BY_CLAIM);
+					stmt.setMaxRows(candidateCount - jobs.size());
+					int index = 1;
+					for (Job.JobType jobType : jobTypes) {
+						stmt.setString(index++, jobType.name());
+					}
+					stmt.setTimestamp(index, now);
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							jobs.add(toJob(rs));
+						}
+					}
+					if (jobs.size() >= candidateCount) {
+						break;
+					}
+				}
+				return jobs;
+			});
+			candidates.removeIf(job -> hasNullObjectColumn(job) && !isClaimable(job));
+			shufflePriorities(candidates);
+			int next = 0;
+			while (claimed.size() < maxCount && next < candidates.size()) {
+				List<Job> batch = new ArrayList<>(candidates.subList(next, Math.min(candidates.size(), next + maxCount - claimed.size())));
+				next += batch.size();
+				//the objects are locked in the same order by all the nodes, so their claims do not deadlock
+				batch.sort(OBJECT_ORDER);
+				List<Job> claimable = new ArrayList<>(batch.size());
+				int[] counts = inTransaction(conn -> {
+					for (Job job : batch) {
+						if (lockJobsOfObject(conn, job)) {
+							claimable.add(job);
+						}
+					}
+					if (claimable.isEmpty()) {
+						return new int[0];
+					}
+					PreparedStatement stmt = conn.prepare(CLAIM_JOB);
+					for (Job job : claimable) {
+						stmt.setString(1, ownerId);
+						stmt.setTimestamp(2, leaseExpiry);
+						stmt.setString(3, job.getJobId());
+						stmt.setLong(4, job.getFencingToken());
+						stmt.addBatch();
+					}
+					return stmt.executeBatch();
+				});
+				for (int i = 0; i < counts.length; i++) {
+					Job job = claimable.get(i);
+					if (counts[i] == 1 || (counts[i] == Statement.SUCCESS_NO_INFO && isClaimedBy(job, ownerId))) {
+						job.setStatus(Job.Status.RUNNING);
+						job.setStartTime(new Timestamp(System.currentTimeMillis()));
+						job.setOwnerId(ownerId);
+						job.setLeaseExpiry(leaseExpiry);
+						job.setFencingToken(job.getFencingToken() + 1);
+						claimed.add(job);
+					}
+				}
+			}
+			return claimed;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.UPDATE_FAILED,
+					String.format("Failed to claim jobs for node %s", ownerId), ex);
+		}
+	}
+
+	@Override
+	public int retryJob(Job job) throws JobException {
+		try {
+			int count = withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(RETRY_JOB);
+				stmt.setInt(1, job.getAttempt());
+				setTimestamp(stmt, 2, job.getRetryTime());
+				stmt.setString(3, job.getJobId());
+				stmt.setLong(4, job.getFencingToken());
+				return stmt.executeUpdate();
+			});
+			if (count == 1) {
+				job.setFencingToken(job.getFencingToken() + 1);
+			}
+			return count;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.UPDATE_FAILED,
+					String.format("Failed to retry job %s", job.getJobId()), ex);
+		}
+	}
+
+	/**
+	 * Check a job of an object with a null column, which the claimable job query can not tell apart from
+	 * the other jobs of its object.
+	 */
+	private boolean isClaimable(Job job) {
+		try {
+			Job latestJob = getLatestJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType());
+			return latestJob != null && job.getJobId().equals(latestJob.getJobId())
+					&& getRunningJob(job.getStripe(), job.getTwopartName(), job.getObjectType(), job.getJobType()) == null;
+		}
+		catch (JobException ex) {
+			logger.log(Level.WARNING, String.format("Failed to check job %s for claiming", job.getJobId()), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Lock the jobs of the object of a job, and tell whether the job is still claimable: it exists, no job of the object
+	 * is running, and none was requested after it, as in the claimable job query.
+	 */
+	private static boolean lockJobsOfObject(JobConnectionPool.PooledConnection conn, Job job) throws SQLException {
+		StringBuilder sql = new StringBuilder(LOCK_JOBS_OF_OBJECT);
+		appendCondition(sql, "STRIPE", job.getStripe()).append(" AND ");
+		appendCondition(sql, "TWOPART_NAME", job.getTwopartName()).append(" AND ");
+		appendCondition(sql, "OBJECT_TYPE", job.getObjectType()).append(" AND JOB_TYPE = ?").append(FOR_UPDATE);
+		PreparedStatement stmt = conn.prepare(sql.toString());
+		int index = 1;
+		for (String value : new String[] {job.getStripe(), job.getTwopartName(), job.getObjectType()}) {
+			if (value != null) {
+				stmt.setString(index++, value);
+			}
+		}
+		stmt.setString(index, job.getJobType().name());
+		boolean found = false;
+		boolean claimable = true;
+		//the rows are locked as they are read, so all of them are read
+		try (ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				String jobId = rs.getString(1);
+				Job.Status status = Job.Status.valueOf(rs.getString(2));
+				Timestamp requestTime = rs.getTimestamp(3);
+				if (job.getJobId().equals(jobId)) {
+					found = true;
+				}
+				else if (status == Job.Status.RUNNING || status == Job.Status.REQUEST_FOR_CANCEL
+						|| isRequestedAfter(requestTime, jobId, job)) {
+					claimable = false;
+				}
+			}
+		}
+		return found && claimable;
+	}
+
+	private static boolean isRequestedAfter(Timestamp requestTime, String jobId, Job job) {
+		int order = requestTime.compareTo(job.getRequestTime());
+		return order > 0 || (order == 0 && jobId.compareTo(job.getJobId()) > 0);
+	}
+
+	private static boolean hasNullObjectColumn(Job job) {
+		return job.getStripe() == null || job.getTwopartName() == null || job.getObjectType() == null;
+	}
+
+	/**
+	 * Shuffle the runs of jobs of the same priority in a list ordered by priority.
+	 */
+	private static void shufflePriorities(List<Job> jobs) {
+		int start = 0;
+		for (int i = 1; i <= jobs.size(); i++) {
+			if (i == jobs.size() || jobs.get(i).getPriority() != jobs.get(start).getPriority()) {
+				Collections.shuffle(jobs.subList(start, i), ThreadLocalRandom.current());
+				start = i;
+			}
+		}
+	}
+
+	/**
+	 * Tell whether a job was claimed by a node, for the drivers not returning the update counts of a batch.
+	 */
+	private boolean isClaimedBy(Job job, String ownerId) throws JobException {
+		Job stored = getJob(job.getJobId());
+		return stored != null && Job.Status.RUNNING.equals(stored.getStatus()) && ownerId.equals(stored.getOwnerId())
+				&& stored.getFencingToken() == job.getFencingToken() + 1;
+	}
+
+	/**
+	 * The jobs are read on the sweep index, and deleted with a batch of conditional deletes in a single transaction.
+	 */
+	@Override
+	public boolean supportsSweeping() {
+		return true;
+	}
+
+	@Override
+	public List<Job> getFinishedJobs(Timestamp endedBefore, int maxCount) throws JobException {
+		try {
+			return selectJobs(SELECT_FINISHED_BEFORE, endedBefore, maxCount);
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR, "Failed to get finished jobs", ex);
+		}
+	}
+
+	@Override
+	public List<Job> deleteFinishedJobs(List<Job> jobs) throws JobException {
+		if (jobs.isEmpty()) {
+			return Collections.emptyList();
+		}
+		try {
+			int[] counts = inTransaction(conn -> {
+				PreparedStatement stmt = conn.prepare(DELETE_FINISHED_JOB);
+				for (Job job : jobs) {
+					stmt.setString(1, job.getJobId());
+					stmt.setLong(2, job.getFencingToken());
+					stmt.addBatch();
+				}
+				return stmt.executeBatch();
+			});
+			List<Job> deleted = new ArrayList<>();
+			for (int i = 0; i < jobs.size(); i++) {
+				Job job = jobs.get(i);
+				if (counts[i] == 1 || (counts[i] == Statement.SUCCESS_NO_INFO && getJob(job.getJobId()) == null)) {
+					deleted.add(job);
+				}
+			}
+			return deleted;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.CLEAN_JOB_FAILED, "Failed to delete finished jobs", ex);
+		}
+	}
+
+	@Override
+	public List<Job> cureStuckJobs(Timestamp lastSeenBefore, int maxCount) throws JobException {
+		try {
+			List<Job> candidates = selectJobs(SELECT_OUT_OF_TRACK, lastSeenBefore, maxCount);
+			if (candidates.isEmpty()) {
+				return candidates;
+			}
+			int[] counts = inTransaction(conn -> {
+				PreparedStatement stmt = conn.prepare(CURE_OUT_OF_TRACK_JOB);
+				for (Job job : candidates) {
+					stmt.setString(1, job.getJobId());
+					stmt.setLong(2, job.getFencingToken());
+					stmt.setTimestamp(3, lastSeenBefore);
+					stmt.addBatch();
+				}
+				return stmt.executeBatch();
+			});
+			List<Job> cured = new ArrayList<>();
+			for (int i = 0; i < candidates.size(); i++) {
+				Job job = candidates.get(i);
+				if (counts[i] == 1 || (counts[i] == Statement.SUCCESS_NO_INFO && isCancelled(job))) {
+					job.setStatus(Job.Status.CANCELLED);
+					job.setLeaseExpiry(null);
+					job.setFencingToken(job.getFencingToken() + 1);
+					cured.add(job);
+				}
+			}
+			if (!cured.isEmpty()) {
+				logger.warning(String.format("%d out of track jobs have been force cancelled", cured.size()));
+			}
+			return cured;
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.CLEAN_JOB_FAILED, "Failed to cure out of track jobs", ex);
+		}
+	}
+
+	/**
+	 * Read up to a count of jobs with a query of one time parameter, sorted by id so that the rows are then locked
+	 * in the same order by all the nodes. A row read twice is kept once: H2 may return a row twice when a cached
+	 * statement looking up a status list on an index is executed again after rows were deleted.
+	 */
+	private List<Job> selectJobs(String sql, Timestamp time, int maxCount) throws SQLException {
+		List<Job> jobs = withConnection(conn -> {
+			PreparedStatement stmt = conn.prepare(sql);
+			stmt.setMaxRows(maxCount);
+			stmt.setTimestamp(1, time);
+			List<Job> found = new ArrayList<>();
+			try (ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					found.add(toJob(rs));
+				}
+			}
+			return found;
+		});
+		jobs.sort(Comparator.comparing(Job::getJobId));
+		for (int i = jobs.size() - 1; i > 0; i--) {
+			if (jobs.get(i).getJobId().equals(jobs.get(i - 1).getJobId())) {
+				jobs.remove(i);
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Tell whether a job was cancelled by a cure, for the drivers not returning the update counts of a batch.
+	 */
+	private boolean isCancelled(Job job) throws JobException {
+		Job stored = getJob(job.getJobId());
+		return stored != null && Job.Status.CANCELLED.equals(stored.getStatus())
+				&& stored.getFencingToken() == job.getFencingToken() + 1;
 	}
 
 	@Override
 	public int handleLegacyJobs(long jobMaxRunningTime) throws JobException {
-		return 0;
+		Timestamp now = getCurrentTimestamp();
+		Timestamp threshold = new Timestamp(now.getTime() - jobMaxRunningTime * 60 * 1000);
+		try {
+			return inTransaction(conn -> {
+				PreparedStatement cure = conn.prepare(CURE_OUT_OF_TRACK);
+				cure.setTimestamp(1, threshold);
+				int cured = cure.executeUpdate();
+				if (cured > 0) {
+					logger.warning(String.format("%d out of track jobs have been force cancelled", cured));
+				}
+				PreparedStatement delete = conn.prepare(DELETE_FINISHED);
+				delete.setTimestamp(1, threshold);
+				return delete.executeUpdate();
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.CLEAN_JOB_FAILED, "Failed to handle legacy jobs", ex);
+		}
 	}
 
 	@Override
 	public Timestamp getCurrentTimestamp() throws JobException {
-		return null;
+		try {
+			return withConnection(conn -> {
+				String query = currentTimestampQuery;
+				if (query == null) {
+					query = currentTimestampQuery(conn.getConnection().getMetaData().getDatabaseProductName());
+					currentTimestampQuery = query;
+				}
+				try (ResultSet rs = conn.prepare(query).executeQuery()) {
+					return rs.next() ? rs.getTimestamp(1) : null;
+				}
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR, "Failed to get current timestamp", ex);
+		}
 	}
 
+	/**
+	 * Cancel the running jobs of the stripe with chunked updates by id.
+	 * The ids are locked and read in the same transaction and only these jobs are updated, so a job started meanwhile
+	 * is left running and the returned list is exactly what was cancelled.
+	 * @param stripeName The service ID
+	 * @return Cancelled job id list.
+	 */
 	@Override
 	public List<String> cancelJobs(String stripeName) {
-		return null;
+		try {
+			return inTransaction(conn -> {
+				List<String> jobIds = new ArrayList<>();
+				PreparedStatement select = conn.prepare(SELECT_RUNNING_OF_STRIPE_FOR_UPDATE);
+				select.setString(1, stripeName);
+				try (ResultSet rs = select.executeQuery()) {
+					while (rs.next()) {
+						jobIds.add(rs.getString(1));
+					}
+				}
+				PreparedStatement cancel = conn.prepare(CANCEL_RUNNING_JOBS);
+				for (int from = 0; from < jobIds.size(); from += STATUS_QUERY_CHUNK_SIZE) {
+					for (int i = 0; i < STATUS_QUERY_CHUNK_SIZE; i++) {
+						cancel.setString(i + 1, jobIds.get(Math.min(from + i, jobIds.size() - 1)));
+					}
+					cancel.executeUpdate();
+				}
+				return jobIds;
+			});
+		}
+		catch (SQLException ex) {
+			logger.log(Level.WARNING, String.format("Failed to cancel jobs of stripe %s", stripeName), ex);
+			return Collections.emptyList();
+		}
 	}
 
+	/**
+	 * Update lastPingTime of all the jobs with one batched statement.
+	 * @param jobIds
+	 */
 	@Override
 	public void keepOnTrackJobs(List<String> jobIds) {
+		if (jobIds == null || jobIds.isEmpty()) {
+			return;
+		}
+		try {
+			inTransaction(conn -> {
+				PreparedStatement stmt = conn.prepare(KEEP_ON_TRACK);
+				for (String jobId : jobIds) {
+					stmt.setString(1, jobId);
+					stmt.addBatch();
+				}
+				return stmt.executeBatch();
+			});
+		}
+		catch (SQLException ex) {
+			logger.log(Level.WARNING, "Failed to keep on track jobs", ex);
+		}
+	}
+
+	/**
+	 * Close all the pooled connections.
+	 */
+	@Override
+	public void close() {
+		pool.close();
+	}
+
+	private Job queryObjectJob(String stripe, String twopartName, String objType, Job.JobType jobType,
+							   boolean runningOnly) throws JobException {
+		StringBuilder sql = new StringBuilder(SELECT_JOBS_OF_OBJECT);
+		appendCondition(sql, "STRIPE", stripe).append(" AND ");
+		appendCondition(sql, "TWOPART_NAME", twopartName).append(" AND ");
+		appendCondition(sql, "OBJECT_TYPE", objType).append(" AND JOB_TYPE = ?");
+		if (runningOnly) {
+			sql.append(AND_RUNNING);
+		}
+		sql.append(ORDER_BY_LATEST);
+		try {
+			return withConnection(conn -> {
+				PreparedStatement stmt = conn.prepare(sql.toString());
+				stmt.setMaxRows(1);
+				int index = 1;
+				for (String value : new String[] {stripe, twopartName, objType}) {
+					if (value != null) {
+						stmt.setString(index++, value);
+					}
+				}
+				stmt.setString(index, jobType.name());
+				return readJob(stmt);
+			});
+		}
+		catch (SQLException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.QUERY_ERROR,
+					String.format("Failed to query job of stripe %s, twopartName %s, objType %s, jobType %s",
+							stripe, twopartName, objType, jobType), ex);
+		}
+	}
+
+	/**
+	 * Null values of the object key can not be compared with '=', so they get an IS NULL condition
+	 * and a statement of their own.
+	 */
+	private static StringBuilder appendCondition(StringBuilder sql, String column, String value) {
+		return sql.append(column).append(value == null ? " IS NULL" : " = ?");
+	}
+
+	private static void bindJob(PreparedStatement stmt, Job job) throws SQLException {
+		stmt.setString(1, job.getJobId());
+		stmt.setString(2, job.getStripe());
+		stmt.setString(3, job.getObjectType());
+		stmt.setString(4, job.getObjectName());
+		stmt.setString(5, job.getNameSpace());
+		stmt.setString(6, job.getTwopartName());
+		stmt.setString(7, job.getJobType().name());
+		stmt.setString(8, job.getStatus().name());
+		stmt.setString(9, job.getPriority() == null ? null : job.getPriority().name());
+		stmt.setString(10, job.getJobDetail());
+		stmt.setTimestamp(11, job.getRequestTime());
+		setTimestamp(stmt, 12, job.getStartTime());
+		setTimestamp(stmt, 13, job.getEndTime());
+		setTimestamp(stmt, 14, job.getLastPingTime());
+		stmt.setString(15, job.getOwnerId());
+		setTimestamp(stmt, 16, job.getLeaseExpiry());
+		stmt.setLong(17, job.getFencingToken());
+		stmt.setInt(18, job.getAttempt());
+		setTimestamp(stmt, 19, job.getRetryTime());
+	}
+
+	private static void setTimestamp(PreparedStatement stmt, int index, Timestamp value) throws SQLException {
+		if (value == null) {
+			stmt.setNull(index, Types.TIMESTAMP);
+		}
+		else {
+			stmt.setTimestamp(index, value);
+		}
+	}
+
+	private static Job readJob(PreparedStatement stmt) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery()) {
+			return rs.next() ? toJob(rs) : null;
+		}
+	}
+
+	private static Job toJob(ResultSet rs) throws SQLException {
+		String priority = rs.getString("PRIORITY");
+		Job job = new Job(rs.getString("JOB_ID"), rs.getString("STRIPE"), rs.getString("TWOPART_NAME"),
+				rs.getString("OBJECT_TYPE"), Job.JobType.valueOf(rs.getString("JOB_TYPE")),
+				priority == null ? JobPriority.MEDIUM : JobPriority.valueOf(priority));
+		job.setObjectName(rs.getString("OBJECT_NAME"));
+		job.setNameSpace(rs.getString("NAME_SPACE"));
+		job.setStatus(Job.Status.valueOf(rs.getString("STATUS")));
+		job.setJobDetail(rs.getString("JOB_DETAIL"));
+		job.setRequestTime(rs.getTimestamp("REQUEST_TIME"));
+		job.setStartTime(rs.getTimestamp("START_TIME"));
+		job.setEndTime(rs.getTimestamp("END_TIME"));
+		job.setLastPingTime(rs.getTimestamp("LAST_PING_TIME"));
+		job.setOwnerId(rs.getString("OWNER_ID"));
+		job.setLeaseExpiry(rs.getTimestamp("LEASE_EXPIRY"));
+		job.setFencingToken(rs.getLong("FENCING_TOKEN"));
+		job.setAttempt(rs.getInt("ATTEMPT"));
+		job.setRetryTime(rs.getTimestamp("RETRY_TIME"));
+		return job;
+	}
+
+	private interface SqlWork<R> {
+		R execute(JobConnectionPool.PooledConnection conn) throws SQLException;
+	}
+
+	private <R> R withConnection(SqlWork<R> work) throws SQLException {
+		JobConnectionPool.PooledConnection conn = pool.borrow();
+		boolean broken = false;
+		try {
+			return work.execute(conn);
+		}
+		catch (SQLException ex) {
+			broken = JobConnectionPool.isBroken(ex, conn);
+			throw ex;
+		}
+		finally {
+			pool.release(conn, broken);
+		}
+	}
 
+	private <R> R inTransaction(SqlWork<R> work) throws SQLException {
+		return withConnection(conn -> {
+			Connection connection = conn.getConnection();
+			connection.setAutoCommit(false);
+			try {
+				R result = work.execute(conn);
+				connection.commit();
+				return result;
+			}
+			catch (SQLException | RuntimeException ex) {
+				try {
+					connection.rollback();
+				}
+				catch (SQLException e) {
+					ex.addSuppressed(e);
+				}
+				throw ex;
+			}
+			finally {
+				connection.setAutoCommit(true);
+			}
+		});
 	}
 }
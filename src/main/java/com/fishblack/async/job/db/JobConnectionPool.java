@@ -0,0 +1,177 @@
+package com.fishblack.async.job.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A small fixed-size JDBC connection pool for the job data provider.
+ * Every pooled connection keeps its own prepared statement cache, so the statements
+ * of the provider are prepared once per connection and reused afterwards.
+ */
+class JobConnectionPool implements AutoCloseable {
+	private static final Logger logger = Logger.getLogger(JobConnectionPool.class.getName());
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final long borrowTimeout;
+	private final Semaphore permits;
+	private final BlockingQueue<PooledConnection> idleConnections;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor of this class
+	 * @param url jdbc url
+	 * @param user database user
+	 * @param password database password
+	 * @param maxSize max count of open connections
+	 * @param borrowTimeout max time in MILLISECONDS to wait for a free connection
+	 */
+	JobConnectionPool(String url, String user, String password, int maxSize, long borrowTimeout) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.borrowTimeout = borrowTimeout;
+		this.permits = new Semaphore(maxSize);
+		this.idleConnections = new ArrayBlockingQueue<>(maxSize);
+	}
+
+	/**
+	 * Borrow a connection, opening a new one when no idle connection is available.
+	 * @return the pooled connection, must be given back with {@link #release(PooledConnection, boolean)}
+	 * @throws SQLException when the pool is closed, exhausted or the connection cannot be opened
+	 */
+	PooledConnection borrow() throws SQLException {
+		if (closed) {
+			throw new SQLTransientConnectionException("Job connection pool is closed");
+		}
+		try {
+			if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SQLTransientConnectionException("Timed out waiting for a job database connection");
+			}
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted waiting for a job database connection", ex);
+		}
+		PooledConnection conn = idleConnections.poll();
+		if (conn != null) {
+			return conn;
+		}
+		try {
+			return new PooledConnection(DriverManager.getConnection(url, user, password));
+		}
+		catch (SQLException | RuntimeException ex) {
+			permits.release();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Give a borrowed connection back to the pool.
+	 * @param conn the borrowed connection
+	 * @param broken whether the connection failed and must be discarded
+	 */
+	void release(PooledConnection conn, boolean broken) {
+		try {
+			if (broken || closed || !idleConnections.offer(conn)) {
+				conn.close();
+			}
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Check if the failure means the connection is not usable anymore.
+	 * @param ex the failure
+	 * @param conn the connection the failure happened on
+	 * @return true when the connection must be discarded
+	 */
+	static boolean isBroken(SQLException ex, PooledConnection conn) {
+		String state = ex.getSQLState();
+		if (state != null && state.startsWith("08")) {
+			return true;
+		}
+		try {
+			return conn.getConnection().isClosed();
+		}
+		catch (SQLException e) {
+			return true;
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		PooledConnection conn;
+		while ((conn = idleConnections.poll()) != null) {
+			conn.close();
+		}
+	}
+
+	/**
+	 * A connection with its prepared statement cache.
+	 * A pooled connection is used by one thread at a time, so the cache needs no locking.
+	 */
+	static class PooledConnection {
+		private final Connection connection;
+		private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+		PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		Connection getConnection() {
+			return connection;
+		}
+
+		/**
+		 * Get the prepared statement of the sql, preparing it on first use.
+		 * @param sql the sql text
+		 * @return the cached statement with cleared parameters
+		 * @throws SQLException when the statement cannot be prepared
+		 */
+		PreparedStatement prepare(String sql) throws SQLException {
+			PreparedStatement stmt = statements.get(sql);
+			if (stmt == null) {
+				stmt = connection.prepareStatement(sql);
+				statements.put(sql, stmt);
+			}
+			else {
+				stmt.clearParameters();
+			}
+			return stmt;
+		}
+
+		void close() {
+			for (PreparedStatement stmt : statements.values()) {
+				try {
+					stmt.close();
+				}
+				catch (SQLException ex) {
+					logger.log(Level.FINE, "Failed to close statement", ex);
+				}
+			}
+			statements.clear();
+			try {
+				connection.close();
+			}
+			catch (SQLException ex) {
+				logger.log(Level.FINE, "Failed to close connection", ex);
+			}
+		}
+	}
+}
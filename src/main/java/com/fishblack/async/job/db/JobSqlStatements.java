@@ -0,0 +1,274 @@
+package com.fishblack.async.job.db;
+
+import com.fishblack.async.job.JobPriority;
+
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * The SQL used by {@link DBJobDataProvider}.
+ * It is tested on H2 only. The current time query differs between the databases,
+ * see {@link #currentTimestampQuery(String)}, and other statements may need changes on other databases.
+ */
+final class JobSqlStatements {
+
+	static final String TABLE_NAME = "DSS_JOBS";
+
+	static final String COLUMNS = "JOB_ID, STRIPE, OBJECT_TYPE, OBJECT_NAME, NAME_SPACE, TWOPART_NAME, JOB_TYPE, " +
+			"STATUS, PRIORITY, JOB_DETAIL, REQUEST_TIME, START_TIME, END_TIME, LAST_PING_TIME, OWNER_ID, LEASE_EXPIRY, FENCING_TOKEN, " +
+			"ATTEMPT, RETRY_TIME";
+
+	static final String RUNNING_STATUSES = "('RUNNING', 'REQUEST_FOR_CANCEL')";
+
+	static final String FINISHED_STATUSES = "('SUCCEEDED', 'CANCELLED', 'FAILED', 'ERROR')";
+
+	static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " (" +
+			"JOB_ID VARCHAR(64) NOT NULL PRIMARY KEY, " +
+			"STRIPE VARCHAR(255), " +
+			"OBJECT_TYPE VARCHAR(64), " +
+			"OBJECT_NAME VARCHAR(512), " +
+			"NAME_SPACE VARCHAR(512), " +
+			"TWOPART_NAME VARCHAR(1024), " +
+			"JOB_TYPE VARCHAR(32) NOT NULL, " +
+			"STATUS VARCHAR(32) NOT NULL, " +
+			"PRIORITY VARCHAR(16), " +
+			"JOB_DETAIL VARCHAR(4000), " +
+			"REQUEST_TIME TIMESTAMP NOT NULL, " +
+			"START_TIME TIMESTAMP, " +
+			"END_TIME TIMESTAMP, " +
+			"LAST_PING_TIME TIMESTAMP, " +
+			"OWNER_ID VARCHAR(255), " +
+			"LEASE_EXPIRY TIMESTAMP, " +
+			"FENCING_TOKEN BIGINT DEFAULT 0 NOT NULL, " +
+			"ATTEMPT INT DEFAULT 1 NOT NULL, " +
+			"RETRY_TIME TIMESTAMP)";
+
+	/**
+	 * The lease columns added to a job table created before them.
+	 */
+	static final String[][] LEASE_COLUMNS = {
+			{"OWNER_ID", "VARCHAR(255)"},
+			{"LEASE_EXPIRY", "TIMESTAMP"},
+			{"FENCING_TOKEN", "BIGINT DEFAULT 0 NOT NULL"}};
+
+	/**
+	 * The retry columns added to a job table created before them.
+	 */
+	static final String[][] RETRY_COLUMNS = {
+			{"ATTEMPT", "INT DEFAULT 1 NOT NULL"},
+			{"RETRY_TIME", "TIMESTAMP"}};
+
+	static final String CREATE_OBJECT_INDEX = "CREATE INDEX " + TABLE_NAME + "_OBJECT_IDX ON " + TABLE_NAME +
+			" (STRIPE, TWOPART_NAME, OBJECT_TYPE, JOB_TYPE, REQUEST_TIME, JOB_ID)";
+
+	static final String CREATE_STATUS_INDEX = "CREATE INDEX " + TABLE_NAME + "_STATUS_IDX ON " + TABLE_NAME +
+			" (STATUS, STRIPE)";
+
+	/**
+	 * Only the running jobs have a lease expiry, so the expired leases are found by a range scan of this index.
+	 */
+	static final String CREATE_LEASE_INDEX = "CREATE INDEX " + TABLE_NAME + "_LEASE_IDX ON " + TABLE_NAME +
+			" (LEASE_EXPIRY)";
+
+	static final String CLAIM_INDEX_NAME = TABLE_NAME + "_CLAIM_IDX";
+
+	/**
+	 * The not started jobs of a priority are walked in request order on this index, up to the count to be claimed.
+	 */
+	static final String CREATE_CLAIM_INDEX = "CREATE INDEX " + CLAIM_INDEX_NAME + " ON " + TABLE_NAME +
+			" (STATUS, PRIORITY, REQUEST_TIME, JOB_ID)";
+
+	static final String SWEEP_INDEX_NAME = TABLE_NAME + "_SWEEP_IDX";
+
+	/**
+	 * The finished jobs past the retention are found by a range scan of this index for each finished status.
+	 */
+	static final String CREATE_SWEEP_INDEX = "CREATE INDEX " + SWEEP_INDEX_NAME + " ON " + TABLE_NAME +
+			" (STATUS, END_TIME)";
+
+	static final String INSERT_JOB = "INSERT INTO " + TABLE_NAME + " (" + COLUMNS + ") " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	static final String SELECT_JOB = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " WHERE JOB_ID = ?";
+
+	/**
+	 * Statuses are read in chunks of this size, the last chunk padded, so that a single statement is reused.
+	 */
+	static final int STATUS_QUERY_CHUNK_SIZE = 100;
+
+	static final String SELECT_STATUSES = "SELECT JOB_ID, STATUS FROM " + TABLE_NAME + " WHERE JOB_ID IN (" +
+			String.join(", ", Collections.nCopies(STATUS_QUERY_CHUNK_SIZE, "?")) + ")";
+
+	/**
+	 * The object condition is appended at runtime, see {@link DBJobDataProvider}.
+	 */
+	static final String SELECT_JOBS_OF_OBJECT = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " WHERE ";
+
+	/**
+	 * Locks the jobs of an object, the object conditions being appended at runtime and followed by {@link #FOR_UPDATE}.
+	 * The jobs are read to check whether a job of the object is still claimable, see {@link #CLAIM_JOB}.
+	 */
+	static final String LOCK_JOBS_OF_OBJECT = "SELECT JOB_ID, STATUS, REQUEST_TIME FROM " + TABLE_NAME + " WHERE ";
+
+	static final String FOR_UPDATE = " FOR UPDATE";
+
+	/**
+	 * The jobs requested in the same instant are told apart by their time-ordered ids.
+	 */
+	static final String ORDER_BY_LATEST = " ORDER BY REQUEST_TIME DESC, JOB_ID DESC";
+
+	static final String AND_RUNNING = " AND STATUS IN " + RUNNING_STATUSES;
+
+	/**
+	 * The status updates are fenced: they only apply with the current fencing token of the job.
+	 */
+	static final String UPDATE_STATUS = "UPDATE " + TABLE_NAME + " SET STATUS = ? WHERE JOB_ID = ? AND FENCING_TOKEN = ?";
+
+	/**
+	 * Only a not started job is started, so that a job cancelled before it started is not run.
+	 */
+	static final String UPDATE_STATUS_RUNNING = "UPDATE " + TABLE_NAME +
+			" SET STATUS = ?, START_TIME = CURRENT_TIMESTAMP, LAST_PING_TIME = CURRENT_TIMESTAMP, OWNER_ID = ?, " +
+			"LEASE_EXPIRY = ?, FENCING_TOKEN = FENCING_TOKEN + 1 WHERE JOB_ID = ? AND FENCING_TOKEN = ? AND STATUS = 'NOT_STARTED'";
+
+	static final String UPDATE_STATUS_FINISHED = "UPDATE " + TABLE_NAME +
+			" SET STATUS = ?, END_TIME = CURRENT_TIMESTAMP, LEASE_EXPIRY = NULL WHERE JOB_ID = ? AND FENCING_TOKEN = ?";
+
+	static final String RENEW_LEASE = "UPDATE " + TABLE_NAME +
+			" SET LEASE_EXPIRY = ?, LAST_PING_TIME = CURRENT_TIMESTAMP WHERE JOB_ID = ? AND OWNER_ID = ? AND STATUS IN " + RUNNING_STATUSES;
+
+	static final String SELECT_EXPIRED_LEASES = "SELECT " + COLUMNS + " FROM " + TABLE_NAME +
+			" WHERE LEASE_EXPIRY < ? ORDER BY LEASE_EXPIRY";
+
+	static final String RECLAIM_JOB = "UPDATE " + TABLE_NAME +
+			" SET STATUS = ?, END_TIME = ?, LEASE_EXPIRY = NULL, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE JOB_ID = ? AND FENCING_TOKEN = ? AND LEASE_EXPIRY < ?";
+
+	/**
+	 * The claimable jobs are the not started jobs with neither a running nor a newer job of the same object.
+	 * The object columns are compared with '=' so that the object index is used, which misses the jobs of the objects
+	 * with a null column, see {@link DBJobDataProvider} for them.
+	 * One of {@link #CLAIM_PRIORITIES}, the job type condition and {@link #AND_RETRY_DUE} are appended at runtime.
+	 */
+	static final String SELECT_CLAIMABLE_JOBS = "SELECT " + COLUMNS + " FROM " + TABLE_NAME + " j" +
+			" WHERE STATUS = 'NOT_STARTED' AND " + noRunningOrNewerJob(sameValue("STRIPE") + " AND " +
+			sameValue("TWOPART_NAME") + " AND " + sameValue("OBJECT_TYPE")) + " AND ";
+
+	/**
+	 * A retried job is not claimed before its retry time.
+	 */
+	static final String AND_RETRY_DUE = " AND (RETRY_TIME IS NULL OR RETRY_TIME <= ?)";
+
+	/**
+	 * The priority conditions in claim order, a job without priority being a medium one.
+	 * Each of them is an equality on the claim index, so that the jobs are read in index order without a sort.
+	 */
+	static final String[] CLAIM_PRIORITIES = {
+			"PRIORITY = '" + JobPriority.HIGH.name() + "'",
+			"PRIORITY = '" + JobPriority.MEDIUM.name() + "'",
+			"PRIORITY IS NULL",
+			"PRIORITY = '" + JobPriority.LOW.name() + "'"};
+
+	/**
+	 * The status and priority are fixed by the conditions, and listed only for the database to see that the rows
+	 * are read in the order of the claim index.
+	 */
+	static final String ORDER_BY_CLAIM = " ORDER BY STATUS, PRIORITY, REQUEST_TIME, JOB_ID";
+
+	/**
+	 * A job is claimed only if no other node claimed or changed it since it was read. That it is still the latest job
+	 * of its object with no running job of the object, e.g. none claimed by another node out of a newer job created since,
+	 * is checked on the rows locked by {@link #LOCK_JOBS_OF_OBJECT} in the same transaction, as MySQL rejects
+	 * a subquery of the table being updated.
+	 */
+	static final String CLAIM_JOB = "UPDATE " + TABLE_NAME +
+			" SET STATUS = 'RUNNING', START_TIME = CURRENT_TIMESTAMP, LAST_PING_TIME = CURRENT_TIMESTAMP, OWNER_ID = ?, " +
+			"LEASE_EXPIRY = ?, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE JOB_ID = ? AND STATUS = 'NOT_STARTED' AND FENCING_TOKEN = ?";
+
+	/**
+	 * A job is put back for a retry only if it was neither changed nor requested to cancel since it was read.
+	 */
+	static final String RETRY_JOB = "UPDATE " + TABLE_NAME +
+			" SET STATUS = 'NOT_STARTED', ATTEMPT = ?, RETRY_TIME = ?, LEASE_EXPIRY = NULL, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE JOB_ID = ? AND FENCING_TOKEN = ? AND STATUS IN ('NOT_STARTED', 'RUNNING')";
+
+	static final String SELECT_RUNNING_OF_STRIPE_FOR_UPDATE = "SELECT JOB_ID FROM " + TABLE_NAME +
+			" WHERE STRIPE = ? AND STATUS IN " + RUNNING_STATUSES + " FOR UPDATE";
+
+	/**
+	 * The jobs are cancelled by id in chunks of {@link #STATUS_QUERY_CHUNK_SIZE}, the last chunk padded, so that only
+	 * the jobs locked by {@link #SELECT_RUNNING_OF_STRIPE_FOR_UPDATE} are cancelled.
+	 */
+	static final String CANCEL_RUNNING_JOBS = "UPDATE " + TABLE_NAME +
+			" SET STATUS = 'CANCELLED', END_TIME = CURRENT_TIMESTAMP, LEASE_EXPIRY = NULL, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE STATUS IN " + RUNNING_STATUSES + " AND JOB_ID IN (" +
+			String.join(", ", Collections.nCopies(STATUS_QUERY_CHUNK_SIZE, "?")) + ")";
+
+	static final String KEEP_ON_TRACK = "UPDATE " + TABLE_NAME + " SET LAST_PING_TIME = CURRENT_TIMESTAMP WHERE JOB_ID = ?";
+
+	static final String CURE_OUT_OF_TRACK = "UPDATE " + TABLE_NAME +
+			" SET STATUS = 'CANCELLED', END_TIME = CURRENT_TIMESTAMP, LEASE_EXPIRY = NULL, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE STATUS IN " + RUNNING_STATUSES +
+			" AND COALESCE(LAST_PING_TIME, START_TIME, REQUEST_TIME) < ?";
+
+	static final String DELETE_FINISHED = "DELETE FROM " + TABLE_NAME +
+			" WHERE STATUS IN " + FINISHED_STATUSES + " AND END_TIME < ?";
+
+	static final String SELECT_FINISHED_BEFORE = "SELECT " + COLUMNS + " FROM " + TABLE_NAME +
+			" WHERE STATUS IN " + FINISHED_STATUSES + " AND END_TIME < ?";
+
+	/**
+	 * A finished job is deleted only if no other node deleted or changed it since it was read.
+	 */
+	static final String DELETE_FINISHED_JOB = "DELETE FROM " + TABLE_NAME +
+			" WHERE JOB_ID = ? AND STATUS IN " + FINISHED_STATUSES + " AND FENCING_TOKEN = ?";
+
+	static final String SELECT_OUT_OF_TRACK = "SELECT " + COLUMNS + " FROM " + TABLE_NAME +
+			" WHERE STATUS IN " + RUNNING_STATUSES + " AND COALESCE(LAST_PING_TIME, START_TIME, REQUEST_TIME) < ?";
+
+	/**
+	 * A running job is cancelled only if it was neither changed nor pinged since it was read.
+	 */
+	static final String CURE_OUT_OF_TRACK_JOB = "UPDATE " + TABLE_NAME +
+			" SET STATUS = 'CANCELLED', END_TIME = CURRENT_TIMESTAMP, LEASE_EXPIRY = NULL, FENCING_TOKEN = FENCING_TOKEN + 1" +
+			" WHERE JOB_ID = ? AND FENCING_TOKEN = ? AND STATUS IN " + RUNNING_STATUSES +
+			" AND COALESCE(LAST_PING_TIME, START_TIME, REQUEST_TIME) < ?";
+
+	static final String CURRENT_TIMESTAMP = "SELECT CURRENT_TIMESTAMP";
+
+	static final String CURRENT_TIMESTAMP_FROM_DUAL = "SELECT CURRENT_TIMESTAMP FROM DUAL";
+
+	static final String VALUES_CURRENT_TIMESTAMP = "VALUES CURRENT_TIMESTAMP";
+
+	private JobSqlStatements() {}
+
+	/**
+	 * Get the query of the current time of a database, Oracle requiring a table and Derby and DB2 a VALUES statement.
+	 * @param productName the database product name of the JDBC metadata
+	 * @return the query
+	 */
+	static String currentTimestampQuery(String productName) {
+		String product = productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+		if (product.contains("oracle")) {
+			return CURRENT_TIMESTAMP_FROM_DUAL;
+		}
+		if (product.contains("derby") || product.startsWith("db2")) {
+			return VALUES_CURRENT_TIMESTAMP;
+		}
+		return CURRENT_TIMESTAMP;
+	}
+
+	private static String sameValue(String column) {
+		return "o." + column + " = j." + column;
+	}
+
+	/**
+	 * The condition that no job 'o' of the object of job 'j' is running or was requested after it.
+	 */
+	private static String noRunningOrNewerJob(String sameObject) {
+		return "NOT EXISTS (SELECT 1 FROM " + TABLE_NAME + " o WHERE " + sameObject +
+				" AND o.JOB_TYPE = j.JOB_TYPE AND (o.STATUS IN " + RUNNING_STATUSES + " OR o.REQUEST_TIME > j.REQUEST_TIME" +
+				" OR (o.REQUEST_TIME = j.REQUEST_TIME AND o.JOB_ID > j.JOB_ID)))";
+	}
+}
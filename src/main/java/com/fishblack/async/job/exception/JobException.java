@@ -18,7 +18,8 @@ public class JobException extends Exception {
         JOB_TYPE_NOT_SUPPORTED,
         CLEAN_JOB_FAILED,
         JOB_EXECUTION_FAILED,
-        INTERRUPTED
+        INTERRUPTED,
+        LEASE_LOST
     }
 
     private DSSJobErrorCode code;
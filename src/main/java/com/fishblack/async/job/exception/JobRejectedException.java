@@ -0,0 +1,19 @@
+package com.fishblack.async.job.exception;
+
+/**
+ * The exception for a job rejected by admission control.
+ * Rejections are expected under overload, so this exception does not fill in its stack trace.
+ */
+public class JobRejectedException extends JobException {
+
+    private static final long serialVersionUID = -3170372398417524946L;
+
+    public JobRejectedException(String message) {
+        super(DSSJobErrorCode.JOB_REJECTED, message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
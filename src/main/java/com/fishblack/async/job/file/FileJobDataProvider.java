@@ -0,0 +1,222 @@
+package com.fishblack.async.job.file;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.fishblack.async.job.JobConstants.FILE_DEFAULT_COMPACTION_THRESHOLD;
+import static com.fishblack.async.job.JobConstants.FILE_DEFAULT_SEGMENT_SIZE;
+
+/**
+ * A job data provider keeping the jobs in memory and every change of them in an append-only log on the local disk,
+ * for the deployments without a database. The jobs are loaded from the log when the provider is created,
+ * so they survive a restart or a crash of the process.
+ * The jobs are served by a {@link MemJobDataProvider}, which writes every change to the log while the changed job
+ * is locked, and the provider returns once the log is forced to the disk as the {@link FileSyncPolicy} asks.
+ * A change which could not be written to the log is undone and fails with {@link JobException}.
+ * The directory must be used by one provider at a time.
+ */
+public class FileJobDataProvider implements JobDataProvider, AutoCloseable {
+	private static final Logger logger = Logger.getLogger(FileJobDataProvider.class.getName());
+
+	private final MemJobDataProvider jobs;
+	private final JobLog log;
+
+	public FileJobDataProvider(Path directory) throws JobException {
+		this(directory, FileSyncPolicy.GROUP_COMMIT);
+	}
+
+	public FileJobDataProvider(Path directory, FileSyncPolicy syncPolicy) throws JobException {
+		this(directory, syncPolicy, FILE_DEFAULT_SEGMENT_SIZE, FILE_DEFAULT_COMPACTION_THRESHOLD);
+	}
+
+	/**
+	 * Constructor of this class, loading the jobs from the log in the directory.
+	 * @param directory the directory of the log, created when missing
+	 * @param syncPolicy when the log is forced to the disk
+	 * @param segmentSize the size of a log segment in bytes
+	 * @param compactionThreshold the count of log segments written since the last snapshot starting a compaction
+	 * @exception JobException when the log could not be read
+	 */
+	public FileJobDataProvider(Path directory, FileSyncPolicy syncPolicy, int segmentSize, int compactionThreshold)
+			throws JobException {
+		if (syncPolicy == null || segmentSize <= 0 || compactionThreshold <= 0) {
+			throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT,
+					"Sync policy is required, segment size and compaction threshold must be positive");
+		}
+		this.log = new JobLog(directory, syncPolicy, segmentSize, compactionThreshold);
+		this.jobs = new MemJobDataProvider(log);
+		try {
+			log.open(jobs);
+		}
+		catch (IOException | UncheckedIOException | IllegalArgumentException ex) {
+			throw new JobException(JobException.DSSJobErrorCode.INTERNAL_ERROR,
+					String.format("Failed to load the job log in %s", directory), ex);
+		}
+	}
+
+	@Override
+	public Job createJob(Job job) throws JobException {
+		return change(() -> jobs.createJob(job), JobException.DSSJobErrorCode.CREATION_FAILED);
+	}
+
+	@Override
+	public List<Job> createJobs(List<Job> jobList) throws JobException {
+		return change(() -> jobs.createJobs(jobList), JobException.DSSJobErrorCode.CREATION_FAILED);
+	}
+
+	@Override
+	public Job getJob(String jobId) {
+		return jobs.getJob(jobId);
+	}
+
+	@Override
+	public Map<String, Job.Status> getJobStatuses(Collection<String> jobIds) {
+		return jobs.getJobStatuses(jobIds);
+	}
+
+	@Override
+	public Job getRunningJob(String stripe, String twopartName, String objType, Job.JobType jobType) {
+		return jobs.getRunningJob(stripe, twopartName, objType, jobType);
+	}
+
+	@Override
+	public Job getLatestJob(String stripe, String twopartName, String objType, Job.JobType jobType) {
+		return jobs.getLatestJob(stripe, twopartName, objType, jobType);
+	}
+
+	@Override
+	public int updateJobStatus(Job job, Job.Status status) throws JobException {
+		return change(() -> jobs.updateJobStatus(job, status), JobException.DSSJobErrorCode.UPDATE_FAILED);
+	}
+
+	@Override
+	public int renewLeases(String ownerId, Collection<String> jobIds, Timestamp leaseExpiry) throws JobException {
+		return change(() -> jobs.renewLeases(ownerId, jobIds, leaseExpiry), JobException.DSSJobErrorCode.UPDATE_FAILED);
+	}
+
+	@Override
+	public List<Job> getExpiredLeaseJobs(Timestamp now, int maxCount) {
+		return jobs.getExpiredLeaseJobs(now, maxCount);
+	}
+
+	@Override
+	public int reclaimJob(Job job, Job.Status status, Timestamp now) throws JobException {
+		return change(() -> jobs.reclaimJob(job, status, now), JobException.DSSJobErrorCode.UPDATE_FAILED);
+	}
+
+	@Override
+	public List<Job> claimJobs(String ownerId, Timestamp leaseExpiry, Collection<Job.JobType> jobTypes, int maxCount)
+			throws JobException {
+		return change(() -> jobs.claimJobs(ownerId, leaseExpiry, jobTypes, maxCount), JobException.DSSJobErrorCode.UPDATE_FAILED);
+	}
+
+	@Override
+	public int retryJob(Job job) throws JobException {
+		return change(() -> jobs.retryJob(job), JobException.DSSJobErrorCode.UPDATE_FAILED);
+	}
+
+	@Override
+	public boolean supportsSweeping() {
+		return true;
+	}
+
+	@Override
+	public List<Job> getFinishedJobs(Timestamp endedBefore, int maxCount) {
+		return jobs.getFinishedJobs(endedBefore, maxCount);
+	}
+
+	@Override
+	public List<Job> deleteFinishedJobs(List<Job> jobList) throws JobException {
+		return change(() -> jobs.deleteFinishedJobs(jobList), JobException.DSSJobErrorCode.CLEAN_JOB_FAILED);
+	}
+
+	@Override
+	public List<Job> cureStuckJobs(Timestamp lastSeenBefore, int maxCount) throws JobException {
+		return change(() -> jobs.cureStuckJobs(lastSeenBefore, maxCount), JobException.DSSJobErrorCode.CLEAN_JOB_FAILED);
+	}
+
+	@Override
+	public int handleLegacyJobs(long jobMaxRunningTime) throws JobException {
+		return change(() -> jobs.handleLegacyJobs(jobMaxRunningTime), JobException.DSSJobErrorCode.CLEAN_JOB_FAILED);
+	}
+
+	@Override
+	public Timestamp getCurrentTimestamp() {
+		return jobs.getCurrentTimestamp();
+	}
+
+	@Override
+	public List<String> cancelJobs(String stripeName) {
+		try {
+			return change(() -> jobs.cancelJobs(stripeName), JobException.DSSJobErrorCode.UPDATE_FAILED);
+		}
+		catch (JobException ex) {
+			logger.log(Level.WARNING, String.format("Failed to cancel jobs of stripe %s", stripeName), ex);
+			return Collections.emptyList();
+		}
+	}
+
+	@Override
+	public void keepOnTrackJobs(List<String> jobIds) {
+		try {
+			change(() -> {
+				jobs.keepOnTrackJobs(jobIds);
+				return null;
+			}, JobException.DSSJobErrorCode.UPDATE_FAILED);
+		}
+		catch (JobException ex) {
+			logger.log(Level.WARNING, "Failed to keep on track jobs", ex);
+		}
+	}
+
+	/**
+	 * Force the log to the disk and stop its background work. The provider must not be used afterwards.
+	 */
+	@Override
+	public void close() {
+		log.close();
+	}
+
+	/**
+	 * Make a change of the jobs and wait until it is on the disk as the sync policy asks.
+	 * The change may be undone by a failure of the log, which is thrown as a job exception of the given code.
+	 */
+	private <T> T change(JobChange<T> change, JobException.DSSJobErrorCode errorCode) throws JobException {
+		T result;
+		log.beginChange();
+		try {
+			result = change.apply();
+		}
+		catch (UncheckedIOException ex) {
+			throw new JobException(errorCode, "Failed to write the job log", ex.getCause());
+		}
+		finally {
+			log.endChange();
+		}
+		try {
+			log.sync();
+		}
+		catch (IOException ex) {
+			throw new JobException(errorCode, "Failed to force the job log to the disk", ex);
+		}
+		return result;
+	}
+
+	@FunctionalInterface
+	private interface JobChange<T> {
+		T apply() throws JobException;
+	}
+}
@@ -0,0 +1,25 @@
+package com.fishblack.async.job.file;
+
+/**
+ * When the job log of a {@link FileJobDataProvider} is forced to the disk.
+ * The records are written to memory mapped files, so they survive a crash of the process with any policy,
+ * the policy is about a crash of the operating system or a power loss.
+ */
+public enum FileSyncPolicy {
+
+	/**
+	 * Every change is forced to the disk before the provider returns, by its own caller.
+	 */
+	PER_WRITE,
+
+	/**
+	 * Every change is forced to the disk before the provider returns, and the callers changing jobs at the same time
+	 * share a force, so the count of forces does not grow with the count of concurrent changes.
+	 */
+	GROUP_COMMIT,
+
+	/**
+	 * The changes are forced to the disk every second in the background, and up to a second of changes may be lost.
+	 */
+	PERIODIC
+}
@@ -0,0 +1,465 @@
+package com.fishblack.async.job.file;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.mem.JobStoreListener;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.fishblack.async.job.JobConstants.FILE_JOB_LOG_THREAD_NAME;
+import static com.fishblack.async.job.JobConstants.FILE_SYNC_INTERVAL;
+
+/**
+ * The append-only log of the changes of the jobs of a {@link FileJobDataProvider}.
+ * The log is a sequence of segments, files of a fixed size mapped in memory, written one after the other,
+ * and of snapshots holding all the jobs as they were when a segment was started.
+ * When the count of segments since the last snapshot reaches the compaction threshold, a new snapshot is written
+ * in the background and the segments and snapshots before it are deleted.
+ * On opening, the jobs are loaded from the last snapshot and the segments after it, and the appending continues
+ * after the last whole record, so a record torn by a crash is dropped.
+ */
+class JobLog implements JobStoreListener {
+	private static final Logger logger = Logger.getLogger(JobLog.class.getName());
+
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final int SNAPSHOT_BUFFER_SIZE = 1024 * 1024;
+
+	private final Path directory;
+	private final FileSyncPolicy syncPolicy;
+	private final int segmentSize;
+	private final int compactionThreshold;
+	private final ReadWriteLock changeLock = new ReentrantReadWriteLock();
+	private final Object flushLock = new Object();
+	private final ScheduledExecutorService executor;
+
+	private MemJobDataProvider jobs;
+	private MappedByteBuffer segment;
+	private long segmentSequence;
+	private long snapshotSequence;
+	private boolean compacting;
+	private boolean closed;
+	private boolean flushing;
+	private final List<MappedByteBuffer> unflushedSegments = new ArrayList<>();
+	private long written;
+	private volatile long flushed;
+
+	/**
+	 * Constructor of this class
+	 * @param directory the directory of the log, created when missing
+	 * @param syncPolicy when the log is forced to the disk
+	 * @param segmentSize the size of a segment in bytes
+	 * @param compactionThreshold the count of segments since the last snapshot starting a compaction
+	 */
+	JobLog(Path directory, FileSyncPolicy syncPolicy, int segmentSize, int compactionThreshold) {
+		this.directory = directory;
+		this.syncPolicy = syncPolicy;
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, FILE_JOB_LOG_THREAD_NAME);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Load the jobs of the log, and start writing their changes.
+	 * @param jobs the provider the jobs are loaded to, which writes their changes to this log
+	 * @exception IOException when the log could not be read
+	 */
+	void open(MemJobDataProvider jobs) throws IOException {
+		this.jobs = jobs;
+		try {
+			Files.createDirectories(directory);
+			recover();
+		}
+		catch (IOException | RuntimeException ex) {
+			executor.shutdown();
+			throw ex;
+		}
+		if (syncPolicy == FileSyncPolicy.PERIODIC) {
+			executor.scheduleWithFixedDelay(this::flushQuietly, FILE_SYNC_INTERVAL, FILE_SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Start a change of the jobs. A compaction waits for the changes in progress to start a new segment, so that every
+	 * change written to the segments before is visible to the snapshot.
+	 */
+	void beginChange() {
+		changeLock.readLock().lock();
+	}
+
+	/**
+	 * End a change of the jobs, started by {@link #beginChange()}.
+	 */
+	void endChange() {
+		changeLock.readLock().unlock();
+	}
+
+	@Override
+	public void stored(Job job) {
+		append(JobRecords.stored(job));
+	}
+
+	@Override
+	public void removed(String jobId) {
+		append(JobRecords.removed(jobId));
+	}
+
+	/**
+	 * Wait until the records appended so far are on the disk, as the sync policy asks.
+	 * @exception IOException when the log could not be forced
+	 */
+	void sync() throws IOException {
+		if (syncPolicy != FileSyncPolicy.PERIODIC) {
+			flush(syncPolicy == FileSyncPolicy.GROUP_COMMIT);
+		}
+	}
+
+	/**
+	 * Force the log to the disk and stop the compaction.
+	 */
+	void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		flushQuietly();
+		synchronized (this) {
+			closed = true;
+		}
+	}
+
+	private synchronized void append(ByteBuffer record) {
+		if (closed) {
+			throw new UncheckedIOException(new IOException("Job log is closed"));
+		}
+		if (record.remaining() > segment.remaining()) {
+			if (record.remaining() > segmentSize) {
+				throw new UncheckedIOException(new IOException(
+						String.format("Job record of %d bytes exceeds the segment size", record.remaining())));
+			}
+			roll();
+		}
+		segment.put(record);
+		written++;
+	}
+
+	/**
+	 * Continue the log in a new segment, and start a compaction when the segments since the last snapshot are enough.
+	 * @return the sequence number of the new segment
+	 */
+	private synchronized long roll() {
+		try {
+			MappedByteBuffer next = map(segmentPath(segmentSequence + 1), segmentSize, true);
+			syncDirectory();
+			unflushedSegments.add(segment);
+			segment = next;
+			segmentSequence++;
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		if (!compacting && segmentSequence - snapshotSequence >= compactionThreshold) {
+			compacting = true;
+			executor.execute(this::compact);
+		}
+		return segmentSequence;
+	}
+
+	/**
+	 * Force the records appended so far to the disk. One thread forces the log at a time, and the threads waiting for it
+	 * do not hold a lock, so they return as soon as a force covering their records is done.
+	 * @param shared whether a force started by another thread after the records were appended is enough
+	 */
+	private void flush(boolean shared) throws IOException {
+		long position;
+		synchronized (this) {
+			position = written;
+		}
+		if (shared && flushed >= position) {
+			return;
+		}
+		synchronized (flushLock) {
+			while (flushing && !(shared && flushed >= position)) {
+				try {
+					flushLock.wait();
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the job log to be forced to the disk");
+				}
+			}
+			if (shared && flushed >= position) {
+				return;
+			}
+			flushing = true;
+		}
+		long forced = -1;
+		try {
+			forced = force();
+		}
+		finally {
+			synchronized (flushLock) {
+				flushing = false;
+				if (forced > flushed) {
+					flushed = forced;
+				}
+				flushLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Force the segments written since the last force.
+	 * @return the count of records appended before the force
+	 */
+	private long force() throws IOException {
+		long position;
+		List<MappedByteBuffer> buffers;
+		synchronized (this) {
+			position = written;
+			buffers = new ArrayList<>(unflushedSegments);
+			buffers.add(segment);
+			unflushedSegments.clear();
+		}
+		try {
+			for (MappedByteBuffer buffer : buffers) {
+				buffer.force();
+			}
+		}
+		catch (RuntimeException ex) {
+			synchronized (this) {
+				unflushedSegments.addAll(0, buffers.subList(0, buffers.size() - 1));
+			}
+			throw new IOException("Failed to force the job log to the disk", ex);
+		}
+		return position;
+	}
+
+	private void flushQuietly() {
+		try {
+			flush(false);
+		}
+		catch (IOException ex) {
+			logger.log(Level.WARNING, "Failed to force the job log to the disk", ex);
+		}
+	}
+
+	/**
+	 * Write a snapshot of all the jobs as of a new segment, and delete the segments and snapshots before it.
+	 */
+	private void compact() {
+		long sequence;
+		Lock lock = changeLock.writeLock();
+		lock.lock();
+		try {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				sequence = roll();
+			}
+		}
+		catch (UncheckedIOException ex) {
+			logger.log(Level.WARNING, "Failed to start a new job log segment for compaction", ex);
+			synchronized (this) {
+				compacting = false;
+			}
+			return;
+		}
+		finally {
+			lock.unlock();
+		}
+		try {
+			writeSnapshot(sequence);
+			synchronized (this) {
+				snapshotSequence = sequence;
+			}
+			deleteBefore(sequence);
+		}
+		catch (IOException | UncheckedIOException ex) {
+			logger.log(Level.WARNING, String.format("Failed to write the job log snapshot %d", sequence), ex);
+		}
+		finally {
+			synchronized (this) {
+				compacting = false;
+			}
+		}
+	}
+
+	private void writeSnapshot(long sequence) throws IOException {
+		Path temp = directory.resolve(fileName(sequence, SNAPSHOT_SUFFIX + TEMP_SUFFIX));
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(SNAPSHOT_BUFFER_SIZE);
+			jobs.forEachJob(job -> {
+				ByteBuffer record = JobRecords.stored(job);
+				try {
+					if (record.remaining() > buffer.remaining()) {
+						((Buffer) buffer).flip();
+						write(channel, buffer);
+						((Buffer) buffer).clear();
+					}
+					if (record.remaining() > buffer.remaining()) {
+						write(channel, record);
+					}
+					else {
+						buffer.put(record);
+					}
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+			((Buffer) buffer).flip();
+			write(channel, buffer);
+			channel.force(true);
+		}
+		Files.move(temp, directory.resolve(fileName(sequence, SNAPSHOT_SUFFIX)), StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory();
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private void deleteBefore(long sequence) throws IOException {
+		for (Path path : list(SEGMENT_SUFFIX).headMap(sequence).values()) {
+			Files.deleteIfExists(path);
+		}
+		for (Path path : list(SNAPSHOT_SUFFIX).headMap(sequence).values()) {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	/**
+	 * Load the jobs from the last snapshot and the segments after it, and continue the last segment.
+	 */
+	private void recover() throws IOException {
+		for (Path temp : list(SNAPSHOT_SUFFIX + TEMP_SUFFIX).values()) {
+			Files.deleteIfExists(temp);
+		}
+		JobStoreListener loader = new JobStoreListener() {
+			@Override
+			public void stored(Job job) {
+				jobs.restoreJob(job);
+			}
+
+			@Override
+			public void removed(String jobId) {
+				jobs.discardJob(jobId);
+			}
+		};
+		TreeMap<Long, Path> snapshots = list(SNAPSHOT_SUFFIX);
+		if (!snapshots.isEmpty()) {
+			snapshotSequence = snapshots.lastKey();
+			Path snapshot = snapshots.lastEntry().getValue();
+			ByteBuffer buffer = map(snapshot, Files.size(snapshot), false);
+			if (!JobRecords.read(buffer, loader) || buffer.hasRemaining()) {
+				throw new IOException(String.format("Job log snapshot %s is corrupted", snapshot));
+			}
+		}
+		deleteBefore(snapshotSequence);
+
+		TreeMap<Long, Path> segments = list(SEGMENT_SUFFIX);
+		segmentSequence = segments.isEmpty() ? snapshotSequence : segments.lastKey();
+		for (Path path : segments.values()) {
+			long size = Math.max(Files.size(path), path.equals(segments.lastEntry().getValue()) ? segmentSize : 0);
+			MappedByteBuffer buffer = map(path, size, true);
+			if (!JobRecords.read(buffer, loader)) {
+				logger.warning(String.format("Job log segment %s has a torn record at %d, the records after it are dropped",
+						path, buffer.position()));
+				int end = buffer.position();
+				while (buffer.hasRemaining()) {
+					buffer.put((byte) 0);
+				}
+				((Buffer) buffer).position(end);
+				buffer.force();
+			}
+			segment = buffer;
+		}
+		if (segment == null) {
+			segment = map(segmentPath(segmentSequence), segmentSize, true);
+			syncDirectory();
+		}
+	}
+
+	private TreeMap<Long, Path> list(String suffix) throws IOException {
+		TreeMap<Long, Path> files = new TreeMap<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				try {
+					files.put(Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - suffix.length())), path);
+				}
+				catch (NumberFormatException | IndexOutOfBoundsException ex) {
+					logger.warning(String.format("Ignored unknown file %s in the job log", path));
+				}
+			}
+		}
+		return files;
+	}
+
+	private static MappedByteBuffer map(Path path, long size, boolean writable) throws IOException {
+		if (writable) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+		}
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * Force the creation and the deletion of files in the directory to the disk, where the platform allows it.
+	 */
+	private void syncDirectory() {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		}
+		catch (IOException ex) {
+			logger.log(Level.FINE, "Failed to force the job log directory to the disk", ex);
+		}
+	}
+
+	private Path segmentPath(long sequence) {
+		return directory.resolve(fileName(sequence, SEGMENT_SUFFIX));
+	}
+
+	private static String fileName(long sequence, String suffix) {
+		return String.format("jobs-%016d%s", sequence, suffix);
+	}
+}
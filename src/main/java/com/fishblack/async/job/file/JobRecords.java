@@ -0,0 +1,232 @@
+package com.fishblack.async.job.file;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobPriority;
+import com.fishblack.async.job.mem.JobStoreListener;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The records of the job log and of its snapshots.
+ * A record is the payload length, the CRC32 of the type and the payload, the type, and the payload: a whole job
+ * for a stored job, the job id for a removed one. A zero length ends the records, as the unwritten part of a segment
+ * is zero filled, and a wrong CRC tells a record torn by a crash.
+ * The enums are written by name and the times as epoch milliseconds, {@link Long#MIN_VALUE} for none.
+ * The attempt and the retry time end a stored job, and are missing from the records written before them.
+ * The buffer positions and limits are set through {@link Buffer}: the {@link ByteBuffer} overrides of the setters
+ * added by Java 9 are missing on Java 8, where a call compiled against them by a later JDK fails.
+ */
+final class JobRecords {
+
+	static final int HEADER_SIZE = 9;
+
+	private static final byte STORED = 1;
+	private static final byte REMOVED = 2;
+	private static final long NO_TIME = Long.MIN_VALUE;
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+	private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+	private JobRecords() {}
+
+	/**
+	 * Encode the record of a stored job.
+	 * @param job the job
+	 * @return the record, in a buffer of the calling thread which is reused by the next record
+	 */
+	static ByteBuffer stored(Job job) {
+		ByteBuffer buffer = BUFFER.get();
+		while (true) {
+			try {
+				((Buffer) buffer).clear();
+				((Buffer) buffer).position(HEADER_SIZE);
+				putString(buffer, job.getJobId());
+				putString(buffer, job.getStripe());
+				putString(buffer, job.getObjectType());
+				putString(buffer, job.getObjectName());
+				putString(buffer, job.getNameSpace());
+				putString(buffer, job.getTwopartName());
+				putString(buffer, job.getJobDetail());
+				putString(buffer, job.getOwnerId());
+				putString(buffer, job.getJobType() == null ? null : job.getJobType().name());
+				putString(buffer, job.getStatus() == null ? null : job.getStatus().name());
+				putString(buffer, job.getPriority() == null ? null : job.getPriority().name());
+				putTime(buffer, job.getRequestTime());
+				putTime(buffer, job.getStartTime());
+				putTime(buffer, job.getEndTime());
+				putTime(buffer, job.getLastPingTime());
+				putTime(buffer, job.getLeaseExpiry());
+				buffer.putLong(job.getFencingToken());
+				buffer.putInt(job.getAttempt());
+				putTime(buffer, job.getRetryTime());
+				return seal(buffer, STORED);
+			}
+			catch (BufferOverflowException ex) {
+				buffer = grow(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Encode the record of a removed job.
+	 * @param jobId the job identifier
+	 * @return the record, in a buffer of the calling thread which is reused by the next record
+	 */
+	static ByteBuffer removed(String jobId) {
+		ByteBuffer buffer = BUFFER.get();
+		while (true) {
+			try {
+				((Buffer) buffer).clear();
+				((Buffer) buffer).position(HEADER_SIZE);
+				putString(buffer, jobId);
+				return seal(buffer, REMOVED);
+			}
+			catch (BufferOverflowException ex) {
+				buffer = grow(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Read the records from the position of a buffer up to the end of the records.
+	 * @param buffer the buffer, positioned after the last valid record on return
+	 * @param visitor the visitor of the records
+	 * @return true if the records ended with a zero length or the end of the buffer, false if with a torn record
+	 */
+	static boolean read(ByteBuffer buffer, JobStoreListener visitor) {
+		CRC32 crc = CRC.get();
+		while (buffer.remaining() >= HEADER_SIZE) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			if (length == 0) {
+				((Buffer) buffer).position(start);
+				return true;
+			}
+			if (length < 0 || length > buffer.remaining() - 5) {
+				((Buffer) buffer).position(start);
+				return false;
+			}
+			int checksum = buffer.getInt();
+			ByteBuffer record = buffer.slice();
+			((Buffer) record).limit(length + 1);
+			crc.reset();
+			for (int i = 0; i < length + 1; i++) {
+				crc.update(record.get(i));
+			}
+			if ((int) crc.getValue() != checksum) {
+				((Buffer) buffer).position(start);
+				return false;
+			}
+			try {
+				byte type = record.get();
+				if (type == STORED) {
+					visitor.stored(getJob(record));
+				}
+				else if (type == REMOVED) {
+					visitor.removed(getString(record));
+				}
+				else {
+					((Buffer) buffer).position(start);
+					return false;
+				}
+			}
+			catch (BufferUnderflowException | IllegalArgumentException ex) {
+				((Buffer) buffer).position(start);
+				return false;
+			}
+			((Buffer) buffer).position(start + HEADER_SIZE + length);
+		}
+		return true;
+	}
+
+	private static Job getJob(ByteBuffer record) {
+		String jobId = getString(record);
+		String stripe = getString(record);
+		String objectType = getString(record);
+		String objectName = getString(record);
+		String nameSpace = getString(record);
+		String twopartName = getString(record);
+		String jobDetail = getString(record);
+		String ownerId = getString(record);
+		String jobType = getString(record);
+		String status = getString(record);
+		String priority = getString(record);
+		Job job = new Job(jobId, stripe, twopartName, objectType, jobType == null ? null : Job.JobType.valueOf(jobType),
+				priority == null ? null : JobPriority.valueOf(priority));
+		job.setObjectName(objectName);
+		job.setNameSpace(nameSpace);
+		job.setJobDetail(jobDetail);
+		job.setOwnerId(ownerId);
+		job.setStatus(status == null ? null : Job.Status.valueOf(status));
+		job.setRequestTime(getTime(record));
+		job.setStartTime(getTime(record));
+		job.setEndTime(getTime(record));
+		job.setLastPingTime(getTime(record));
+		job.setLeaseExpiry(getTime(record));
+		job.setFencingToken(record.getLong());
+		if (record.hasRemaining()) {
+			job.setAttempt(record.getInt());
+			job.setRetryTime(getTime(record));
+		}
+		return job;
+	}
+
+	/**
+	 * Write the header of the record in the buffer.
+	 * @return the buffer flipped for reading the record
+	 */
+	private static ByteBuffer seal(ByteBuffer buffer, byte type) {
+		int length = buffer.position() - HEADER_SIZE;
+		buffer.put(8, type);
+		CRC32 crc = CRC.get();
+		crc.reset();
+		crc.update(buffer.array(), buffer.arrayOffset() + 8, length + 1);
+		buffer.putInt(0, length);
+		buffer.putInt(4, (int) crc.getValue());
+		((Buffer) buffer).flip();
+		return buffer;
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer) {
+		ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+		BUFFER.set(larger);
+		return larger;
+	}
+
+	private static void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void putTime(ByteBuffer buffer, Timestamp value) {
+		buffer.putLong(value == null ? NO_TIME : value.getTime());
+	}
+
+	private static Timestamp getTime(ByteBuffer record) {
+		long millis = record.getLong();
+		return millis == NO_TIME ? null : new Timestamp(millis);
+	}
+}
@@ -0,0 +1,44 @@
+package com.fishblack.async.job.jfr;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobResult;
+
+/**
+ * The flight recorder events, which need JDK 11 or later.
+ * This is the version for older JDKs, recording nothing; the multi-release jar carries the JDK 11 version, linked
+ * against jdk.jfr, under META-INF/versions/11.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static boolean isAvailable() {
+        return false;
+    }
+
+    static void submitted(Job job) {
+    }
+
+    static void enqueued(Job job) {
+    }
+
+    static void dequeued(Job job, long queueWait) {
+    }
+
+    static void rescheduled(Job job) {
+    }
+
+    static void running(Job job) {
+    }
+
+    static void terminated(Job job, Job.Status status) {
+    }
+
+    static Object beginCallback() {
+        return null;
+    }
+
+    static void endCallback(Object callbackEvent, Job job, JobResult result) {
+    }
+}
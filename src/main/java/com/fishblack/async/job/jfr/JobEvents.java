@@ -0,0 +1,72 @@
+package com.fishblack.async.job.jfr;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobResult;
+
+/**
+ * The JDK Flight Recorder events of the job lifecycle, named com.fishblack.async.job.*.
+ * The events are only loaded when the flight recorder is available in the JVM, otherwise the methods return at once.
+ * They are recorded on JDK 11 or later, from the multi-release jar.
+ * While no recording is on, an event is neither filled nor committed.
+ */
+public final class JobEvents {
+
+    private static final boolean AVAILABLE = FlightRecorderEvents.isAvailable();
+
+    private JobEvents() {
+    }
+
+    public static void submitted(Job job) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.submitted(job);
+        }
+    }
+
+    public static void enqueued(Job job) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.enqueued(job);
+        }
+    }
+
+    /**
+     * @param job the job
+     * @param queueWait nanoseconds the job waited in the executor queue
+     */
+    public static void dequeued(Job job, long queueWait) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.dequeued(job, queueWait);
+        }
+    }
+
+    public static void rescheduled(Job job) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.rescheduled(job);
+        }
+    }
+
+    public static void running(Job job) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.running(job);
+        }
+    }
+
+    public static void terminated(Job job, Job.Status status) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.terminated(job, status);
+        }
+    }
+
+    /**
+     * Begin the callback event of a job, to end by {@link #endCallback(Object, Job, JobResult)}.
+     * @return the event or null when not recorded
+     */
+    public static Object beginCallback() {
+        return AVAILABLE ? FlightRecorderEvents.beginCallback() : null;
+    }
+
+    public static void endCallback(Object event, Job job, JobResult result) {
+        if (event != null) {
+            FlightRecorderEvents.endCallback(event, job, result);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.fishblack.async.job.mem;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobKey;
+import com.fishblack.async.job.JobPriority;
+
+import java.sql.Timestamp;
+
+/**
+ * The stored form of a job in memory.
+ * The id is held in two longs, the times as epoch milliseconds, the enums as ordinals, and the stripe, object type,
+ * namespace and lease owner are pooled. A stored job is never changed, every update makes a new one sharing the same id.
+ * Sub-millisecond nanos of the times are not kept.
+ */
+final class CompactJob {
+
+    static final long NO_TIME = Long.MIN_VALUE;
+    private static final byte NO_ORDINAL = -1;
+    private static final Job.Status[] STATUSES = Job.Status.values();
+    private static final Job.JobType[] JOB_TYPES = Job.JobType.values();
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+
+    private final CompactJobId id;
+    private final String stripe;
+    private final String objectType;
+    private final String objectName;
+    private final String nameSpace;
+    private final String twopartName;
+    private final String jobDetail;
+    private final long requestTime;
+    private final long startTime;
+    private final long endTime;
+    private final long lastPingTime;
+    private final String ownerId;
+    private final long leaseExpiry;
+    private final long fencingToken;
+    private final long retryTime;
+    private final int attempt;
+    private final byte jobType;
+    private final byte status;
+    private final byte priority;
+
+    private CompactJob(Job job, CompactJobId id, JobStringPool strings) {
+        this.id = id;
+        this.stripe = strings.intern(job.getStripe());
+        this.objectType = strings.intern(job.getObjectType());
+        this.nameSpace = strings.intern(job.getNameSpace());
+        this.objectName = job.getObjectName();
+        this.twopartName = job.getTwopartName();
+        this.jobDetail = job.getJobDetail();
+        this.requestTime = toMillis(job.getRequestTime());
+        this.startTime = toMillis(job.getStartTime());
+        this.endTime = toMillis(job.getEndTime());
+        this.lastPingTime = toMillis(job.getLastPingTime());
+        this.ownerId = strings.intern(job.getOwnerId());
+        this.leaseExpiry = toMillis(job.getLeaseExpiry());
+        this.fencingToken = job.getFencingToken();
+        this.retryTime = toMillis(job.getRetryTime());
+        this.attempt = job.getAttempt();
+        this.jobType = toOrdinal(job.getJobType());
+        this.status = toOrdinal(job.getStatus());
+        this.priority = toOrdinal(job.getPriority());
+    }
+
+    private CompactJob(CompactJob source, byte status, long startTime, long endTime, long lastPingTime,
+                       String ownerId, long leaseExpiry, long fencingToken) {
+        this(source, status, startTime, endTime, lastPingTime, ownerId, leaseExpiry, fencingToken,
+                source.attempt, source.retryTime);
+    }
+
+    private CompactJob(CompactJob source, byte status, long startTime, long endTime, long lastPingTime,
+                       String ownerId, long leaseExpiry, long fencingToken, int attempt, long retryTime) {
+        this.id = source.id;
+        this.stripe = source.stripe;
+        this.objectType = source.objectType;
+        this.nameSpace = source.nameSpace;
+        this.objectName = source.objectName;
+        this.twopartName = source.twopartName;
+        this.jobDetail = source.jobDetail;
+        this.requestTime = source.requestTime;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.lastPingTime = lastPingTime;
+        this.ownerId = ownerId;
+        this.leaseExpiry = leaseExpiry;
+        this.fencingToken = fencingToken;
+        this.retryTime = retryTime;
+        this.attempt = attempt;
+        this.jobType = source.jobType;
+        this.status = status;
+        this.priority = source.priority;
+    }
+
+    /**
+     * Make the stored form of a job.
+     * @param job the job, with an id
+     * @param strings the pool of the repeated strings
+     * @return the stored job
+     */
+    static CompactJob of(Job job, JobStringPool strings) {
+        return new CompactJob(job, CompactJobId.of(job.getJobId()), strings);
+    }
+
+    /**
+     * Make a new job object from the stored form.
+     * @return the job
+     */
+    Job toJob() {
+        Job job = new Job(id.toString(), stripe, twopartName, objectType, getJobType(),
+                priority == NO_ORDINAL ? null : PRIORITIES[priority]);
+        job.setObjectName(objectName);
+        job.setNameSpace(nameSpace);
+        job.setJobDetail(jobDetail);
+        job.setStatus(getStatus());
+        job.setRequestTime(toTimestamp(requestTime));
+        job.setStartTime(toTimestamp(startTime));
+        job.setEndTime(toTimestamp(endTime));
+        job.setLastPingTime(toTimestamp(lastPingTime));
+        job.setOwnerId(ownerId);
+        job.setLeaseExpiry(toTimestamp(leaseExpiry));
+        job.setFencingToken(fencingToken);
+        job.setAttempt(attempt);
+        job.setRetryTime(toTimestamp(retryTime));
+        return job;
+    }
+
+    /**
+     * @param status the new status
+     * @param now the time of the update, the start time of a running job or the end time of a finished one
+     * @return the stored job with the new status, the lease released if finished
+     */
+    CompactJob withStatus(Job.Status status, long now) {
+        if (isFinished(status)) {
+            return new CompactJob(this, toOrdinal(status), startTime, now, lastPingTime, ownerId, NO_TIME, fencingToken);
+        }
+        return new CompactJob(this, toOrdinal(status), startTime, endTime, lastPingTime, ownerId, leaseExpiry, fencingToken);
+    }
+
+    /**
+     * @param ownerId the node taking the lease
+     * @param leaseExpiry the epoch milliseconds of the lease expiry
+     * @param now the start time
+     * @return the stored job running under the lease, with the next fencing token
+     */
+    CompactJob withRunning(String ownerId, long leaseExpiry, long now) {
+        return new CompactJob(this, toOrdinal(Job.Status.RUNNING), now, endTime, now, ownerId, leaseExpiry,
+                fencingToken + 1);
+    }
+
+    /**
+     * @param status the new status, NOT_STARTED or a finished one
+     * @param now the time of the update
+     * @return the stored job taken away from its owner, with the lease released and the next fencing token
+     */
+    CompactJob withReclaimed(Job.Status status, long now) {
+        return new CompactJob(this, toOrdinal(status), startTime, isFinished(status) ? now : endTime, lastPingTime,
+                ownerId, NO_TIME, fencingToken + 1);
+    }
+
+    /**
+     * @param attempt the number of the next attempt
+     * @param retryTime the epoch milliseconds the next attempt waits for
+     * @return the stored job put back to NOT_STARTED, with the lease released and the next fencing token
+     */
+    CompactJob withRetry(int attempt, long retryTime) {
+        return new CompactJob(this, toOrdinal(Job.Status.NOT_STARTED), startTime, endTime, lastPingTime, ownerId, NO_TIME,
+                fencingToken + 1, attempt, retryTime);
+    }
+
+    CompactJob withLastPingTime(long now) {
+        return new CompactJob(this, status, startTime, endTime, now, ownerId, leaseExpiry, fencingToken);
+    }
+
+    CompactJob withLeaseExpiry(long leaseExpiry, long now) {
+        return new CompactJob(this, status, startTime, endTime, now, ownerId, leaseExpiry, fencingToken);
+    }
+
+    CompactJobId getId() {
+        return id;
+    }
+
+    JobKey getKey() {
+        return new JobKey(stripe, twopartName, objectType, getJobType());
+    }
+
+    String getStripe() {
+        return stripe;
+    }
+
+    String getOwnerId() {
+        return ownerId;
+    }
+
+    /**
+     * @return the epoch milliseconds of the lease expiry, {@link Long#MIN_VALUE} if the job holds no lease
+     */
+    long getLeaseExpiry() {
+        return leaseExpiry;
+    }
+
+    long getFencingToken() {
+        return fencingToken;
+    }
+
+    /**
+     * @return the epoch milliseconds a retried job waits for, {@link Long#MIN_VALUE} if the job was not retried
+     */
+    long getRetryTime() {
+        return retryTime;
+    }
+
+    Job.Status getStatus() {
+        return status == NO_ORDINAL ? null : STATUSES[status];
+    }
+
+    JobPriority getPriority() {
+        return priority == NO_ORDINAL ? null : PRIORITIES[priority];
+    }
+
+    long getRequestTime() {
+        return requestTime;
+    }
+
+    Job.JobType getJobType() {
+        return jobType == NO_ORDINAL ? null : JOB_TYPES[jobType];
+    }
+
+    /**
+     * @return the epoch milliseconds of the last ping of a running job, or of its start if it was not pinged yet,
+     * {@link Long#MIN_VALUE} if none
+     */
+    long getLastSeenTime() {
+        return lastPingTime != NO_TIME ? lastPingTime : startTime;
+    }
+
+    /**
+     * @return the epoch milliseconds of the end of the job, {@link Long#MIN_VALUE} if not finished
+     */
+    long getEndTime() {
+        return endTime;
+    }
+
+    static boolean isFinished(Job.Status status) {
+        return status == Job.Status.SUCCEEDED ||
+                status == Job.Status.CANCELLED ||
+                status == Job.Status.FAILED ||
+                status == Job.Status.ERROR;
+    }
+
+    static long toMillis(Timestamp timestamp) {
+        return timestamp == null ? NO_TIME : timestamp.getTime();
+    }
+
+    private static Timestamp toTimestamp(long millis) {
+        return millis == NO_TIME ? null : new Timestamp(millis);
+    }
+
+    private static byte toOrdinal(Enum<?> value) {
+        return value == null ? NO_ORDINAL : (byte) value.ordinal();
+    }
+}
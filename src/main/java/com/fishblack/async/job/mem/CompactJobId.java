@@ -0,0 +1,64 @@
+package com.fishblack.async.job.mem;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The stored id of a job. A job id in the canonical UUID form is held as its 128 bits in two longs,
+ * any other id is kept as it is.
+ */
+final class CompactJobId {
+
+    private final long mostSigBits;
+    private final long leastSigBits;
+    //only set for an id which is not a canonical UUID
+    private final String text;
+
+    private CompactJobId(long mostSigBits, long leastSigBits, String text) {
+        this.mostSigBits = mostSigBits;
+        this.leastSigBits = leastSigBits;
+        this.text = text;
+    }
+
+    static CompactJobId of(String jobId) {
+        if (jobId.length() == 36) {
+            try {
+                UUID uuid = UUID.fromString(jobId);
+                //fromString accepts other forms, e.g. upper case, which would not be given back as they were
+                if (uuid.toString().equals(jobId)) {
+                    return new CompactJobId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), null);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                //not a UUID
+            }
+        }
+        return new CompactJobId(0, 0, jobId);
+    }
+
+    @Override
+    public int hashCode() {
+        if (text != null) {
+            return text.hashCode();
+        }
+        long hilo = mostSigBits ^ leastSigBits;
+        return ((int) (hilo >> 32)) ^ (int) hilo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CompactJobId)) {
+            return false;
+        }
+        CompactJobId other = (CompactJobId) o;
+        return mostSigBits == other.mostSigBits && leastSigBits == other.leastSigBits && Objects.equals(text, other.text);
+    }
+
+    @Override
+    public String toString() {
+        return text != null ? text : new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.fishblack.async.job.mem;
+
+import com.fishblack.async.job.Job;
+
+/**
+ * A listener of the changes of the jobs stored by {@link MemJobDataProvider}, e.g. to persist them.
+ * The listener is called while the changed job is locked, so the changes of a job are seen in the order they were made,
+ * and must be quick. A runtime exception of the listener undoes the change and is thrown to the caller of the provider.
+ */
+public interface JobStoreListener {
+
+    /**
+     * A job was created or changed.
+     * @param job a copy of the stored job
+     */
+    void stored(Job job);
+
+    /**
+     * A job was deleted.
+     * @param jobId the job identifier
+     */
+    void removed(String jobId);
+}
@@ -0,0 +1,25 @@
+package com.fishblack.async.job.mem;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The pool of the repeated strings of the stored jobs, e.g. the stripes, so that each distinct value is held once.
+ * The values are never evicted, so only the fields of few distinct values should be pooled.
+ */
+final class JobStringPool {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = values.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -2,57 +2,530 @@ package com.fishblack.async.job.mem;
 
 import com.fishblack.async.job.Job;
 import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.JobKey;
+import com.fishblack.async.job.JobPriority;
+import com.fishblack.async.job.exception.JobException;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
 
 /**
  * This class is the implementation of @JobDataProvider interface for memory
  * which means the jobs will be stored in memory.
+ *
+ * Jobs are kept in a primary index by jobId, plus two composite indexes by {@link JobKey}
+ * pointing at the latest job and the running job of an object, so that the lookups done
+ * by every job submission are constant time instead of scans.
+ * Stored jobs are never mutated in place: every change replaces the stored snapshot, and readers
+ * get their own copy.
+ * The jobs are stored in the compact form of {@link CompactJob}, so that millions of retained jobs
+ * take a fraction of the heap of as many {@link Job} objects.
+ * The leases of the running jobs are found through the running index, and the claimable jobs through the index
+ * of the latest jobs.
+ * A {@link JobStoreListener} may be given to see every change of the stored jobs, e.g. to persist them.
  */
 public class MemJobDataProvider implements JobDataProvider {
+	private static final Logger logger = Logger.getLogger(MemJobDataProvider.class.getName());
+	private static final Comparator<CompactJob> CLAIM_ORDER = Comparator
+			.comparingInt((CompactJob stored) -> (stored.getPriority() == null ? JobPriority.MEDIUM : stored.getPriority()).value())
+			.thenComparingLong(CompactJob::getRequestTime);
+
+	private final Map<CompactJobId, CompactJob> jobs = new ConcurrentHashMap<>();
+	private final Map<JobKey, CompactJobId> latestJobIds = new ConcurrentHashMap<>();
+	private final Map<JobKey, CompactJobId> runningJobIds = new ConcurrentHashMap<>();
+	private final JobStringPool strings = new JobStringPool();
+	private final JobStoreListener listener;
+
+	public MemJobDataProvider() {
+		this(null);
+	}
+
+	/**
+	 * Constructor of this class
+	 * @param listener the listener of the changes of the stored jobs, null for none
+	 */
+	public MemJobDataProvider(JobStoreListener listener) {
+		this.listener = listener;
+	}
 
 	@Override
-	public Job createJob(Job job) {
-		return null;
+	public Job createJob(Job job) throws JobException {
+		if (job == null || job.getJobId() == null) {
+			throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "Job creation failed due to empty job entity");
+		}
+		job.setStatus(Job.Status.NOT_STARTED);
+		if (job.getRequestTime() == null) {
+			job.setRequestTime(getCurrentTimestamp());
+		}
+		CompactJob stored = CompactJob.of(job, strings);
+		if (!insert(stored)) {
+			throw new JobException(JobException.DSSJobErrorCode.CREATION_FAILED,
+					String.format("Job with id %s already exists", job.getJobId()));
+		}
+		putLatest(stored);
+		return job;
+	}
+
+	/**
+	 * Create the jobs in a single pass, a job with an existing id is not created.
+	 */
+	@Override
+	public List<Job> createJobs(List<Job> jobList) throws JobException {
+		List<Job> created = new ArrayList<>(jobList.size());
+		Timestamp now = getCurrentTimestamp();
+		for (Job job : jobList) {
+			if (job == null || job.getJobId() == null) {
+				created.add(null);
+				continue;
+			}
+			job.setStatus(Job.Status.NOT_STARTED);
+			if (job.getRequestTime() == null) {
+				job.setRequestTime(now);
+			}
+			CompactJob stored = CompactJob.of(job, strings);
+			if (!insert(stored)) {
+				logger.warning(String.format("Job with id %s already exists", job.getJobId()));
+				created.add(null);
+				continue;
+			}
+			putLatest(stored);
+			created.add(job);
+		}
+		return created;
 	}
 
 	@Override
 	public Job getJob(String jobId) {
-		return null;
+		if (jobId == null) {
+			return null;
+		}
+		CompactJob stored = jobs.get(CompactJobId.of(jobId));
+		return stored == null ? null : stored.toJob();
+	}
+
+	@Override
+	public Map<String, Job.Status> getJobStatuses(Collection<String> jobIds) {
+		Map<String, Job.Status> statuses = new HashMap<>();
+		for (String jobId : jobIds) {
+			CompactJob stored = jobId == null ? null : jobs.get(CompactJobId.of(jobId));
+			if (stored != null) {
+				statuses.put(jobId, stored.getStatus());
+			}
+		}
+		return statuses;
 	}
 
 	@Override
 	public Job getRunningJob(String stripe, String twopartName, String objType, Job.JobType jobType) {
-		return null;
+		JobKey key = new JobKey(stripe, twopartName, objType, jobType);
+		CompactJobId jobId = runningJobIds.get(key);
+		if (jobId == null) {
+			return null;
+		}
+		CompactJob stored = jobs.get(jobId);
+		//the index is updated before the new snapshot is visible, so the job may still be seen as it was before it
+		//started; the index is only changed along with the job, see update
+		return stored == null || !isRunningStatus(stored.getStatus()) ? null : stored.toJob();
 	}
 
 	@Override
 	public Job getLatestJob(String stripe, String twopartName, String objType, Job.JobType jobType) {
-		return null;
+		CompactJobId jobId = latestJobIds.get(new JobKey(stripe, twopartName, objType, jobType));
+		CompactJob stored = jobId == null ? null : jobs.get(jobId);
+		return stored == null ? null : stored.toJob();
 	}
 
 	@Override
 	public int updateJobStatus(Job job, Job.Status status) {
-		return 0;
+		if (job.getJobId() == null) {
+			return 0;
+		}
+		long fencingToken = job.getFencingToken();
+		long now = System.currentTimeMillis();
+		CompactJob updated = update(CompactJobId.of(job.getJobId()), stored -> {
+			if (stored.getFencingToken() != fencingToken) {
+				return null;
+			}
+			if (status == Job.Status.RUNNING) {
+				//a job cancelled before it started is not run
+				return stored.getStatus() == Job.Status.NOT_STARTED
+						? stored.withRunning(strings.intern(job.getOwnerId()), CompactJob.toMillis(job.getLeaseExpiry()), now) : null;
+			}
+			return stored.withStatus(status, now);
+		});
+		if (updated == null) {
+			return 0;
+		}
+		job.setFencingToken(updated.getFencingToken());
+		return 1;
+	}
+
+	@Override
+	public int renewLeases(String ownerId, Collection<String> jobIds, Timestamp leaseExpiry) {
+		long expiry = leaseExpiry.getTime();
+		long now = System.currentTimeMillis();
+		int renewed = 0;
+		for (String jobId : jobIds) {
+			CompactJob updated = update(CompactJobId.of(jobId), stored -> ownerId.equals(stored.getOwnerId()) && isRunningStatus(stored.getStatus())
+					? stored.withLeaseExpiry(expiry, now) : null);
+			if (updated != null) {
+				renewed++;
+			}
+		}
+		return renewed;
+	}
+
+	@Override
+	public List<Job> getExpiredLeaseJobs(Timestamp now, int maxCount) {
+		List<CompactJob> expired = new ArrayList<>();
+		for (CompactJobId jobId : runningJobIds.values()) {
+			CompactJob stored = jobs.get(jobId);
+			if (stored != null && isLeaseExpired(stored, now.getTime())) {
+				expired.add(stored);
+			}
+		}
+		expired.sort(Comparator.comparingLong(CompactJob::getLeaseExpiry));
+		List<Job> expiredJobs = new ArrayList<>(Math.min(expired.size(), maxCount));
+		for (int i = 0; i < expired.size() && i < maxCount; i++) {
+			expiredJobs.add(expired.get(i).toJob());
+		}
+		return expiredJobs;
+	}
+
+	@Override
+	public int reclaimJob(Job job, Job.Status status, Timestamp now) {
+		long fencingToken = job.getFencingToken();
+		CompactJob updated = update(CompactJobId.of(job.getJobId()), stored ->
+				stored.getFencingToken() == fencingToken && isLeaseExpired(stored, now.getTime())
+						? stored.withReclaimed(status, now.getTime()) : null);
+		if (updated == null) {
+			return 0;
+		}
+		job.setFencingToken(updated.getFencingToken());
+		return 1;
+	}
+
+	/**
+	 * Claim the jobs with one scan of the latest jobs of the objects, which is linear in the count of objects.
+	 */
+	@Override
+	public List<Job> claimJobs(String ownerId, Timestamp leaseExpiry, Collection<Job.JobType> jobTypes, int maxCount) {
+		long now = System.currentTimeMillis();
+		List<CompactJob> candidates = new ArrayList<>();
+		for (Map.Entry<JobKey, CompactJobId> entry : latestJobIds.entrySet()) {
+			if (!jobTypes.contains(entry.getKey().getJobType()) || hasRunningJob(entry.getKey())) {
+				continue;
+			}
+			CompactJob stored = jobs.get(entry.getValue());
+			if (stored != null && stored.getStatus() == Job.Status.NOT_STARTED && stored.getRetryTime() <= now) {
+				candidates.add(stored);
+			}
+		}
+		candidates.sort(CLAIM_ORDER);
+		String owner = strings.intern(ownerId);
+		long expiry = leaseExpiry.getTime();
+		List<Job> claimed = new ArrayList<>(Math.min(candidates.size(), maxCount));
+		for (int i = 0; i < candidates.size() && claimed.size() < maxCount; i++) {
+			CompactJob updated = claim(candidates.get(i), owner, expiry, now);
+			if (updated != null) {
+				claimed.add(updated.toJob());
+			}
+		}
+		return claimed;
+	}
+
+	@Override
+	public int retryJob(Job job) {
+		long fencingToken = job.getFencingToken();
+		long retryTime = CompactJob.toMillis(job.getRetryTime());
+		CompactJob updated = update(CompactJobId.of(job.getJobId()), stored ->
+				stored.getFencingToken() == fencingToken
+						&& (stored.getStatus() == Job.Status.RUNNING || stored.getStatus() == Job.Status.NOT_STARTED)
+						? stored.withRetry(job.getAttempt(), retryTime) : null);
+		if (updated == null) {
+			return 0;
+		}
+		job.setFencingToken(updated.getFencingToken());
+		return 1;
+	}
+
+	/**
+	 * The finished jobs are found by a walk of all the jobs, which stops once the batch is full.
+	 */
+	@Override
+	public boolean supportsSweeping() {
+		return true;
+	}
+
+	@Override
+	public List<Job> getFinishedJobs(Timestamp endedBefore, int maxCount) {
+		long threshold = endedBefore.getTime();
+		List<Job> finished = new ArrayList<>();
+		for (CompactJob stored : jobs.values()) {
+			if (finished.size() >= maxCount) {
+				break;
+			}
+			if (CompactJob.isFinished(stored.getStatus())
+					&& stored.getEndTime() != CompactJob.NO_TIME && stored.getEndTime() < threshold) {
+				finished.add(stored.toJob());
+			}
+		}
+		return finished;
+	}
+
+	@Override
+	public List<Job> deleteFinishedJobs(List<Job> jobList) {
+		List<Job> deleted = new ArrayList<>();
+		for (Job job : jobList) {
+			CompactJob stored = jobs.get(CompactJobId.of(job.getJobId()));
+			if (stored != null && CompactJob.isFinished(stored.getStatus())
+					&& stored.getFencingToken() == job.getFencingToken() && remove(stored)) {
+				latestJobIds.remove(stored.getKey(), stored.getId());
+				deleted.add(job);
+			}
+		}
+		return deleted;
+	}
+
+	@Override
+	public List<Job> deleteFinishedJobs(Timestamp endedBefore, int maxCount) {
+		return deleteFinishedJobs(getFinishedJobs(endedBefore, maxCount));
+	}
+
+	@Override
+	public List<Job> cureStuckJobs(Timestamp lastSeenBefore, int maxCount) {
+		long threshold = lastSeenBefore.getTime();
+		long now = System.currentTimeMillis();
+		List<Job> cured = new ArrayList<>();
+		for (CompactJobId jobId : runningJobIds.values()) {
+			if (cured.size() >= maxCount) {
+				break;
+			}
+			CompactJob updated = update(jobId, stored -> isRunningStatus(stored.getStatus()) && isOutOfTrack(stored, threshold)
+					? stored.withReclaimed(Job.Status.CANCELLED, now) : null);
+			if (updated != null) {
+				logger.warning(String.format("Job with id %s is out of track, force cancelling it", jobId));
+				cured.add(updated.toJob());
+			}
+		}
+		return cured;
 	}
 
 	@Override
 	public int handleLegacyJobs(long jobMaxRunningTime) {
-		return 0;
+		Timestamp threshold = new Timestamp(System.currentTimeMillis() - jobMaxRunningTime * 60 * 1000);
+		cureStuckJobs(threshold, Integer.MAX_VALUE);
+		return deleteFinishedJobs(threshold, Integer.MAX_VALUE).size();
 	}
 
 	@Override
 	public Timestamp getCurrentTimestamp() {
-		return null;
+		return new Timestamp(System.currentTimeMillis());
 	}
 
 	@Override
 	public List<String> cancelJobs(String stripeName) {
-		return null;
+		List<String> cancelledIds = new ArrayList<>();
+		for (Map.Entry<JobKey, CompactJobId> entry : runningJobIds.entrySet()) {
+			if (stripeName != null && stripeName.equals(entry.getKey().getStripe())
+					&& forceCancel(entry.getValue()) != null) {
+				cancelledIds.add(entry.getValue().toString());
+			}
+		}
+		return cancelledIds;
 	}
 
 	@Override
-	public void keepOnTrackJobs(List<String> jobIds) {}
+	public void keepOnTrackJobs(List<String> jobIds) {
+		if (jobIds == null || jobIds.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (String jobId : jobIds) {
+			if (jobId != null) {
+				update(CompactJobId.of(jobId), stored -> stored.withLastPingTime(now));
+			}
+		}
+	}
+
+	/**
+	 * Put a job as it is, e.g. when loading the jobs from a persistent copy. The listener is not called.
+	 * The latest job of an object is the one requested last, whatever the order the jobs are restored in.
+	 * @param job the job
+	 */
+	public void restoreJob(Job job) {
+		CompactJob stored = CompactJob.of(job, strings);
+		CompactJobId jobId = stored.getId();
+		jobs.put(jobId, stored);
+		JobKey key = stored.getKey();
+		putLatest(stored);
+		if (isRunningStatus(stored.getStatus())) {
+			runningJobIds.put(key, jobId);
+		}
+		else {
+			runningJobIds.remove(key, jobId);
+		}
+	}
+
+	/**
+	 * Drop a job, e.g. when loading the jobs from a persistent copy. The listener is not called.
+	 * @param jobId the job identifier
+	 */
+	public void discardJob(String jobId) {
+		CompactJob stored = jobs.remove(CompactJobId.of(jobId));
+		if (stored != null) {
+			latestJobIds.remove(stored.getKey(), stored.getId());
+			runningJobIds.remove(stored.getKey(), stored.getId());
+		}
+	}
+
+	/**
+	 * Visit a copy of every stored job. The jobs changed meanwhile may be seen as they were before or after the change.
+	 * @param action the action on a job
+	 */
+	public void forEachJob(Consumer<Job> action) {
+		for (CompactJob stored : jobs.values()) {
+			action.accept(stored.toJob());
+		}
+	}
+
+	/**
+	 * Make a stored job the latest job of its object unless a job requested after it is already, in one atomic step,
+	 * so that the concurrent creations of jobs of the same object agree on the latest one.
+	 */
+	private void putLatest(CompactJob stored) {
+		latestJobIds.merge(stored.getKey(), stored.getId(), (latestId, id) -> {
+			CompactJob latest = jobs.get(latestId);
+			return latest == null || isRequestedAfter(stored, latest) ? id : latestId;
+		});
+	}
+
+	/**
+	 * Store a new job, unless a job with the same id exists.
+	 * @return false if the job exists already
+	 */
+	private boolean insert(CompactJob stored) {
+		boolean[] inserted = new boolean[1];
+		jobs.computeIfAbsent(stored.getId(), id -> {
+			if (listener != null) {
+				listener.stored(stored.toJob());
+			}
+			inserted[0] = true;
+			return stored;
+		});
+		return inserted[0];
+	}
+
+	/**
+	 * Delete a job, unless it was changed since it was read.
+	 * @return true if the job was deleted
+	 */
+	private boolean remove(CompactJob stored) {
+		boolean[] removed = new boolean[1];
+		jobs.computeIfPresent(stored.getId(), (id, current) -> {
+			if (current != stored) {
+				return current;
+			}
+			if (listener != null) {
+				listener.removed(id.toString());
+			}
+			removed[0] = true;
+			return null;
+		});
+		return removed[0];
+	}
+
+	/**
+	 * Cancel a running job regardless of its lease, which is released with a new fencing token.
+	 * @param jobId the job identifier
+	 * @return the new snapshot, or null if the job does not exist or is not running
+	 */
+	private CompactJob forceCancel(CompactJobId jobId) {
+		long now = System.currentTimeMillis();
+		return update(jobId, stored -> isRunningStatus(stored.getStatus()) ? stored.withReclaimed(Job.Status.CANCELLED, now) : null);
+	}
+
+	/**
+	 * Replace the stored snapshot of a job with a changed one, and keep the running index in step.
+	 * @param jobId the job identifier
+	 * @param change the change of the stored snapshot, returning null to leave it as it is
+	 * @return the new snapshot, or null if the job does not exist or was not changed
+	 */
+	private CompactJob update(CompactJobId jobId, UnaryOperator<CompactJob> change) {
+		CompactJob[] changed = new CompactJob[1];
+		jobs.computeIfPresent(jobId, (id, stored) -> {
+			CompactJob updated = change.apply(stored);
+			if (updated == null) {
+				return stored;
+			}
+			if (listener != null) {
+				listener.stored(updated.toJob());
+			}
+			JobKey key = updated.getKey();
+			if (isRunningStatus(updated.getStatus())) {
+				runningJobIds.put(key, id);
+			}
+			else {
+				runningJobIds.remove(key, id);
+			}
+			changed[0] = updated;
+			return updated;
+		});
+		return changed[0];
+	}
+
+	/**
+	 * Start a claimed job if it was not changed since it was read, is still the latest job of its object and no job
+	 * of the object is running, in one atomic step under the lock of the object in the latest jobs, so that
+	 * a job of the object created or claimed meanwhile is seen.
+	 * @return the started job, or null if it could not be claimed
+	 */
+	private CompactJob claim(CompactJob candidate, String ownerId, long leaseExpiry, long now) {
+		CompactJob[] claimed = new CompactJob[1];
+		latestJobIds.computeIfPresent(candidate.getKey(), (key, latestId) -> {
+			if (latestId.equals(candidate.getId())) {
+				claimed[0] = update(latestId, stored -> stored.getStatus() == Job.Status.NOT_STARTED
+						&& stored.getFencingToken() == candidate.getFencingToken() && !hasRunningJob(key)
+						? stored.withRunning(ownerId, leaseExpiry, now) : null);
+			}
+			return latestId;
+		});
+		return claimed[0];
+	}
+
+	private boolean hasRunningJob(JobKey key) {
+		CompactJobId jobId = runningJobIds.get(key);
+		CompactJob stored = jobId == null ? null : jobs.get(jobId);
+		return stored != null && isRunningStatus(stored.getStatus());
+	}
+
+	private static boolean isRequestedAfter(CompactJob stored, CompactJob other) {
+		if (stored.getRequestTime() != other.getRequestTime()) {
+			return stored.getRequestTime() > other.getRequestTime();
+		}
+		return stored.getId().toString().compareTo(other.getId().toString()) > 0;
+	}
+
+	private static boolean isOutOfTrack(CompactJob stored, long threshold) {
+		long lastSeen = stored.getLastSeenTime();
+		return lastSeen != CompactJob.NO_TIME && lastSeen < threshold;
+	}
+
+	private static boolean isLeaseExpired(CompactJob stored, long now) {
+		return isRunningStatus(stored.getStatus()) && stored.getLeaseExpiry() != CompactJob.NO_TIME && stored.getLeaseExpiry() < now;
+	}
+
+	private static boolean isRunningStatus(Job.Status status) {
+		return status == Job.Status.RUNNING || status == Job.Status.REQUEST_FOR_CANCEL;
+	}
 
 }
@@ -0,0 +1,218 @@
+package com.fishblack.async.job.metrics;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobPriority;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The in-memory metrics of the job manager, kept per job type and priority
+ * in striped counters and fixed bucket histograms, so recording never takes a lock.
+ */
+public class DefaultJobMetrics implements JobMetrics {
+
+    public enum Counter {
+        SUBMITTED,
+        REJECTED,
+        RESCHEDULED,
+        RETRIED
+    }
+
+    public enum Timer {
+        QUEUE_WAIT,
+        RESCHEDULE_DELAY,
+        EXECUTION,
+        CALLBACK
+    }
+
+    private static final int TYPE_COUNT = Job.JobType.values().length;
+    private static final int PRIORITY_COUNT = JobPriority.values().length;
+
+    private final Series[] series = new Series[TYPE_COUNT * PRIORITY_COUNT];
+    private final LongAdder swept = new LongAdder();
+    private final LongAdder cured = new LongAdder();
+
+    public DefaultJobMetrics() {
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new Series();
+        }
+    }
+
+    @Override
+    public void recordSubmitted(Job job) {
+        seriesOf(job).counters[Counter.SUBMITTED.ordinal()].increment();
+    }
+
+    @Override
+    public void recordRejected(Job job) {
+        seriesOf(job).counters[Counter.REJECTED.ordinal()].increment();
+    }
+
+    @Override
+    public void recordRescheduled(Job job) {
+        seriesOf(job).counters[Counter.RESCHEDULED.ordinal()].increment();
+    }
+
+    @Override
+    public void recordRetried(Job job) {
+        seriesOf(job).counters[Counter.RETRIED.ordinal()].increment();
+    }
+
+    @Override
+    public void recordQueueWait(Job job, long nanos) {
+        seriesOf(job).timers[Timer.QUEUE_WAIT.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordRescheduleDelay(Job job, long nanos) {
+        seriesOf(job).timers[Timer.RESCHEDULE_DELAY.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordExecution(Job job, long nanos) {
+        seriesOf(job).timers[Timer.EXECUTION.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordCallback(Job job, long nanos) {
+        seriesOf(job).timers[Timer.CALLBACK.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void recordTerminated(Job job, Job.Status status) {
+        seriesOf(job).terminated[status.ordinal()].increment();
+    }
+
+    @Override
+    public void recordSwept(int deleted, int cured) {
+        this.swept.add(deleted);
+        this.cured.add(cured);
+    }
+
+    /**
+     * @return the count of the finished jobs swept from the job data provider
+     */
+    public long getSweptCount() {
+        return swept.sum();
+    }
+
+    /**
+     * @return the count of the running jobs cancelled as out of track by the sweeps
+     */
+    public long getCuredCount() {
+        return cured.sum();
+    }
+
+    /**
+     * @param counter the counter
+     * @param jobType the job type
+     * @param priority the job priority
+     * @return the count of the jobs of the type and priority
+     */
+    public long getCount(Counter counter, Job.JobType jobType, JobPriority priority) {
+        return seriesOf(jobType, priority).counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * @param counter the counter
+     * @return the count of all the jobs
+     */
+    public long getCount(Counter counter) {
+        long count = 0;
+        for (Series s : series) {
+            count += s.counters[counter.ordinal()].sum();
+        }
+        return count;
+    }
+
+    /**
+     * @param status the terminal status
+     * @param jobType the job type
+     * @param priority the job priority
+     * @return the count of the jobs of the type and priority terminated with the status
+     */
+    public long getTerminatedCount(Job.Status status, Job.JobType jobType, JobPriority priority) {
+        return seriesOf(jobType, priority).terminated[status.ordinal()].sum();
+    }
+
+    /**
+     * @param status the terminal status
+     * @return the count of all the jobs terminated with the status
+     */
+    public long getTerminatedCount(Job.Status status) {
+        long count = 0;
+        for (Series s : series) {
+            count += s.terminated[status.ordinal()].sum();
+        }
+        return count;
+    }
+
+    /**
+     * @param timer the timer
+     * @param jobType the job type
+     * @param priority the job priority
+     * @return the durations of the jobs of the type and priority
+     */
+    public JobLatencyHistogram.Snapshot getHistogram(Timer timer, Job.JobType jobType, JobPriority priority) {
+        return seriesOf(jobType, priority).timers[timer.ordinal()].snapshot();
+    }
+
+    /**
+     * @param timer the timer
+     * @param jobType the job type
+     * @return the durations of the jobs of the type at any priority
+     */
+    public JobLatencyHistogram.Snapshot getHistogram(Timer timer, Job.JobType jobType) {
+        JobLatencyHistogram.Snapshot snapshot = null;
+        for (JobPriority priority : JobPriority.values()) {
+            JobLatencyHistogram.Snapshot s = getHistogram(timer, jobType, priority);
+            snapshot = snapshot == null ? s : snapshot.merge(s);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param timer the timer
+     * @return the durations of all the jobs
+     */
+    public JobLatencyHistogram.Snapshot getHistogram(Timer timer) {
+        JobLatencyHistogram.Snapshot snapshot = null;
+        for (Series s : series) {
+            JobLatencyHistogram.Snapshot one = s.timers[timer.ordinal()].snapshot();
+            snapshot = snapshot == null ? one : snapshot.merge(one);
+        }
+        return snapshot;
+    }
+
+    private Series seriesOf(Job job) {
+        return seriesOf(job.getJobType(), job.getPriority());
+    }
+
+    private Series seriesOf(Job.JobType jobType, JobPriority priority) {
+        int p = (priority == null ? JobPriority.MEDIUM : priority).ordinal();
+        return series[jobType.ordinal() * PRIORITY_COUNT + p];
+    }
+
+    /**
+     * The figures of one job type and priority.
+     */
+    private static final class Series {
+        private final LongAdder[] counters = newAdders(Counter.values().length);
+        private final LongAdder[] terminated = newAdders(Job.Status.values().length);
+        private final JobLatencyHistogram[] timers = new JobLatencyHistogram[Timer.values().length];
+
+        private Series() {
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = new JobLatencyHistogram();
+            }
+        }
+
+        private static LongAdder[] newAdders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+}
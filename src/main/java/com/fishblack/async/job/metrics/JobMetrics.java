@@ -0,0 +1,84 @@
+package com.fishblack.async.job.metrics;
+
+import com.fishblack.async.job.Job;
+
+/**
+ * The instrumentation of the job manager. It is called on the hot paths of every job,
+ * so implementations must be lock free and must not throw.
+ *
+ * {@link DefaultJobMetrics} keeps the figures in memory and is exposed through JMX.
+ * Implement this interface to record into another registry, e.g. the one of the hosting application.
+ */
+public interface JobMetrics {
+
+    /**
+     * The metrics recording nothing.
+     */
+    JobMetrics NONE = new JobMetrics() {};
+
+    /**
+     * A job was persisted and queued.
+     * @param job the job
+     */
+    default void recordSubmitted(Job job) {}
+
+    /**
+     * A job was rejected with {@link com.fishblack.async.job.exception.JobException.DSSJobErrorCode#JOB_REJECTED}.
+     * @param job the job
+     */
+    default void recordRejected(Job job) {}
+
+    /**
+     * A job was put aside until the running job of its object finishes.
+     * @param job the job
+     */
+    default void recordRescheduled(Job job) {}
+
+    /**
+     * A failed job was put back to run again under the retry policy of its type.
+     * @param job the job, with the number of its next attempt
+     */
+    default void recordRetried(Job job) {}
+
+    /**
+     * The time a job waited in the executor queue.
+     * @param job the job
+     * @param nanos the waiting time in nanoseconds
+     */
+    default void recordQueueWait(Job job, long nanos) {}
+
+    /**
+     * The time a rescheduled job waited for the running job of its object.
+     * @param job the job
+     * @param nanos the waiting time in nanoseconds
+     */
+    default void recordRescheduleDelay(Job job, long nanos) {}
+
+    /**
+     * The time a processor took to execute a job.
+     * @param job the job
+     * @param nanos the execution time in nanoseconds
+     */
+    default void recordExecution(Job job, long nanos) {}
+
+    /**
+     * The time a callback took on the termination of a job.
+     * @param job the job
+     * @param nanos the callback time in nanoseconds
+     */
+    default void recordCallback(Job job, long nanos) {}
+
+    /**
+     * A job reached a terminal status on this node.
+     * @param job the job
+     * @param status SUCCEEDED, FAILED, CANCELLED or ERROR
+     */
+    default void recordTerminated(Job job, Job.Status status) {}
+
+    /**
+     * A batch of jobs was swept from the job data provider.
+     * @param deleted the count of the deleted finished jobs
+     * @param cured the count of the running jobs cancelled as out of track
+     */
+    default void recordSwept(int deleted, int cured) {}
+}
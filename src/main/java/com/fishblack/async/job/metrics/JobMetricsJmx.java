@@ -0,0 +1,152 @@
+package com.fishblack.async.job.metrics;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobPriority;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntSupplier;
+
+/**
+ * The MXBean exposing {@link DefaultJobMetrics} and the executor gauges.
+ */
+public class JobMetricsJmx implements JobMetricsMXBean {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final DefaultJobMetrics metrics;
+    private final IntSupplier queueDepth;
+    private final IntSupplier activeThreads;
+
+    /**
+     * Constructor of this class
+     * @param metrics the metrics
+     * @param queueDepth the gauge of the queued jobs
+     * @param activeThreads the gauge of the threads running jobs
+     */
+    public JobMetricsJmx(DefaultJobMetrics metrics, IntSupplier queueDepth, IntSupplier activeThreads) {
+        this.metrics = metrics;
+        this.queueDepth = queueDepth;
+        this.activeThreads = activeThreads;
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return metrics.getCount(DefaultJobMetrics.Counter.SUBMITTED);
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return metrics.getCount(DefaultJobMetrics.Counter.REJECTED);
+    }
+
+    @Override
+    public long getRescheduledCount() {
+        return metrics.getCount(DefaultJobMetrics.Counter.RESCHEDULED);
+    }
+
+    @Override
+    public long getRetriedCount() {
+        return metrics.getCount(DefaultJobMetrics.Counter.RETRIED);
+    }
+
+    @Override
+    public long getSucceededCount() {
+        return metrics.getTerminatedCount(Job.Status.SUCCEEDED);
+    }
+
+    @Override
+    public long getFailedCount() {
+        return metrics.getTerminatedCount(Job.Status.FAILED);
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return metrics.getTerminatedCount(Job.Status.CANCELLED);
+    }
+
+    @Override
+    public long getErrorCount() {
+        return metrics.getTerminatedCount(Job.Status.ERROR);
+    }
+
+    @Override
+    public long getSweptCount() {
+        return metrics.getSweptCount();
+    }
+
+    @Override
+    public long getCuredCount() {
+        return metrics.getCuredCount();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return activeThreads.getAsInt();
+    }
+
+    @Override
+    public Map<String, Long> getSubmittedCounts() {
+        return countsByType(DefaultJobMetrics.Counter.SUBMITTED);
+    }
+
+    @Override
+    public Map<String, Long> getRejectedCounts() {
+        return countsByType(DefaultJobMetrics.Counter.REJECTED);
+    }
+
+    @Override
+    public Map<String, Double> getQueueWaitP50() {
+        return quantilesByType(DefaultJobMetrics.Timer.QUEUE_WAIT, 0.5);
+    }
+
+    @Override
+    public Map<String, Double> getQueueWaitP99() {
+        return quantilesByType(DefaultJobMetrics.Timer.QUEUE_WAIT, 0.99);
+    }
+
+    @Override
+    public Map<String, Double> getRescheduleDelayP99() {
+        return quantilesByType(DefaultJobMetrics.Timer.RESCHEDULE_DELAY, 0.99);
+    }
+
+    @Override
+    public Map<String, Double> getExecutionP50() {
+        return quantilesByType(DefaultJobMetrics.Timer.EXECUTION, 0.5);
+    }
+
+    @Override
+    public Map<String, Double> getExecutionP99() {
+        return quantilesByType(DefaultJobMetrics.Timer.EXECUTION, 0.99);
+    }
+
+    @Override
+    public Map<String, Double> getCallbackP99() {
+        return quantilesByType(DefaultJobMetrics.Timer.CALLBACK, 0.99);
+    }
+
+    private Map<String, Long> countsByType(DefaultJobMetrics.Counter counter) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Job.JobType jobType : Job.JobType.values()) {
+            long count = 0;
+            for (JobPriority priority : JobPriority.values()) {
+                count += metrics.getCount(counter, jobType, priority);
+            }
+            counts.put(jobType.name(), count);
+        }
+        return counts;
+    }
+
+    private Map<String, Double> quantilesByType(DefaultJobMetrics.Timer timer, double quantile) {
+        Map<String, Double> quantiles = new TreeMap<>();
+        for (Job.JobType jobType : Job.JobType.values()) {
+            quantiles.put(jobType.name(), metrics.getHistogram(timer, jobType).getQuantile(quantile) / NANOS_PER_MILLI);
+        }
+        return quantiles;
+    }
+}
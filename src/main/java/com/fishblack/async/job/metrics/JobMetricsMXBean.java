@@ -0,0 +1,50 @@
+package com.fishblack.async.job.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the job manager metrics. Durations are in milliseconds.
+ * The maps are keyed by job type.
+ */
+public interface JobMetricsMXBean {
+
+    long getSubmittedCount();
+
+    long getRejectedCount();
+
+    long getRescheduledCount();
+
+    long getRetriedCount();
+
+    long getSucceededCount();
+
+    long getFailedCount();
+
+    long getCancelledCount();
+
+    long getErrorCount();
+
+    long getSweptCount();
+
+    long getCuredCount();
+
+    int getQueueDepth();
+
+    int getActiveThreads();
+
+    Map<String, Long> getSubmittedCounts();
+
+    Map<String, Long> getRejectedCounts();
+
+    Map<String, Double> getQueueWaitP50();
+
+    Map<String, Double> getQueueWaitP99();
+
+    Map<String, Double> getRescheduleDelayP99();
+
+    Map<String, Double> getExecutionP50();
+
+    Map<String, Double> getExecutionP99();
+
+    Map<String, Double> getCallbackP99();
+}
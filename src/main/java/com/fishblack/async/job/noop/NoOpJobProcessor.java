@@ -1,14 +1,17 @@
 package com.fishblack.async.job.noop;
 
 import com.fishblack.async.job.AbstractJobProcessor;
+import com.fishblack.async.job.Job;
 import com.fishblack.async.job.JobManager;
 import com.fishblack.async.job.JobResult;
 import com.fishblack.async.job.exception.JobException;
 
 /**
  * A mock job processor to simulate the real job process.
+ * Any job of type NOOP is processed, not only a {@link NoOpJob}, since the jobs read back from the store,
+ * e.g. the reclaimed ones, are plain jobs.
  */
-public class NoOpJobProcessor extends AbstractJobProcessor<NoOpJob> {
+public class NoOpJobProcessor extends AbstractJobProcessor<Job> {
 
 	public NoOpJobProcessor(JobManager jobManager) {
 	    super(jobManager);
@@ -23,7 +26,7 @@ public class NoOpJobProcessor extends AbstractJobProcessor<NoOpJob> {
      * @throws JobException
      */
     @Override
-    public JobResult executeJob(NoOpJob job) throws JobException {
+    public JobResult executeJob(Job job) throws JobException {
         JobResult result;
 	    try {
             Thread.sleep(5000);
@@ -48,7 +51,7 @@ public class NoOpJobProcessor extends AbstractJobProcessor<NoOpJob> {
     }
 
     @Override
-    public void handleRequestForCancel(NoOpJob job) {
+    public void handleRequestForCancel(Job job) {
         try {
             Thread.sleep(1000);
         }
@@ -58,7 +61,7 @@ public class NoOpJobProcessor extends AbstractJobProcessor<NoOpJob> {
     }
 
     @Override
-    public void handleForceCancelled(NoOpJob job) {
+    public void handleForceCancelled(Job job) {
         try {
             Thread.sleep(1000);
         }
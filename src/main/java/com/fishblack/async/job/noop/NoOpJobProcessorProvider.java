@@ -0,0 +1,22 @@
+package com.fishblack.async.job.noop;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobProcessor;
+import com.fishblack.async.job.JobProcessorProvider;
+
+/**
+ * The provider of the stateless {@link NoOpJobProcessor}.
+ */
+public class NoOpJobProcessorProvider implements JobProcessorProvider {
+
+    @Override
+    public Job.JobType getJobType() {
+        return Job.JobType.NOOP;
+    }
+
+    @Override
+    public JobProcessor<? extends Job> createProcessor(JobManager jobManager) {
+        return new NoOpJobProcessor(jobManager);
+    }
+}
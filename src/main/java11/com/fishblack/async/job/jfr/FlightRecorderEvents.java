@@ -0,0 +1,83 @@
+package com.fishblack.async.job.jfr;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobResult;
+
+/**
+ * The events linked against jdk.jfr, only loaded by {@link JobEvents} when the flight recorder is available.
+ * This is the JDK 11 version of the multi-release jar, the base one records nothing.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static boolean isAvailable() {
+        try {
+            return jdk.jfr.FlightRecorder.isAvailable();
+        }
+        catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    static void submitted(Job job) {
+        commit(new JobSubmittedEvent(), job);
+    }
+
+    static void enqueued(Job job) {
+        commit(new JobEnqueuedEvent(), job);
+    }
+
+    static void dequeued(Job job, long queueWait) {
+        JobDequeuedEvent event = new JobDequeuedEvent();
+        if (event.isEnabled()) {
+            event.queueWait = queueWait;
+            event.setJob(job);
+            event.commit();
+        }
+    }
+
+    static void rescheduled(Job job) {
+        commit(new JobRescheduledEvent(), job);
+    }
+
+    static void running(Job job) {
+        commit(new JobRunningEvent(), job);
+    }
+
+    static void terminated(Job job, Job.Status status) {
+        JobTerminatedEvent event = new JobTerminatedEvent();
+        if (event.isEnabled()) {
+            event.status = status.name();
+            event.setJob(job);
+            event.commit();
+        }
+    }
+
+    static Object beginCallback() {
+        JobCallbackEvent event = new JobCallbackEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static void endCallback(Object callbackEvent, Job job, JobResult result) {
+        JobCallbackEvent event = (JobCallbackEvent) callbackEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.result = result == null || result.getResultType() == null ? null : result.getResultType().name();
+            event.setJob(job);
+            event.commit();
+        }
+    }
+
+    private static void commit(JobEvent event, Job job) {
+        if (event.isEnabled()) {
+            event.setJob(job);
+            event.commit();
+        }
+    }
+}
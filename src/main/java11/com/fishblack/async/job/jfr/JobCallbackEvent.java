@@ -0,0 +1,17 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A duration event, from the start to the end of the callback.
+ */
+@Name("com.fishblack.async.job.JobCallback")
+@Label("Job Callback")
+@Description("The callback of the job was invoked")
+final class JobCallbackEvent extends JobEvent {
+
+    @Label("Result")
+    String result;
+}
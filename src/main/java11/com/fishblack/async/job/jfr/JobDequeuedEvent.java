@@ -0,0 +1,16 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.fishblack.async.job.JobDequeued")
+@Label("Job Dequeued")
+@Description("The job was taken from the executor queue by a worker thread")
+final class JobDequeuedEvent extends JobEvent {
+
+    @Label("Queue Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+}
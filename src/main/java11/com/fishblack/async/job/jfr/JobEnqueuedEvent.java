@@ -0,0 +1,11 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.fishblack.async.job.JobEnqueued")
+@Label("Job Enqueued")
+@Description("The job was put in the executor queue")
+final class JobEnqueuedEvent extends JobEvent {
+}
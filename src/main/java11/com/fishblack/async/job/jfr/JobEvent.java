@@ -0,0 +1,33 @@
+package com.fishblack.async.job.jfr;
+
+import com.fishblack.async.job.Job;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * The base of the flight recorder events of a job.
+ */
+@Category("Async Job")
+@StackTrace(false)
+abstract class JobEvent extends jdk.jfr.Event {
+
+    @Label("Job Id")
+    String jobId;
+
+    @Label("Stripe")
+    String stripe;
+
+    @Label("Job Type")
+    String jobType;
+
+    @Label("Priority")
+    String priority;
+
+    void setJob(Job job) {
+        jobId = job.getJobId();
+        stripe = job.getStripe();
+        jobType = job.getJobType() == null ? null : job.getJobType().name();
+        priority = job.getPriority() == null ? null : job.getPriority().name();
+    }
+}
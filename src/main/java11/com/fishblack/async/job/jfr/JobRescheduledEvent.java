@@ -0,0 +1,11 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.fishblack.async.job.JobRescheduled")
+@Label("Job Rescheduled")
+@Description("The job waits for the running job of its object")
+final class JobRescheduledEvent extends JobEvent {
+}
@@ -0,0 +1,11 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.fishblack.async.job.JobRunning")
+@Label("Job Running")
+@Description("The job was started by its processor")
+final class JobRunningEvent extends JobEvent {
+}
@@ -0,0 +1,11 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.fishblack.async.job.JobSubmitted")
+@Label("Job Submitted")
+@Description("The job was persisted")
+final class JobSubmittedEvent extends JobEvent {
+}
@@ -0,0 +1,14 @@
+package com.fishblack.async.job.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.fishblack.async.job.JobTerminated")
+@Label("Job Terminated")
+@Description("The job reached a terminal status on this node")
+final class JobTerminatedEvent extends JobEvent {
+
+    @Label("Status")
+    String status;
+}
@@ -0,0 +1,30 @@
+package com.fishblack.async.job;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Access to virtual threads, the JDK 21 version of the multi-release jar.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * @return true if the running JDK supports virtual threads
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Create a factory of virtual threads.
+     * @param threadNamePrefix the name prefix of the threads
+     * @return the thread factory
+     */
+    static ThreadFactory newThreadFactory(String threadNamePrefix) {
+        AtomicInteger count = new AtomicInteger(0);
+        //a builder is not thread safe, so take a new one per thread
+        return r -> Thread.ofVirtual().name(threadNamePrefix + "[" + count.incrementAndGet() + "]").unstarted(r);
+    }
+}
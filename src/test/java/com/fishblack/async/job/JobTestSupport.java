@@ -0,0 +1,83 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.mem.MemJobDataProvider;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Access to the package private parts of the job manager for the bvt tests.
+ */
+public final class JobTestSupport {
+
+    private JobTestSupport() {}
+
+    /**
+     * Get the job manager of the tests, which is a singleton shared by all the tests of the run.
+     * @return the job manager
+     */
+    public static JobManager getJobManager() {
+        return JobManager.getInstance(new JobManagerConfig(1, 1, 1000), new MemJobDataProvider());
+    }
+
+    /**
+     * Create a job manager of its own, to be stopped by the test.
+     * @param config the configuration of the job manager
+     * @param provider the job data provider
+     * @return the job manager, without daemon timer
+     */
+    public static JobManager newJobManager(JobManagerConfig config, JobDataProvider provider) {
+        return new JobManager(config, provider);
+    }
+
+    /**
+     * Create a sweep task of a job manager, scheduling its next batch on the given timer.
+     * @param jobManager the job manager
+     * @param timer the timer of the next batches
+     * @return the task, to be run by the test
+     */
+    public static TimerTask newSweepTask(JobManager jobManager, Timer timer) {
+        return jobManager.new SweepJobsTask(timer);
+    }
+
+    public static BlockingQueue<Runnable> newFairShareQueue(JobFairSharePolicy policy) {
+        return new JobFairShareQueue(policy);
+    }
+
+    /**
+     * Release the in-flight slot of a task taken from a queue made by {@link #newFairShareQueue(JobFairSharePolicy)}.
+     * @param queue the queue
+     * @param task the executed task
+     */
+    public static void complete(BlockingQueue<Runnable> queue, Runnable task) {
+        ((JobFairShareQueue) queue).complete(task);
+    }
+
+    /**
+     * Create a submission task running the given body instead of the processing of its job.
+     * @param job the job of the task
+     * @param body the body of the task
+     * @return the task
+     */
+    public static JobSubmitTask newTask(Job job, Runnable body) {
+        return new JobSubmitTask(getJobManager(), job, null) {
+            @Override
+            public void run() {
+                body.run();
+            }
+        };
+    }
+
+    public static Job getJob(Runnable task) {
+        return ((JobSubmitTask) task).getJob();
+    }
+
+    public static void execute(JobBulkhead bulkhead, JobSubmitTask task) {
+        bulkhead.execute(task);
+    }
+
+    public static void shutdown(JobBulkhead bulkhead) {
+        bulkhead.shutdownNow();
+    }
+}
@@ -0,0 +1,57 @@
+package com.fishblack.async.job;
+
+import com.fishblack.async.job.exception.JobException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The provider of the processors of the NOOP jobs of the tests, running a script instead of the sleeps of
+ * {@link com.fishblack.async.job.noop.NoOpJobProcessor}.
+ */
+public class ScriptedJobProcessorProvider implements JobProcessorProvider {
+
+    /**
+     * The execution of a job.
+     */
+    public interface Script {
+        JobResult execute(AbstractJobProcessor<Job> processor, Job job) throws JobException;
+    }
+
+    private final Script script;
+    private final AtomicInteger runCount = new AtomicInteger();
+
+    public ScriptedJobProcessorProvider(Script script) {
+        this.script = script;
+    }
+
+    /**
+     * @return the count of the executions of all the jobs
+     */
+    public int getRunCount() {
+        return runCount.get();
+    }
+
+    @Override
+    public Job.JobType getJobType() {
+        return Job.JobType.NOOP;
+    }
+
+    @Override
+    public JobProcessor<? extends Job> createProcessor(JobManager jobManager) {
+        return new AbstractJobProcessor<Job>(jobManager) {
+            @Override
+            public JobResult executeJob(Job job) throws JobException {
+                runCount.incrementAndGet();
+                return script.execute(this, job);
+            }
+
+            @Override
+            public void handleRequestForCancel(Job job) {
+            }
+
+            @Override
+            public void handleForceCancelled(Job job) {
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.cache.CachingJobDataProvider;
+import com.fishblack.async.job.cache.JobCacheStats;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The near cache of jobs in front of the memory job data provider.
+ */
+public class CachingJobDataProviderTest {
+
+    private MemJobDataProvider delegate;
+    private CachingJobDataProvider provider;
+
+    @Before
+    public void setUp() {
+        delegate = new MemJobDataProvider();
+        provider = new CachingJobDataProvider(delegate, 1024, 1, TimeUnit.HOURS);
+    }
+
+    @Test
+    public void testHitsAndMisses() throws JobException {
+        Job created = provider.createJob(newJob("a.o1"));
+        assertNotNull(provider.getJob(created.getJobId()));
+        assertNotNull(provider.getJob(created.getJobId()));
+        assertStats(2, 0);
+
+        Job other = delegate.createJob(newJob("a.o2"));
+        assertNotNull(provider.getJob(other.getJobId()));
+        assertNotNull(provider.getJob(other.getJobId()));
+        assertStats(3, 1);
+
+        assertNull(provider.getJob("missing"));
+        assertStats(3, 2);
+    }
+
+    @Test
+    public void testChangesOfOtherNodesAreSeenOnceInvalidated() throws JobException {
+        Job job = provider.createJob(newJob("a.o1"));
+        //a change made behind the cache, as by another node
+        Job remote = delegate.getJob(job.getJobId());
+        remote.setOwnerId("node2");
+        remote.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, delegate.updateJobStatus(remote, Job.Status.RUNNING));
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(job.getJobId()).getStatus());
+
+        provider.invalidateAll();
+        assertEquals(Job.Status.RUNNING, provider.getJob(job.getJobId()).getStatus());
+        assertEquals(1, provider.getStats().getSize());
+    }
+
+    @Test
+    public void testLocalTransitionsAreSeenWithTheirTimes() throws JobException {
+        Job job = provider.createJob(newJob("a.o1"));
+        assertNull(provider.getJob(job.getJobId()).getStartTime());
+
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        Job running = provider.getJob(job.getJobId());
+        assertEquals(Job.Status.RUNNING, running.getStatus());
+        assertEquals("node1", running.getOwnerId());
+        assertNotNull(running.getStartTime());
+        assertNotNull(running.getLastPingTime());
+        assertEquals(job.getFencingToken(), running.getFencingToken());
+
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+        Job succeeded = provider.getJob(job.getJobId());
+        assertEquals(Job.Status.SUCCEEDED, succeeded.getStatus());
+        assertNotNull(succeeded.getEndTime());
+        assertNull(succeeded.getLeaseExpiry());
+        assertEquals(succeeded.getEndTime(), provider.getJob(job.getJobId()).getEndTime());
+    }
+
+    @Test
+    public void testRejectedTransitionInvalidates() throws JobException {
+        Job job = provider.createJob(newJob("a.o1"));
+        Job stale = new Job(job);
+        job.setOwnerId("node1");
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        //the fencing token of the stale copy is outdated
+        assertEquals(0, provider.updateJobStatus(stale, Job.Status.SUCCEEDED));
+        assertEquals(Job.Status.RUNNING, provider.getJob(job.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testCancelledJobsAreInvalidated() throws JobException {
+        Job job = provider.createJob(newJob("a.o1"));
+        job.setOwnerId("node1");
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        assertEquals(Job.Status.RUNNING, provider.getJob(job.getJobId()).getStatus());
+        assertEquals(1, provider.cancelJobs("s").size());
+        Job cancelled = provider.getJob(job.getJobId());
+        assertEquals(Job.Status.CANCELLED, cancelled.getStatus());
+        assertNotNull(cancelled.getEndTime());
+    }
+
+    @Test
+    public void testPingsAndRenewalsAreInvalidated() throws JobException, InterruptedException {
+        Job job = provider.createJob(newJob("a.o1"));
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        Job running = provider.getJob(job.getJobId());
+
+        Thread.sleep(5);
+        provider.keepOnTrackJobs(Collections.singletonList(job.getJobId()));
+        Job pinged = provider.getJob(job.getJobId());
+        assertTrue(pinged.getLastPingTime().after(running.getLastPingTime()));
+
+        Timestamp expiry = new Timestamp(System.currentTimeMillis() + 120000);
+        assertEquals(1, provider.renewLeases("node1", Collections.singletonList(job.getJobId()), expiry));
+        assertEquals(expiry.getTime(), provider.getJob(job.getJobId()).getLeaseExpiry().getTime());
+    }
+
+    private void assertStats(long hits, long misses) {
+        JobCacheStats stats = provider.getStats();
+        assertEquals(hits, stats.getHitCount());
+        assertEquals(misses, stats.getMissCount());
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+}
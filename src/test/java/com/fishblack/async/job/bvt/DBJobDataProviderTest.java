@@ -0,0 +1,177 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The DB job data provider against an embedded H2 database.
+ */
+public class DBJobDataProviderTest {
+
+    private DBJobDataProvider provider;
+
+    @Before
+    public void setUp() throws JobException {
+        provider = new DBJobDataProvider("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        provider.createSchema();
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Test
+    public void testCreateSchemaTwice() throws JobException {
+        provider.createSchema();
+        Job job = provider.createJob(newJob("s", "a.o1"));
+        assertNotNull(provider.getJob(job.getJobId()));
+    }
+
+    @Test
+    public void testCurrentTimestamp() throws JobException {
+        long before = System.currentTimeMillis();
+        Timestamp now = provider.getCurrentTimestamp();
+        assertNotNull(now);
+        assertTrue(Math.abs(now.getTime() - before) < 60000);
+        assertNotNull(provider.getCurrentTimestamp());
+    }
+
+    @Test
+    public void testCreateAndGetJob() throws JobException {
+        Job job = newJob("s", "a.o1");
+        job.setJobDetail("detail");
+        provider.createJob(job);
+        Job stored = provider.getJob(job.getJobId());
+        assertEquals(job.getJobId(), stored.getJobId());
+        assertEquals(Job.Status.NOT_STARTED, stored.getStatus());
+        assertEquals("detail", stored.getJobDetail());
+        assertEquals(1, stored.getAttempt());
+        assertNotNull(stored.getRequestTime());
+        assertNull(provider.getJob("missing"));
+    }
+
+    @Test
+    public void testCreateJobs() throws JobException {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobs.add(newJob("s", "a.o" + i));
+        }
+        List<Job> created = provider.createJobs(jobs);
+        assertEquals(10, created.size());
+        for (Job job : jobs) {
+            assertNotNull(provider.getJob(job.getJobId()));
+        }
+    }
+
+    @Test
+    public void testCreateJobsSkipsNullJob() throws JobException {
+        Job first = newJob("s", "a.o1");
+        Job last = newJob("s", "a.o2");
+        List<Job> created = provider.createJobs(Arrays.asList(first, null, last));
+        assertEquals(3, created.size());
+        assertEquals(first.getJobId(), created.get(0).getJobId());
+        assertNull(created.get(1));
+        assertEquals(last.getJobId(), created.get(2).getJobId());
+        assertNotNull(provider.getJob(first.getJobId()));
+        assertNotNull(provider.getJob(last.getJobId()));
+        assertNull(provider.createJobs(Arrays.asList((Job) null)).get(0));
+    }
+
+    @Test
+    public void testLatestAndRunningJob() throws JobException, InterruptedException {
+        Job first = provider.createJob(newJob("s", "a.o1"));
+        Thread.sleep(5);
+        Job second = provider.createJob(newJob("s", "a.o1"));
+        assertEquals(second.getJobId(), provider.getLatestJob("s", "a.o1", "DATASET", Job.JobType.NOOP).getJobId());
+        assertNull(provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP));
+
+        start(first);
+        assertEquals(first.getJobId(), provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP).getJobId());
+        assertEquals(1, provider.updateJobStatus(first, Job.Status.SUCCEEDED));
+        assertNull(provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP));
+        assertNotNull(provider.getJob(first.getJobId()).getEndTime());
+    }
+
+    @Test
+    public void testGetJobStatusesInChunks() throws JobException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Job job = provider.createJob(newJob("s", "a.o" + i));
+            if (i % 2 == 0) {
+                start(job);
+            }
+            ids.add(job.getJobId());
+        }
+        ids.add("missing");
+        Map<String, Job.Status> statuses = provider.getJobStatuses(ids);
+        assertEquals(250, statuses.size());
+        for (int i = 0; i < 250; i++) {
+            assertEquals(i % 2 == 0 ? Job.Status.RUNNING : Job.Status.NOT_STARTED, statuses.get(ids.get(i)));
+        }
+    }
+
+    @Test
+    public void testCancelJobsReturnsTheCancelledJobs() throws JobException {
+        Set<String> running = new HashSet<>();
+        for (int i = 0; i < 150; i++) {
+            Job job = provider.createJob(newJob("s1", "a.o" + i));
+            start(job);
+            running.add(job.getJobId());
+        }
+        Job waiting = provider.createJob(newJob("s1", "a.waiting"));
+        Job other = provider.createJob(newJob("s2", "a.o1"));
+        start(other);
+
+        List<String> cancelled = provider.cancelJobs("s1");
+        assertEquals(running, new HashSet<>(cancelled));
+        for (String jobId : running) {
+            Job job = provider.getJob(jobId);
+            assertEquals(Job.Status.CANCELLED, job.getStatus());
+            assertNull(job.getLeaseExpiry());
+        }
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(waiting.getJobId()).getStatus());
+        assertEquals(Job.Status.RUNNING, provider.getJob(other.getJobId()).getStatus());
+        assertTrue(provider.cancelJobs("s1").isEmpty());
+    }
+
+    @Test
+    public void testKeepOnTrackJobs() throws JobException, InterruptedException {
+        Job job = provider.createJob(newJob("s", "a.o1"));
+        start(job);
+        Timestamp started = provider.getJob(job.getJobId()).getLastPingTime();
+        Thread.sleep(20);
+        List<String> ids = new ArrayList<>();
+        ids.add(job.getJobId());
+        provider.keepOnTrackJobs(ids);
+        assertTrue(provider.getJob(job.getJobId()).getLastPingTime().after(started));
+    }
+
+    private static Job newJob(String stripe, String twopartName) {
+        return new Job(stripe, twopartName, "DATASET", Job.JobType.NOOP);
+    }
+
+    private void start(Job job) throws JobException {
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+    }
+}
@@ -0,0 +1,295 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.file.FileJobDataProvider;
+import com.fishblack.async.job.file.FileSyncPolicy;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The crash recovery of the file job data provider: the jobs are loaded back from its log on reopening.
+ */
+public class FileJobDataProviderTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int COMPACTION_THRESHOLD = 2;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FileJobDataProvider provider;
+
+    @After
+    public void tearDown() {
+        if (provider != null) {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testReopen() throws JobException, IOException {
+        Path directory = folder.newFolder().toPath();
+        provider = open(directory, 64 * 1024);
+        Job running = provider.createJob(newJob("a.o1"));
+        start(running);
+        Job waiting = provider.createJob(newJob("a.o2"));
+        provider.close();
+
+        provider = open(directory, 64 * 1024);
+        Job stored = provider.getJob(running.getJobId());
+        assertEquals(Job.Status.RUNNING, stored.getStatus());
+        assertEquals("node1", stored.getOwnerId());
+        assertEquals(running.getFencingToken(), stored.getFencingToken());
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(waiting.getJobId()).getStatus());
+        assertEquals(running.getJobId(), provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP).getJobId());
+        assertEquals(waiting.getJobId(), provider.getLatestJob("s", "a.o2", "DATASET", Job.JobType.NOOP).getJobId());
+    }
+
+    @Test
+    public void testRecoverFromCorruptedTail() throws JobException, IOException {
+        Path directory = folder.newFolder().toPath();
+        provider = open(directory, 64 * 1024);
+        Job kept = provider.createJob(newJob("a.o1"));
+        Job torn = provider.createJob(newJob("a.o2"));
+        provider.close();
+
+        //a byte of the last record is changed, as by a write torn by a crash
+        Path segment = lastFile(directory, ".log");
+        long end = endOfRecords(segment);
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.read(last, end - 1);
+            last.flip();
+            last.put(0, (byte) ~last.get(0));
+            channel.write(last, end - 1);
+        }
+
+        provider = open(directory, 64 * 1024);
+        assertNotNull(provider.getJob(kept.getJobId()));
+        assertNull(provider.getJob(torn.getJobId()));
+
+        //the log goes on after the last whole record
+        Job next = provider.createJob(newJob("a.o3"));
+        provider.close();
+        provider = open(directory, 64 * 1024);
+        assertNotNull(provider.getJob(kept.getJobId()));
+        assertNull(provider.getJob(torn.getJobId()));
+        assertNotNull(provider.getJob(next.getJobId()));
+    }
+
+    @Test
+    public void testRecoverFromTornRecordHeader() throws JobException, IOException {
+        Path directory = folder.newFolder().toPath();
+        provider = open(directory, 64 * 1024);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            jobs.add(provider.createJob(newJob("a.o" + i)));
+        }
+        provider.close();
+
+        //the header of a record was written but not its payload
+        Path segment = lastFile(directory, ".log");
+        ByteBuffer header = ByteBuffer.allocate(9);
+        header.putInt(1000).putInt(12345).put((byte) 1);
+        header.flip();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(header, endOfRecords(segment));
+        }
+
+        provider = open(directory, 64 * 1024);
+        for (Job job : jobs) {
+            assertEquals(Job.Status.NOT_STARTED, provider.getJob(job.getJobId()).getStatus());
+        }
+        Job next = provider.createJob(newJob("a.next"));
+        provider.close();
+        provider = open(directory, 64 * 1024);
+        assertNotNull(provider.getJob(next.getJobId()));
+        assertEquals(jobs.size(), countJobs(jobs));
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndSegments() throws JobException, IOException {
+        Path directory = folder.newFolder().toPath();
+        provider = open(directory, SEGMENT_SIZE);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Job job = newJob("a.o" + i);
+            job.setJobDetail("detail of job " + i);
+            jobs.add(provider.createJob(job));
+        }
+        for (int i = 0; i < 200; i += 2) {
+            start(jobs.get(i));
+        }
+        for (int i = 0; i < 200; i += 4) {
+            assertEquals(1, provider.updateJobStatus(jobs.get(i), Job.Status.SUCCEEDED));
+        }
+        //the ended jobs are deleted, so the log holds removals too
+        List<Job> deleted = provider.deleteFinishedJobs(new Timestamp(System.currentTimeMillis() + 60000), 10);
+        assertEquals(10, deleted.size());
+        provider.close();
+        assertFalse(listFiles(directory, ".snapshot").isEmpty());
+
+        //a change after the last snapshot is replayed from the segments
+        provider = open(directory, SEGMENT_SIZE);
+        Job last = jobs.get(1);
+        start(last);
+        provider.close();
+
+        provider = open(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 200; i++) {
+            Job job = jobs.get(i);
+            Job stored = provider.getJob(job.getJobId());
+            if (containsJob(deleted, job)) {
+                assertNull(stored);
+                continue;
+            }
+            assertEquals(job == last ? Job.Status.RUNNING : expectedStatus(i), stored.getStatus());
+            assertEquals(job.getFencingToken(), stored.getFencingToken());
+            assertEquals("detail of job " + i, stored.getJobDetail());
+        }
+        assertEquals(Job.Status.RUNNING, provider.getJob(last.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testCompactionWhileAppending() throws JobException, IOException, InterruptedException {
+        Path directory = folder.newFolder().toPath();
+        provider = open(directory, SEGMENT_SIZE);
+        Map<String, Job.Status> expected = new ConcurrentHashMap<>();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int writer = t;
+            writers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 150; i++) {
+                        Job job = provider.createJob(newJob("a.w" + writer + "o" + i));
+                        expected.put(job.getJobId(), Job.Status.NOT_STARTED);
+                        if (i % 3 == 0) {
+                            continue;
+                        }
+                        start(job);
+                        expected.put(job.getJobId(), Job.Status.RUNNING);
+                        if (i % 3 == 1) {
+                            assertEquals(1, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+                            expected.put(job.getJobId(), Job.Status.SUCCEEDED);
+                        }
+                    }
+                }
+                catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+        }
+        assertEquals(Collections.emptyList(), errors);
+        provider.close();
+        assertFalse(listFiles(directory, ".snapshot").isEmpty());
+        //the segments and snapshots before the last snapshot were deleted
+        assertEquals(1, listFiles(directory, ".snapshot").size());
+
+        provider = open(directory, SEGMENT_SIZE);
+        assertEquals(600, expected.size());
+        for (Map.Entry<String, Job.Status> entry : expected.entrySet()) {
+            Job stored = provider.getJob(entry.getKey());
+            assertNotNull(entry.getKey(), stored);
+            assertEquals(entry.getKey(), entry.getValue(), stored.getStatus());
+        }
+    }
+
+    private static FileJobDataProvider open(Path directory, int segmentSize) throws JobException {
+        return new FileJobDataProvider(directory, FileSyncPolicy.PERIODIC, segmentSize, COMPACTION_THRESHOLD);
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+
+    private static Job.Status expectedStatus(int i) {
+        return i % 4 == 0 ? Job.Status.SUCCEEDED : i % 2 == 0 ? Job.Status.RUNNING : Job.Status.NOT_STARTED;
+    }
+
+    private static boolean containsJob(List<Job> jobs, Job job) {
+        for (Job other : jobs) {
+            if (other.getJobId().equals(job.getJobId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countJobs(List<Job> jobs) {
+        int count = 0;
+        for (Job job : jobs) {
+            if (provider.getJob(job.getJobId()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void start(Job job) throws JobException {
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+    }
+
+    private static TreeSet<Path> listFiles(Path directory, String suffix) throws IOException {
+        TreeSet<Path> files = new TreeSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private static Path lastFile(Path directory, String suffix) throws IOException {
+        TreeSet<Path> files = listFiles(directory, suffix);
+        assertFalse(files.isEmpty());
+        return files.last();
+    }
+
+    /**
+     * Find the end of the records of a segment by following the lengths of the records up to the zero length ending them.
+     */
+    private static long endOfRecords(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int end = 0;
+        while (end + 9 <= buffer.limit() && buffer.getInt(end) != 0) {
+            end += 9 + buffer.getInt(end);
+        }
+        assertTrue(end > 0);
+        return end;
+    }
+}
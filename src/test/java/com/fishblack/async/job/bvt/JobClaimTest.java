@@ -0,0 +1,216 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The job claiming of the memory and the DB job data providers, with threads as the nodes sharing one store.
+ */
+@RunWith(Parameterized.class)
+public class JobClaimTest {
+
+    private static final Collection<Job.JobType> JOB_TYPES = Collections.singletonList(Job.JobType.NOOP);
+    private static final int NODE_COUNT = 4;
+    private static final int OBJECT_COUNT = 8;
+    private static final int JOB_COUNT = 200;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> providers() {
+        return Arrays.asList(new Object[][] {{"memory"}, {"db"}});
+    }
+
+    private final String providerName;
+    private JobDataProvider provider;
+
+    public JobClaimTest(String providerName) {
+        this.providerName = providerName;
+    }
+
+    @Before
+    public void setUp() throws JobException {
+        if ("db".equals(providerName)) {
+            DBJobDataProvider db = new DBJobDataProvider("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+            db.createSchema();
+            provider = db;
+        }
+        else {
+            provider = new MemJobDataProvider();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (provider instanceof DBJobDataProvider) {
+            ((DBJobDataProvider) provider).close();
+        }
+    }
+
+    @Test
+    public void testClaimOnlyTheLatestJob() throws JobException, InterruptedException {
+        Job older = provider.createJob(newJob("a.o1"));
+        Thread.sleep(5);
+        Job latest = provider.createJob(newJob("a.o1"));
+
+        List<Job> claimed = claim("node1", 10);
+        assertEquals(1, claimed.size());
+        assertEquals(latest.getJobId(), claimed.get(0).getJobId());
+        assertEquals("node1", claimed.get(0).getOwnerId());
+        assertEquals(Job.Status.RUNNING, provider.getJob(latest.getJobId()).getStatus());
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(older.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testNoClaimWhileAJobOfTheObjectRuns() throws JobException, InterruptedException {
+        provider.createJob(newJob("a.o1"));
+        Job running = claim("node1", 10).get(0);
+        Thread.sleep(5);
+        Job next = provider.createJob(newJob("a.o1"));
+
+        assertTrue(claim("node2", 10).isEmpty());
+        assertEquals(1, provider.updateJobStatus(running, Job.Status.SUCCEEDED));
+        List<Job> claimed = claim("node2", 10);
+        assertEquals(1, claimed.size());
+        assertEquals(next.getJobId(), claimed.get(0).getJobId());
+    }
+
+    @Test
+    public void testClaimedJobIsNotClaimedAgain() throws JobException {
+        for (int i = 0; i < 10; i++) {
+            provider.createJob(newJob("a.o" + i));
+        }
+        List<Job> first = claim("node1", 6);
+        List<Job> second = claim("node2", 6);
+        assertEquals(6, first.size());
+        assertEquals(4, second.size());
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        for (Job job : first) {
+            ids.add(job.getJobId());
+        }
+        for (Job job : second) {
+            assertTrue(ids.add(job.getJobId()));
+        }
+        assertTrue(claim("node3", 6).isEmpty());
+    }
+
+    /**
+     * Several nodes claim and run the jobs of a few objects while new jobs of these objects keep being created,
+     * and no two jobs of an object may run at the same time.
+     */
+    @Test
+    public void testNoOverlappingRunsOfAnObject() throws InterruptedException {
+        ConcurrentHashMap<String, String> runningObjects = new ConcurrentHashMap<>();
+        Set<String> claimedIds = ConcurrentHashMap.newKeySet();
+        List<String> violations = new CopyOnWriteArrayList<>();
+        AtomicBoolean created = new AtomicBoolean();
+        AtomicInteger runCount = new AtomicInteger();
+
+        Thread creator = new Thread(() -> {
+            try {
+                for (int i = 0; i < JOB_COUNT; i++) {
+                    provider.createJob(newJob("a.o" + (i % OBJECT_COUNT)));
+                    if (i % OBJECT_COUNT == 0) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+            catch (JobException | InterruptedException ex) {
+                violations.add("creation failed: " + ex);
+            }
+            finally {
+                created.set(true);
+            }
+        });
+        List<Thread> nodes = new ArrayList<>();
+        for (int n = 0; n < NODE_COUNT; n++) {
+            String nodeId = "node" + n;
+            nodes.add(new Thread(() -> {
+                int idleRounds = 0;
+                try {
+                    while (idleRounds < 20) {
+                        boolean creating = !created.get();
+                        List<Job> claimed = claim(nodeId, 2);
+                        idleRounds = claimed.isEmpty() && !creating ? idleRounds + 1 : 0;
+                        for (Job job : claimed) {
+                            if (!claimedIds.add(job.getJobId())) {
+                                violations.add("job claimed twice: " + job.getJobId());
+                            }
+                            String previous = runningObjects.putIfAbsent(job.getTwopartName(), job.getJobId());
+                            if (previous != null) {
+                                violations.add(String.format("jobs %s and %s of %s run at once",
+                                        previous, job.getJobId(), job.getTwopartName()));
+                            }
+                            Thread.sleep(1);
+                            if (previous == null) {
+                                runningObjects.remove(job.getTwopartName(), job.getJobId());
+                            }
+                            if (provider.updateJobStatus(job, Job.Status.SUCCEEDED) != 1) {
+                                violations.add("claimed job could not end: " + job.getJobId());
+                            }
+                            runCount.incrementAndGet();
+                        }
+                        if (claimed.isEmpty()) {
+                            Thread.sleep(1);
+                        }
+                    }
+                }
+                catch (JobException | InterruptedException ex) {
+                    violations.add(nodeId + " failed: " + ex);
+                }
+            }));
+        }
+        creator.start();
+        for (Thread node : nodes) {
+            node.start();
+        }
+        creator.join(TimeUnit.MINUTES.toMillis(1));
+        for (Thread node : nodes) {
+            node.join(TimeUnit.MINUTES.toMillis(1));
+        }
+
+        assertEquals(Collections.emptyList(), violations);
+        assertTrue(runCount.get() >= OBJECT_COUNT);
+        //the latest job of every object ran in the end
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            try {
+                Job latest = provider.getLatestJob("s", "a.o" + i, "DATASET", Job.JobType.NOOP);
+                assertEquals(Job.Status.SUCCEEDED, latest.getStatus());
+            }
+            catch (JobException ex) {
+                throw new AssertionError(ex);
+            }
+        }
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+
+    private List<Job> claim(String nodeId, int maxCount) throws JobException {
+        return provider.claimJobs(nodeId, new Timestamp(System.currentTimeMillis() + 60000), JOB_TYPES, maxCount);
+    }
+}
@@ -0,0 +1,115 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobBulkhead;
+import com.fishblack.async.job.JobFairSharePolicy;
+import com.fishblack.async.job.JobPriority;
+import com.fishblack.async.job.JobTestSupport;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The executor queue of the bulkheads: the weighted share of the stripes, the order within a stripe,
+ * and the in-flight caps.
+ */
+public class JobFairShareQueueTest {
+
+    private static final Runnable NO_OP = () -> {};
+
+    @Test
+    public void testWeightedShareAcrossStripes() {
+        JobFairSharePolicy policy = new JobFairSharePolicy();
+        policy.setWeight("a", 3);
+        BlockingQueue<Runnable> queue = JobTestSupport.newFairShareQueue(policy);
+        for (int i = 0; i < 8; i++) {
+            queue.offer(newTask("a", "a.o" + i, JobPriority.MEDIUM));
+        }
+        for (int i = 0; i < 8; i++) {
+            queue.offer(newTask("b", "b.o" + i, JobPriority.MEDIUM));
+        }
+        //3 jobs of 'a' per round against 1 of 'b' while both have queued jobs
+        assertEquals("aaabaaabaabbbbbb", drainStripes(queue));
+    }
+
+    @Test
+    public void testFifoWithinPriorityInLane() {
+        for (JobFairSharePolicy policy : new JobFairSharePolicy[] {null, new JobFairSharePolicy()}) {
+            BlockingQueue<Runnable> queue = JobTestSupport.newFairShareQueue(policy);
+            queue.offer(newTask("s", "low1", JobPriority.LOW));
+            queue.offer(newTask("s", "medium1", JobPriority.MEDIUM));
+            queue.offer(newTask("s", "high1", JobPriority.HIGH));
+            queue.offer(newTask("s", "medium2", JobPriority.MEDIUM));
+            queue.offer(newTask("s", "high2", JobPriority.HIGH));
+            queue.offer(newTask("s", "low2", JobPriority.LOW));
+            queue.offer(newTask("s", "medium3", JobPriority.MEDIUM));
+            StringBuilder order = new StringBuilder();
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                order.append(JobTestSupport.getJob(task).getTwopartName()).append(' ');
+                JobTestSupport.complete(queue, task);
+            }
+            assertEquals("high1 high2 medium1 medium2 medium3 low1 low2 ", order.toString());
+        }
+    }
+
+    @Test
+    public void testCappedStripeWaitsForCompletion() throws InterruptedException {
+        JobFairSharePolicy policy = new JobFairSharePolicy(1);
+        BlockingQueue<Runnable> queue = JobTestSupport.newFairShareQueue(policy);
+        Runnable first = newTask("a", "a.o1", JobPriority.MEDIUM);
+        Runnable second = newTask("a", "a.o2", JobPriority.MEDIUM);
+        Runnable other = newTask("b", "b.o1", JobPriority.MEDIUM);
+        queue.offer(first);
+        queue.offer(second);
+        queue.offer(other);
+
+        assertSame(first, queue.poll());
+        //'a' is at its cap, so 'b' is served
+        assertSame(other, queue.poll());
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.size());
+
+        JobTestSupport.complete(queue, first);
+        assertSame(second, queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testInFlightCapReleasedWhenTaskThrows() throws InterruptedException {
+        JobFairSharePolicy policy = new JobFairSharePolicy(1);
+        JobBulkhead bulkhead = new JobBulkhead("fair-share-test", 2, 2, 100, policy);
+        try {
+            CountDownLatch ran = new CountDownLatch(1);
+            JobTestSupport.execute(bulkhead, JobTestSupport.newTask(new Job("a", "a.o1", "DATASET", Job.JobType.NOOP), () -> {
+                throw new IllegalStateException("Expected failure of the test");
+            }));
+            JobTestSupport.execute(bulkhead, JobTestSupport.newTask(new Job("a", "a.o2", "DATASET", Job.JobType.NOOP),
+                    ran::countDown));
+            assertTrue(ran.await(10, TimeUnit.SECONDS));
+        }
+        finally {
+            JobTestSupport.shutdown(bulkhead);
+        }
+    }
+
+    private static String drainStripes(BlockingQueue<Runnable> queue) {
+        StringBuilder stripes = new StringBuilder();
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            stripes.append(JobTestSupport.getJob(task).getStripe());
+            JobTestSupport.complete(queue, task);
+        }
+        return stripes.toString();
+    }
+
+    private static Runnable newTask(String stripe, String twopartName, JobPriority priority) {
+        return JobTestSupport.newTask(new Job(stripe, twopartName, "DATASET", Job.JobType.NOOP, priority), NO_OP);
+    }
+}
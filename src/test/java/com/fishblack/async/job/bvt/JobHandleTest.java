@@ -0,0 +1,238 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.AbstractJobProcessor;
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobHandle;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobManagerConfig;
+import com.fishblack.async.job.JobResult;
+import com.fishblack.async.job.JobRetryPolicy;
+import com.fishblack.async.job.JobTestSupport;
+import com.fishblack.async.job.ScriptedJobProcessorProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import com.fishblack.async.job.noop.NoOpJob;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The completion of the job handles on each terminal path of their jobs, with a job manager running one job at a time.
+ */
+public class JobHandleTest {
+
+    private static final long LEASE_DURATION = 200;
+
+    private final CountDownLatch running = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Map<String, Integer> runs = new ConcurrentHashMap<>();
+    private MemJobDataProvider provider;
+    private JobManager jobManager;
+
+    @Before
+    public void setUp() {
+        provider = new MemJobDataProvider();
+        jobManager = newJobManager(JobRetryPolicy.NONE);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        jobManager.stop();
+    }
+
+    @Test
+    public void testSucceeded() throws Exception {
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        JobResult result = handle.getResult().get(10, TimeUnit.SECONDS);
+        assertEquals(JobResult.ResultType.SUCCEEDED, result.getResultType());
+        assertEquals("done", result.getResultData());
+        assertEquals(Job.Status.SUCCEEDED, handle.getStatus());
+        assertEquals(Job.Status.SUCCEEDED, provider.getJob(handle.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testFailed() throws Exception {
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.failed", "DATASET"));
+        JobResult result = handle.getResult().get(10, TimeUnit.SECONDS);
+        assertEquals(JobResult.ResultType.FAILED, result.getResultType());
+        assertEquals("failed", result.getResultData());
+        assertEquals(Job.Status.FAILED, provider.getJob(handle.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testCancelledBeforeStart() throws Exception {
+        jobManager.submitJobAsync(new NoOpJob("s", "a.blocking", "DATASET"));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        assertTrue(handle.cancel());
+        assertEquals(JobResult.ResultType.CANCELLED, handle.getResult().get(10, TimeUnit.SECONDS).getResultType());
+        assertEquals(Job.Status.CANCELLED, provider.getJob(handle.getJobId()).getStatus());
+        assertFalse(handle.cancel());
+
+        release.countDown();
+        jobManager.submitJobAsync(new NoOpJob("s", "a.o2", "DATASET")).getResult().get(10, TimeUnit.SECONDS);
+        assertNull(runs.get(handle.getJobId()));
+    }
+
+    @Test
+    public void testSuperseded() throws Exception {
+        jobManager.submitJobAsync(new NoOpJob("s", "a.blocking", "DATASET"));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        //both wait in the queue, the older one is dropped when it leaves it
+        JobHandle superseded = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        JobHandle latest = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        release.countDown();
+
+        assertEquals(JobResult.ResultType.CANCELLED, superseded.getResult().get(10, TimeUnit.SECONDS).getResultType());
+        assertEquals(JobResult.ResultType.SUCCEEDED, latest.getResult().get(10, TimeUnit.SECONDS).getResultType());
+        assertNull(runs.get(superseded.getJobId()));
+        assertEquals(1, (int) runs.get(latest.getJobId()));
+    }
+
+    @Test
+    public void testEndedInError() throws Exception {
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.error", "DATASET"));
+        try {
+            handle.getResult().get(10, TimeUnit.SECONDS);
+            fail("The job should end in error");
+        }
+        catch (ExecutionException ex) {
+            assertEquals(JobException.DSSJobErrorCode.INVALID_INPUT, ((JobException) ex.getCause()).getErrorCode());
+        }
+        //saved before the handle is failed
+        assertEquals(Job.Status.ERROR, provider.getJob(handle.getJobId()).getStatus());
+        assertEquals(Job.Status.ERROR, handle.getStatus());
+    }
+
+    @Test
+    public void testStopped() throws Exception {
+        jobManager.stop();
+        jobManager = newJobManager(new JobRetryPolicy(2, 1, 1, TimeUnit.DAYS));
+        //the job fails, then waits up to a day for its retry
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.failed", "DATASET"));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (runs.get(handle.getJobId()) == null || handle.getStatus() != Job.Status.NOT_STARTED) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        assertFalse(handle.isDone());
+        jobManager.stop();
+        assertFailed(handle, JobException.DSSJobErrorCode.INTERRUPTED);
+    }
+
+    @Test
+    public void testReclaimedByThisNode() throws Exception {
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.reclaimed", "DATASET"));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        //no daemon timer renews the lease
+        Thread.sleep(2 * LEASE_DURATION);
+        assertEquals(1, jobManager.reapExpiredLeases());
+        assertFailed(handle, JobException.DSSJobErrorCode.LEASE_LOST);
+
+        //run again without a handle
+        awaitStatus(handle.getJobId(), Job.Status.SUCCEEDED);
+        assertEquals(2, (int) runs.get(handle.getJobId()));
+    }
+
+    @Test
+    public void testReclaimedByAnotherNode() throws Exception {
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.reclaimed", "DATASET"));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        Thread.sleep(2 * LEASE_DURATION);
+        Job stored = provider.getJob(handle.getJobId());
+        assertEquals(1, provider.reclaimJob(stored, Job.Status.NOT_STARTED, new Timestamp(System.currentTimeMillis())));
+        assertFalse(handle.isDone());
+
+        //seen by the processor once the statuses are polled, it gives up the job
+        jobManager.pollJobStatuses();
+        assertFailed(handle, JobException.DSSJobErrorCode.LEASE_LOST);
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(handle.getJobId()).getStatus());
+    }
+
+    private JobManager newJobManager(JobRetryPolicy retryPolicy) {
+        JobManagerConfig config = new JobManagerConfig(1, 1, 100);
+        config.setJmxEnabled(false);
+        config.setLeaseDuration(LEASE_DURATION);
+        config.setRequeueOrphanedJobs(true);
+        config.setRetryPolicy(Job.JobType.NOOP, retryPolicy);
+        config.registerProcessor(new ScriptedJobProcessorProvider(this::execute));
+        return JobTestSupport.newJobManager(config, provider);
+    }
+
+    private JobResult execute(AbstractJobProcessor<Job> processor, Job job) throws JobException {
+        runs.merge(job.getJobId(), 1, Integer::sum);
+        switch (job.getTwopartName()) {
+            case "a.blocking":
+                running.countDown();
+                await(release);
+                return new JobResult(null, JobResult.ResultType.SUCCEEDED);
+            case "a.reclaimed":
+                if (runs.get(job.getJobId()) > 1) {
+                    return new JobResult(null, JobResult.ResultType.SUCCEEDED);
+                }
+                //runs until it sees the job reclaimed
+                running.countDown();
+                long deadline = System.currentTimeMillis() + 10000;
+                while (!processor.checkForForceCancelled(job) && System.currentTimeMillis() < deadline) {
+                    sleep(5);
+                }
+                return new JobResult(null, JobResult.ResultType.CANCELLED);
+            case "a.failed":
+                return new JobResult("failed", JobResult.ResultType.FAILED);
+            case "a.error":
+                throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "permanent");
+            default:
+                return new JobResult("done", JobResult.ResultType.SUCCEEDED);
+        }
+    }
+
+    private void awaitStatus(String jobId, Job.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (provider.getJob(jobId).getStatus() != status) {
+            assertTrue("status " + provider.getJob(jobId).getStatus(), System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void assertFailed(JobHandle handle, JobException.DSSJobErrorCode errorCode) throws Exception {
+        try {
+            handle.getResult().get(10, TimeUnit.SECONDS);
+            fail("The handle should fail");
+        }
+        catch (ExecutionException ex) {
+            assertEquals(errorCode, ((JobException) ex.getCause()).getErrorCode());
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
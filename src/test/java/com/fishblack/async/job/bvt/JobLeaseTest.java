@@ -0,0 +1,136 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The job leases and fencing tokens of the memory and the DB job data providers.
+ */
+@RunWith(Parameterized.class)
+public class JobLeaseTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> providers() {
+        return Arrays.asList(new Object[][] {{"memory"}, {"db"}});
+    }
+
+    private final String providerName;
+    private JobDataProvider provider;
+
+    public JobLeaseTest(String providerName) {
+        this.providerName = providerName;
+    }
+
+    @Before
+    public void setUp() throws JobException {
+        if ("db".equals(providerName)) {
+            DBJobDataProvider db = new DBJobDataProvider("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+            db.createSchema();
+            provider = db;
+        }
+        else {
+            provider = new MemJobDataProvider();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (provider instanceof DBJobDataProvider) {
+            ((DBJobDataProvider) provider).close();
+        }
+    }
+
+    @Test
+    public void testRenewOnlyTheGivenJobs() throws JobException {
+        long now = System.currentTimeMillis();
+        Job renewed = start(provider.createJob(newJob("a.o1")), "node1", now + 60000);
+        Job orphan = start(provider.createJob(newJob("a.o2")), "node1", now + 60000);
+        Job other = start(provider.createJob(newJob("a.o3")), "node2", now + 60000);
+
+        Timestamp expiry = new Timestamp(now + 120000);
+        assertEquals(1, provider.renewLeases("node1", Arrays.asList(renewed.getJobId(), other.getJobId()), expiry));
+        assertEquals(expiry.getTime(), provider.getJob(renewed.getJobId()).getLeaseExpiry().getTime());
+        assertEquals(now + 60000, provider.getJob(orphan.getJobId()).getLeaseExpiry().getTime());
+        assertEquals(now + 60000, provider.getJob(other.getJobId()).getLeaseExpiry().getTime());
+        assertEquals(0, provider.renewLeases("node1", Collections.<String>emptyList(), expiry));
+    }
+
+    @Test
+    public void testFinishedJobIsNotRenewed() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")), "node1", System.currentTimeMillis() + 60000);
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+        assertNull(provider.getJob(job.getJobId()).getLeaseExpiry());
+        assertEquals(0, provider.renewLeases("node1", Collections.singletonList(job.getJobId()),
+                new Timestamp(System.currentTimeMillis() + 60000)));
+        assertNull(provider.getJob(job.getJobId()).getLeaseExpiry());
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimedAndStaleTokenRejected() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")), "node1", System.currentTimeMillis() - 1000);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Job> expired = provider.getExpiredLeaseJobs(now, 10);
+        assertEquals(1, expired.size());
+        Job reclaimed = expired.get(0);
+        assertEquals(job.getJobId(), reclaimed.getJobId());
+
+        assertEquals(1, provider.reclaimJob(reclaimed, Job.Status.NOT_STARTED, now));
+        assertTrue(reclaimed.getFencingToken() > job.getFencingToken());
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(job.getJobId()).getStatus());
+        assertTrue(provider.getExpiredLeaseJobs(now, 10).isEmpty());
+
+        //the node which lost the lease can neither renew nor end the job anymore
+        assertEquals(0, provider.renewLeases("node1", Collections.singletonList(job.getJobId()),
+                new Timestamp(System.currentTimeMillis() + 60000)));
+        assertEquals(0, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(job.getJobId()).getStatus());
+
+        //the new owner starts it with the new token
+        start(reclaimed, "node2", System.currentTimeMillis() + 60000);
+        assertEquals(0, provider.updateJobStatus(job, Job.Status.FAILED));
+        assertEquals(1, provider.updateJobStatus(reclaimed, Job.Status.SUCCEEDED));
+        assertEquals(Job.Status.SUCCEEDED, provider.getJob(job.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testRenewedLeaseIsNotReclaimed() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")), "node1", System.currentTimeMillis() - 1000);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Job expired = provider.getExpiredLeaseJobs(now, 10).get(0);
+
+        assertEquals(1, provider.renewLeases("node1", Collections.singletonList(job.getJobId()),
+                new Timestamp(System.currentTimeMillis() + 60000)));
+        assertEquals(0, provider.reclaimJob(expired, Job.Status.NOT_STARTED, now));
+        assertEquals(Job.Status.RUNNING, provider.getJob(job.getJobId()).getStatus());
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+
+    private Job start(Job job, String ownerId, long leaseExpiry) throws JobException {
+        job.setOwnerId(ownerId);
+        job.setLeaseExpiry(new Timestamp(leaseExpiry));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        return job;
+    }
+}
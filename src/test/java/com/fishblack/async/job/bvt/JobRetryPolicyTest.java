@@ -0,0 +1,145 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobHandle;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobManagerConfig;
+import com.fishblack.async.job.JobResult;
+import com.fishblack.async.job.JobRetryPolicy;
+import com.fishblack.async.job.JobTestSupport;
+import com.fishblack.async.job.ScriptedJobProcessorProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import com.fishblack.async.job.noop.NoOpJob;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The retry policy, and the retries of the jobs run by a job manager.
+ */
+public class JobRetryPolicyTest {
+
+    private static final int DRAWS = 1000;
+
+    private JobManager jobManager;
+
+    @After
+    public void tearDown() {
+        if (jobManager != null) {
+            jobManager.stop();
+        }
+    }
+
+    @Test
+    public void testDelayWithinBackoffBound() {
+        JobRetryPolicy policy = new JobRetryPolicy(10, 100, 1000, TimeUnit.MILLISECONDS);
+        long[] bounds = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= bounds.length; attempt++) {
+            long max = 0;
+            for (int i = 0; i < DRAWS; i++) {
+                long delay = policy.nextDelay(attempt, TimeUnit.MILLISECONDS);
+                assertTrue("delay " + delay + " of attempt " + attempt, delay >= 0 && delay < bounds[attempt - 1]);
+                max = Math.max(max, delay);
+            }
+            //full jitter spreads the delays over the whole bound
+            assertTrue("max delay " + max + " of attempt " + attempt, max >= bounds[attempt - 1] / 2);
+        }
+    }
+
+    @Test
+    public void testDelayCappedAtHighAttempts() {
+        JobRetryPolicy policy = new JobRetryPolicy(Integer.MAX_VALUE, 100, 1000, TimeUnit.MILLISECONDS);
+        JobRetryPolicy huge = new JobRetryPolicy(Integer.MAX_VALUE, Long.MAX_VALUE / 4, Long.MAX_VALUE / 2, TimeUnit.MILLISECONDS);
+        for (int attempt : new int[] {10, 62, 63, 64, 65, 1000, Integer.MAX_VALUE}) {
+            for (int i = 0; i < DRAWS; i++) {
+                long delay = policy.nextDelay(attempt, TimeUnit.MILLISECONDS);
+                assertTrue("delay " + delay + " of attempt " + attempt, delay >= 0 && delay < 1000);
+                delay = huge.nextDelay(attempt, TimeUnit.MILLISECONDS);
+                assertTrue("delay " + delay + " of attempt " + attempt, delay >= 0 && delay < Long.MAX_VALUE / 2);
+            }
+        }
+        assertEquals(0, new JobRetryPolicy(3, 0, 0, TimeUnit.MILLISECONDS).nextDelay(Integer.MAX_VALUE, TimeUnit.MILLISECONDS));
+        assertEquals(0, policy.nextDelay(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRetryableErrors() {
+        JobRetryPolicy policy = new JobRetryPolicy(3, 0, 0, TimeUnit.MILLISECONDS);
+        for (JobException.DSSJobErrorCode code : JobException.DSSJobErrorCode.values()) {
+            assertEquals(code.name(), JobRetryPolicy.DEFAULT_RETRYABLE_ERRORS.contains(code),
+                    policy.isRetryable(new JobException(code, "error")));
+        }
+        assertFalse(policy.isRetryable(new IllegalStateException("error")));
+        assertFalse(policy.isRetryable(null));
+
+        Job job = new NoOpJob("s", "a.o1", "DATASET");
+        assertTrue(policy.hasAttemptsLeft(job));
+        job.setAttempt(3);
+        assertFalse(policy.hasAttemptsLeft(job));
+        assertFalse(JobRetryPolicy.NONE.hasAttemptsLeft(new NoOpJob("s", "a.o1", "DATASET")));
+    }
+
+    @Test
+    public void testFailedResultIsRetriedUpToMaxAttempts() throws Exception {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        ScriptedJobProcessorProvider processors = new ScriptedJobProcessorProvider(
+                (processor, job) -> new JobResult("attempt " + job.getAttempt(), JobResult.ResultType.FAILED));
+        jobManager = newJobManager(provider, processors);
+
+        JobHandle handle = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        JobResult result = handle.getResult().get(10, TimeUnit.SECONDS);
+        assertEquals(JobResult.ResultType.FAILED, result.getResultType());
+        assertEquals("attempt 3", result.getResultData());
+        assertEquals(3, processors.getRunCount());
+        Job stored = provider.getJob(handle.getJobId());
+        assertEquals(Job.Status.FAILED, stored.getStatus());
+        assertEquals(3, stored.getAttempt());
+    }
+
+    @Test
+    public void testOnlyRetryableErrorsAreRetried() throws Exception {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        ScriptedJobProcessorProvider processors = new ScriptedJobProcessorProvider((processor, job) -> {
+            if ("a.o1".equals(job.getTwopartName()) && job.getAttempt() < 2) {
+                throw new JobException(JobException.DSSJobErrorCode.JOB_EXECUTION_FAILED, "transient");
+            }
+            if ("a.o2".equals(job.getTwopartName())) {
+                throw new JobException(JobException.DSSJobErrorCode.INVALID_INPUT, "permanent");
+            }
+            return new JobResult("done", JobResult.ResultType.SUCCEEDED);
+        });
+        jobManager = newJobManager(provider, processors);
+
+        JobHandle retried = jobManager.submitJobAsync(new NoOpJob("s", "a.o1", "DATASET"));
+        assertEquals(JobResult.ResultType.SUCCEEDED, retried.getResult().get(10, TimeUnit.SECONDS).getResultType());
+        assertEquals(2, provider.getJob(retried.getJobId()).getAttempt());
+
+        JobHandle ended = jobManager.submitJobAsync(new NoOpJob("s", "a.o2", "DATASET"));
+        try {
+            ended.getResult().get(10, TimeUnit.SECONDS);
+            fail("The job should end in error");
+        }
+        catch (ExecutionException ex) {
+            assertEquals(JobException.DSSJobErrorCode.INVALID_INPUT, ((JobException) ex.getCause()).getErrorCode());
+        }
+        assertEquals(Job.Status.ERROR, provider.getJob(ended.getJobId()).getStatus());
+        assertEquals(1, provider.getJob(ended.getJobId()).getAttempt());
+        assertEquals(3, processors.getRunCount());
+    }
+
+    private static JobManager newJobManager(MemJobDataProvider provider, ScriptedJobProcessorProvider processors) {
+        JobManagerConfig config = new JobManagerConfig(2, 2, 100);
+        config.setJmxEnabled(false);
+        config.setRetryPolicy(Job.JobType.NOOP, new JobRetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS));
+        config.registerProcessor(processors);
+        return JobTestSupport.newJobManager(config, provider);
+    }
+}
@@ -0,0 +1,149 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The job retries of the memory and the DB job data providers.
+ */
+@RunWith(Parameterized.class)
+public class JobRetryTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> providers() {
+        return Arrays.asList(new Object[][] {{"memory"}, {"db"}});
+    }
+
+    private final String providerName;
+    private JobDataProvider provider;
+
+    public JobRetryTest(String providerName) {
+        this.providerName = providerName;
+    }
+
+    @Before
+    public void setUp() throws JobException {
+        if ("db".equals(providerName)) {
+            DBJobDataProvider db = new DBJobDataProvider("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+            db.createSchema();
+            provider = db;
+        }
+        else {
+            provider = new MemJobDataProvider();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (provider instanceof DBJobDataProvider) {
+            ((DBJobDataProvider) provider).close();
+        }
+    }
+
+    @Test
+    public void testAttemptIsPersisted() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")));
+        long token = job.getFencingToken();
+        Timestamp retryTime = new Timestamp(System.currentTimeMillis() + 60000);
+        assertEquals(1, retry(job, 2, retryTime));
+        assertTrue(job.getFencingToken() > token);
+
+        Job stored = provider.getJob(job.getJobId());
+        assertEquals(Job.Status.NOT_STARTED, stored.getStatus());
+        assertEquals(2, stored.getAttempt());
+        assertEquals(retryTime.getTime(), stored.getRetryTime().getTime());
+        assertNull(stored.getLeaseExpiry());
+        assertEquals(job.getFencingToken(), stored.getFencingToken());
+    }
+
+    @Test
+    public void testStaleTokenIsNotRetried() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")), System.currentTimeMillis() - 1000);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Job reclaimed = provider.getJob(job.getJobId());
+        assertEquals(1, provider.reclaimJob(reclaimed, Job.Status.NOT_STARTED, now));
+
+        //the node which lost the lease can not retry the job anymore
+        assertEquals(0, retry(job, 2, now));
+        Job stored = provider.getJob(job.getJobId());
+        assertEquals(1, stored.getAttempt());
+        assertNull(stored.getRetryTime());
+        assertEquals(reclaimed.getFencingToken(), stored.getFencingToken());
+    }
+
+    @Test
+    public void testJobRequestedToCancelIsNotRetried() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.REQUEST_FOR_CANCEL));
+        assertEquals(0, retry(job, 2, new Timestamp(System.currentTimeMillis())));
+        Job stored = provider.getJob(job.getJobId());
+        assertEquals(Job.Status.REQUEST_FOR_CANCEL, stored.getStatus());
+        assertEquals(1, stored.getAttempt());
+
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.CANCELLED));
+        assertEquals(0, retry(job, 2, new Timestamp(System.currentTimeMillis())));
+        assertEquals(Job.Status.CANCELLED, provider.getJob(job.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testJobWaitingForRetryTimeIsNotClaimed() throws JobException {
+        Job job = start(provider.createJob(newJob("a.o1")));
+        assertEquals(1, retry(job, 2, new Timestamp(System.currentTimeMillis() + 60000)));
+        assertTrue(claim().isEmpty());
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(job.getJobId()).getStatus());
+
+        Job due = start(provider.createJob(newJob("a.o2")));
+        assertEquals(1, retry(due, 2, new Timestamp(System.currentTimeMillis() - 1000)));
+        List<Job> claimed = claim();
+        assertEquals(1, claimed.size());
+        assertEquals(due.getJobId(), claimed.get(0).getJobId());
+        assertEquals(2, claimed.get(0).getAttempt());
+    }
+
+    private int retry(Job job, int attempt, Timestamp retryTime) throws JobException {
+        Job retried = new Job(job);
+        retried.setAttempt(attempt);
+        retried.setRetryTime(retryTime);
+        int count = provider.retryJob(retried);
+        job.setFencingToken(retried.getFencingToken());
+        return count;
+    }
+
+    private List<Job> claim() throws JobException {
+        return provider.claimJobs("node2", new Timestamp(System.currentTimeMillis() + 60000),
+                Collections.singletonList(Job.JobType.NOOP), 10);
+    }
+
+    private Job start(Job job) throws JobException {
+        return start(job, System.currentTimeMillis() + 60000);
+    }
+
+    private Job start(Job job, long leaseExpiry) throws JobException {
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(leaseExpiry));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        return job;
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+}
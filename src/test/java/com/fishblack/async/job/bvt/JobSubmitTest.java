@@ -0,0 +1,193 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobManagerConfig;
+import com.fishblack.async.job.JobResult;
+import com.fishblack.async.job.JobSubmitResult;
+import com.fishblack.async.job.JobTestSupport;
+import com.fishblack.async.job.ScriptedJobProcessorProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.exception.JobRejectedException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import com.fishblack.async.job.noop.NoOpJob;
+import com.fishblack.async.job.noop.NoOpJobCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The admission control of the job submissions, with a bulkhead running one job and queueing two.
+ */
+public class JobSubmitTest {
+
+    private static final int QUEUE_SIZE = 2;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private MemJobDataProvider provider;
+    private JobManager jobManager;
+    private ExecutorService submitter;
+
+    @Before
+    public void setUp() {
+        provider = new MemJobDataProvider();
+        JobManagerConfig config = new JobManagerConfig(1, 1, 100);
+        config.setJmxEnabled(false);
+        config.setBulkhead(Job.JobType.NOOP, 1, QUEUE_SIZE);
+        config.registerProcessor(new ScriptedJobProcessorProvider((processor, job) -> {
+            started.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new JobResult(null, JobResult.ResultType.SUCCEEDED);
+        }));
+        jobManager = JobTestSupport.newJobManager(config, provider);
+        submitter = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        submitter.shutdownNow();
+        jobManager.stop();
+    }
+
+    @Test
+    public void testRejectedJobIsNotPersisted() throws Exception {
+        fillBulkhead();
+        try {
+            jobManager.submitJob(newJob(), new NoOpJobCallback());
+            fail("The job should be rejected");
+        }
+        catch (JobRejectedException ex) {
+            assertEquals(JobException.DSSJobErrorCode.JOB_REJECTED, ex.getErrorCode());
+            //rejections are expected under overload, so they are cheap
+            assertEquals(0, ex.getStackTrace().length);
+        }
+        try {
+            jobManager.submitJobAsync(newJob());
+            fail("The job should be rejected");
+        }
+        catch (JobRejectedException ex) {
+            assertEquals(0, ex.getStackTrace().length);
+        }
+        assertEquals(1 + QUEUE_SIZE, countJobs());
+    }
+
+    @Test
+    public void testTrySubmitTimesOut() throws Exception {
+        fillBulkhead();
+        long startTime = System.nanoTime();
+        assertFalse(jobManager.trySubmitJob(newJob(), new NoOpJobCallback(), 200, TimeUnit.MILLISECONDS));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        assertTrue("waited " + waited + " ms", waited >= 190 && waited < 5000);
+        assertEquals(1 + QUEUE_SIZE, countJobs());
+
+        //admitted once the running job finishes and a queued one leaves the queue
+        Future<Boolean> submitted = submitter.submit(() -> jobManager.trySubmitJob(newJob(), new NoOpJobCallback(), 10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(submitted.isDone());
+        release.countDown();
+        assertTrue(submitted.get(10, TimeUnit.SECONDS));
+        assertEquals(2 + QUEUE_SIZE, countJobs());
+    }
+
+    @Test
+    public void testSubmitBlockingWaitsForRoom() throws Exception {
+        fillBulkhead();
+        Future<?> submitted = submitter.submit(() -> {
+            jobManager.submitJobBlocking(newJob(), new NoOpJobCallback());
+            return null;
+        });
+        Thread.sleep(200);
+        assertFalse(submitted.isDone());
+        assertEquals(1 + QUEUE_SIZE, countJobs());
+        release.countDown();
+        submitted.get(10, TimeUnit.SECONDS);
+        assertEquals(2 + QUEUE_SIZE, countJobs());
+    }
+
+    @Test
+    public void testSubmitJobsAcceptsEachJobOnItsOwn() throws Exception {
+        jobManager.submitJob(newJob(), new NoOpJobCallback());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        List<Job> jobs = Arrays.asList(newJob(), newJob(), newJob());
+        List<JobSubmitResult> results = jobManager.submitJobs(jobs, new NoOpJobCallback());
+
+        assertEquals(jobs.size(), results.size());
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            JobSubmitResult result = results.get(i);
+            assertTrue(result.isAccepted());
+            assertNull(result.getError());
+            assertEquals(jobs.get(i).getTwopartName(), result.getJob().getTwopartName());
+            assertEquals(Job.Status.NOT_STARTED, provider.getJob(result.getJob().getJobId()).getStatus());
+        }
+        JobSubmitResult rejected = results.get(QUEUE_SIZE);
+        assertFalse(rejected.isAccepted());
+        assertTrue(rejected.getError() instanceof JobRejectedException);
+        assertEquals(1 + QUEUE_SIZE, countJobs());
+    }
+
+    @Test
+    public void testJobsRejectedByShutDownBulkheadAreCancelled() throws Exception {
+        JobTestSupport.shutdown(jobManager.getBulkhead(Job.JobType.NOOP));
+        List<JobSubmitResult> results = jobManager.submitJobs(Arrays.asList(newJob(), newJob()), new NoOpJobCallback());
+        for (JobSubmitResult result : results) {
+            assertFalse(result.isAccepted());
+            assertEquals(JobException.DSSJobErrorCode.JOB_REJECTED, result.getError().getErrorCode());
+            assertEquals(Job.Status.CANCELLED, provider.getJob(result.getJob().getJobId()).getStatus());
+        }
+        try {
+            jobManager.submitJob(newJob(), new NoOpJobCallback());
+            fail("The job should be rejected");
+        }
+        catch (JobException ex) {
+            assertEquals(JobException.DSSJobErrorCode.JOB_REJECTED, ex.getErrorCode());
+        }
+        //no job is left not started without a task to run it
+        provider.forEachJob(job -> assertEquals(Job.Status.CANCELLED, job.getStatus()));
+        assertEquals(3, countJobs());
+    }
+
+    /**
+     * Submit a job which keeps the thread of the bulkhead busy, then as many as the queue holds.
+     */
+    private void fillBulkhead() throws JobException, InterruptedException {
+        jobManager.submitJob(newJob(), new NoOpJobCallback());
+        //the permit of the job is given back once it left the queue
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < QUEUE_SIZE; i++) {
+            jobManager.submitJob(newJob(), new NoOpJobCallback());
+        }
+    }
+
+    private int countJobs() {
+        AtomicInteger count = new AtomicInteger();
+        provider.forEachJob(job -> count.incrementAndGet());
+        return count.get();
+    }
+
+    private static Job newJob() {
+        return new NoOpJob("s", "a.o" + SEQUENCE.incrementAndGet(), "DATASET");
+    }
+}
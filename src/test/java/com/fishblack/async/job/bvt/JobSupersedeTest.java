@@ -0,0 +1,102 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobConstants;
+import com.fishblack.async.job.JobHandle;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobManagerConfig;
+import com.fishblack.async.job.JobResult;
+import com.fishblack.async.job.JobTestSupport;
+import com.fishblack.async.job.ScriptedJobProcessorProvider;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import com.fishblack.async.job.noop.NoOpJob;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The dispatch of a job superseding the running job of its object, with the memory job data provider.
+ */
+public class JobSupersedeTest {
+
+    private static final int OBJECT_COUNT = 4;
+
+    private JobManager jobManager;
+
+    @After
+    public void tearDown() {
+        if (jobManager != null) {
+            jobManager.stop();
+        }
+    }
+
+    @Test
+    public void testSupersedingJobIsDispatchedOnceTheRunningJobEnds() throws Exception {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        Map<String, AtomicInteger> runCounts = new ConcurrentHashMap<>();
+        Map<String, Boolean> superseded = new ConcurrentHashMap<>();
+        CountDownLatch running = new CountDownLatch(OBJECT_COUNT);
+        ScriptedJobProcessorProvider processors = new ScriptedJobProcessorProvider((processor, job) -> {
+            runCounts.computeIfAbsent(job.getJobId(), id -> new AtomicInteger()).incrementAndGet();
+            if (superseded.putIfAbsent(job.getTwopartName(), Boolean.TRUE) != null) {
+                return new JobResult(null, JobResult.ResultType.SUCCEEDED);
+            }
+            //the first job of an object runs until the next one requests it to cancel
+            running.countDown();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!processor.checkForRequestForCancel(job) && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(5);
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return new JobResult(null, JobResult.ResultType.CANCELLED);
+        });
+        JobManagerConfig config = new JobManagerConfig(2 * OBJECT_COUNT, 2 * OBJECT_COUNT, 100);
+        config.setJmxEnabled(false);
+        config.registerProcessor(processors);
+        jobManager = JobTestSupport.newJobManager(config, provider);
+
+        List<JobHandle> firstJobs = new ArrayList<>();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            firstJobs.add(jobManager.submitJobAsync(new NoOpJob("s", "a.o" + i, "DATASET")));
+        }
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+
+        long startTime = System.nanoTime();
+        List<JobHandle> nextJobs = new ArrayList<>();
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            nextJobs.add(jobManager.submitJobAsync(new NoOpJob("s", "a.o" + i, "DATASET")));
+        }
+        for (JobHandle handle : nextJobs) {
+            assertEquals(JobResult.ResultType.SUCCEEDED, handle.getResult().get(10, TimeUnit.SECONDS).getResultType());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        //woken up by the end of the running job rather than by the fallback submission
+        assertTrue("dispatched in " + elapsed + " ms", elapsed < JobConstants.JOB_SUPERSEDE_FALLBACK_TIMEOUT / 5);
+
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            JobHandle first = firstJobs.get(i);
+            JobHandle next = nextJobs.get(i);
+            assertEquals(JobResult.ResultType.CANCELLED, first.getResult().get(10, TimeUnit.SECONDS).getResultType());
+            assertEquals(Job.Status.CANCELLED, provider.getJob(first.getJobId()).getStatus());
+            assertEquals(Job.Status.SUCCEEDED, provider.getJob(next.getJobId()).getStatus());
+            assertEquals(1, runCounts.get(first.getJobId()).get());
+            assertEquals(1, runCounts.get(next.getJobId()).get());
+        }
+        assertEquals(2 * OBJECT_COUNT, processors.getRunCount());
+    }
+}
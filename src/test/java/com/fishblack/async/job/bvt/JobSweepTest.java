@@ -0,0 +1,272 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobArchiver;
+import com.fishblack.async.job.JobDataProvider;
+import com.fishblack.async.job.JobManager;
+import com.fishblack.async.job.JobManagerConfig;
+import com.fishblack.async.job.JobResult;
+import com.fishblack.async.job.JobTestSupport;
+import com.fishblack.async.job.ScriptedJobProcessorProvider;
+import com.fishblack.async.job.db.DBJobDataProvider;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import com.fishblack.async.job.noop.NoOpJob;
+import com.fishblack.async.job.noop.NoOpJobCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The sweep of the jobs by the job manager, with the memory and the DB job data providers.
+ */
+@RunWith(Parameterized.class)
+public class JobSweepTest {
+
+    private static final int BATCH_SIZE = 3;
+    private static final int JOB_COUNT = 7;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> providers() {
+        return Arrays.asList(new Object[][] {{"memory"}, {"db"}});
+    }
+
+    private final String providerName;
+    private final List<Integer> archivedBatches = new CopyOnWriteArrayList<>();
+    private JobDataProvider provider;
+    private JobManager jobManager;
+    private Timer timer;
+
+    public JobSweepTest(String providerName) {
+        this.providerName = providerName;
+    }
+
+    @Before
+    public void setUp() throws JobException {
+        if ("db".equals(providerName)) {
+            DBJobDataProvider db = new DBJobDataProvider("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+            db.createSchema();
+            provider = db;
+        }
+        else {
+            provider = new MemJobDataProvider();
+        }
+        timer = new Timer(true);
+    }
+
+    @After
+    public void tearDown() {
+        timer.cancel();
+        if (jobManager != null) {
+            jobManager.stop();
+        }
+        if (provider instanceof DBJobDataProvider) {
+            ((DBJobDataProvider) provider).close();
+        }
+    }
+
+    @Test
+    public void testSweepInBoundedBatches() throws Exception {
+        jobManager = newJobManager(1, 0, null);
+        List<Job> finished = createFinishedJobs();
+        Job queued = provider.createJob(newJob("b.o1"));
+        Thread.sleep(20);
+
+        assertEquals(JOB_COUNT, jobManager.sweepJobs());
+        assertEquals(Arrays.asList(BATCH_SIZE, BATCH_SIZE, JOB_COUNT - 2 * BATCH_SIZE), archivedBatches);
+        for (Job job : finished) {
+            assertNull(provider.getJob(job.getJobId()));
+        }
+        assertNotNull(provider.getJob(queued.getJobId()));
+        assertEquals(0, jobManager.sweepJobs());
+    }
+
+    @Test
+    public void testRetainedJobsAreKept() throws Exception {
+        jobManager = newJobManager(TimeUnit.HOURS.toMillis(1), 0, null);
+        List<Job> finished = createFinishedJobs();
+        assertEquals(0, jobManager.sweepJobs());
+        for (Job job : finished) {
+            assertNotNull(provider.getJob(job.getJobId()));
+        }
+    }
+
+    @Test
+    public void testJobsAreArchivedBeforeDeletion() throws Exception {
+        List<String> missing = new CopyOnWriteArrayList<>();
+        jobManager = newJobManager(1, 0, jobs -> {
+            for (Job job : jobs) {
+                if (provider.getJob(job.getJobId()) == null) {
+                    missing.add(job.getJobId());
+                }
+            }
+        });
+        createFinishedJobs();
+        Thread.sleep(20);
+        assertEquals(JOB_COUNT, jobManager.sweepJobs());
+        assertTrue(missing.isEmpty());
+    }
+
+    @Test
+    public void testJobsAreKeptWhenTheArchiverFails() throws Exception {
+        jobManager = newJobManager(1, 0, jobs -> {
+            throw new IllegalStateException("archive unavailable");
+        });
+        List<Job> finished = createFinishedJobs();
+        Thread.sleep(20);
+        try {
+            jobManager.sweepJobs();
+            fail("The sweep should fail");
+        }
+        catch (JobException ex) {
+            assertEquals(JobException.DSSJobErrorCode.CLEAN_JOB_FAILED, ex.getErrorCode());
+        }
+        for (Job job : finished) {
+            assertNotNull(provider.getJob(job.getJobId()));
+        }
+    }
+
+    @Test
+    public void testOnlyUnseenRunningJobsAreCancelled() throws Exception {
+        jobManager = newJobManager(0, 500, null);
+        Job unseen = start(provider.createJob(newJob("a.o1")));
+        Job requested = start(provider.createJob(newJob("a.o2")));
+        assertEquals(1, provider.updateJobStatus(requested, Job.Status.REQUEST_FOR_CANCEL));
+        Job queued = provider.createJob(newJob("a.o3"));
+        Job succeeded = start(provider.createJob(newJob("a.o4")));
+        assertEquals(1, provider.updateJobStatus(succeeded, Job.Status.SUCCEEDED));
+        Job pinged = start(provider.createJob(newJob("a.o5")));
+        Thread.sleep(600);
+        provider.keepOnTrackJobs(Collections.singletonList(pinged.getJobId()));
+        Job seen = start(provider.createJob(newJob("a.o6")));
+
+        assertEquals(2, jobManager.sweepJobs());
+        assertEquals(Job.Status.CANCELLED, provider.getJob(unseen.getJobId()).getStatus());
+        assertEquals(Job.Status.CANCELLED, provider.getJob(requested.getJobId()).getStatus());
+        assertEquals(Job.Status.NOT_STARTED, provider.getJob(queued.getJobId()).getStatus());
+        assertEquals(Job.Status.SUCCEEDED, provider.getJob(succeeded.getJobId()).getStatus());
+        assertEquals(Job.Status.RUNNING, provider.getJob(pinged.getJobId()).getStatus());
+        assertEquals(Job.Status.RUNNING, provider.getJob(seen.getJobId()).getStatus());
+        //the node still running the cancelled job can not end it anymore
+        assertEquals(0, provider.updateJobStatus(unseen, Job.Status.SUCCEEDED));
+        assertEquals(Job.Status.CANCELLED, provider.getJob(unseen.getJobId()).getStatus());
+    }
+
+    @Test
+    public void testSweepGoesOnWhileBatchesComeBackFull() throws Exception {
+        jobManager = newJobManager(1, 0, null);
+        List<Job> finished = createFinishedJobs();
+        Thread.sleep(20);
+        JobTestSupport.newSweepTask(jobManager, timer).run();
+        assertEquals(Arrays.asList(BATCH_SIZE), archivedBatches);
+        //the next batches follow after short pauses rather than after the sweep interval
+        assertTrue(awaitSwept(finished, 5000));
+        assertEquals(Arrays.asList(BATCH_SIZE, BATCH_SIZE, JOB_COUNT - 2 * BATCH_SIZE), archivedBatches);
+    }
+
+    @Test
+    public void testSweepPausesWhileJobsAreQueued() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        jobManager = newJobManager(1, 0, null, (processor, job) -> {
+            running.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new JobResult(null, JobResult.ResultType.SUCCEEDED);
+        });
+        List<Job> finished = createFinishedJobs();
+        Thread.sleep(20);
+        //one job keeps the only thread busy, the other one waits in the queue
+        jobManager.submitJob(new NoOpJob("s", "b.o1", "DATASET"), new NoOpJobCallback());
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        jobManager.submitJob(new NoOpJob("s", "b.o2", "DATASET"), new NoOpJobCallback());
+        assertEquals(1, jobManager.getQueueDepth());
+
+        JobTestSupport.newSweepTask(jobManager, timer).run();
+        assertTrue(archivedBatches.isEmpty());
+        for (Job job : finished) {
+            assertNotNull(provider.getJob(job.getJobId()));
+        }
+        release.countDown();
+        assertTrue(awaitSwept(finished, 10000));
+    }
+
+    private boolean awaitSwept(List<Job> jobs, long timeout) throws JobException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        for (Job job : jobs) {
+            while (provider.getJob(job.getJobId()) != null) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(10);
+            }
+        }
+        return true;
+    }
+
+    private JobManager newJobManager(long retentionPeriod, long maxRunningTime, JobArchiver archiver) {
+        return newJobManager(retentionPeriod, maxRunningTime, archiver,
+                (processor, job) -> new JobResult(null, JobResult.ResultType.SUCCEEDED));
+    }
+
+    private JobManager newJobManager(long retentionPeriod, long maxRunningTime, JobArchiver archiver,
+                                     ScriptedJobProcessorProvider.Script script) {
+        JobManagerConfig config = new JobManagerConfig(1, 1, 100);
+        config.setJmxEnabled(false);
+        config.setRetentionPeriod(retentionPeriod);
+        config.setMaxRunningTime(maxRunningTime);
+        config.setSweepBatchSize(BATCH_SIZE);
+        config.setArchiver(jobs -> {
+            archivedBatches.add(jobs.size());
+            if (archiver != null) {
+                archiver.archive(jobs);
+            }
+        });
+        config.registerProcessor(new ScriptedJobProcessorProvider(script));
+        return JobTestSupport.newJobManager(config, provider);
+    }
+
+    private List<Job> createFinishedJobs() throws JobException {
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            Job job = start(provider.createJob(newJob("a.o" + i)));
+            assertEquals(1, provider.updateJobStatus(job, i % 2 == 0 ? Job.Status.SUCCEEDED : Job.Status.FAILED));
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    private Job start(Job job) throws JobException {
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        return job;
+    }
+
+    private static Job newJob(String twopartName) {
+        return new Job("s", twopartName, "DATASET", Job.JobType.NOOP);
+    }
+}
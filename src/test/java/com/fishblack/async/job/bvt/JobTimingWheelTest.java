@@ -0,0 +1,123 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.JobTimingWheel;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The hashed timing wheel of the delayed job submissions.
+ */
+public class JobTimingWheelTest {
+
+    private static final long TICK = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+    private JobTimingWheel wheel;
+
+    @After
+    public void tearDown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    public void testOrderAcrossRounds() throws InterruptedException {
+        //the wheel turns once in 80 ms, so the delays span several rounds and share buckets
+        wheel = newWheel();
+        long[] delays = {250, 30, 170, 90, 0, 330};
+        CountDownLatch done = new CountDownLatch(delays.length);
+        for (long delay : delays) {
+            wheel.schedule(record(String.valueOf(delay), done), delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0", "30", "90", "170", "250", "330"), dispatched);
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        wheel = newWheel();
+        CountDownLatch done = new CountDownLatch(1);
+        JobTimingWheel.JobTimeout cancelled = wheel.schedule(record("cancelled", done), 50, TimeUnit.MILLISECONDS);
+        JobTimingWheel.JobTimeout kept = wheel.schedule(record("kept", done), 100, TimeUnit.MILLISECONDS);
+        assertEquals(2, wheel.getPendingCount());
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, wheel.getPendingCount());
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("kept"), dispatched);
+        assertTrue(kept.isExpired());
+        assertFalse(kept.cancel());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void testDelayLongerThanOneRevolution() throws InterruptedException {
+        wheel = newWheel();
+        //prime the wheel, so that the delay below is not counted from a late start
+        wheel.schedule(() -> {}, 0, TimeUnit.MILLISECONDS);
+        long delay = TICK * WHEEL_SIZE * 3 + 15;
+        long[] elapsed = new long[1];
+        CountDownLatch done = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            done.countDown();
+        }, delay, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(String.valueOf(elapsed[0]), elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(delay));
+        assertTrue(String.valueOf(elapsed[0]), elapsed[0] < TimeUnit.MILLISECONDS.toNanos(delay + 1000));
+    }
+
+    @Test
+    public void testScheduleAfterStop() throws InterruptedException {
+        wheel = newWheel();
+        Runnable pending = record("pending", new CountDownLatch(1));
+        wheel.schedule(pending, 10, TimeUnit.SECONDS);
+        //the tasks not dispatched yet are given back
+        assertEquals(Collections.singletonList(pending), wheel.stop());
+
+        JobTimingWheel.JobTimeout dropped = wheel.schedule(record("dropped", new CountDownLatch(1)), 0, TimeUnit.MILLISECONDS);
+        assertTrue(dropped.isCancelled());
+        assertFalse(dropped.cancel());
+        //the dropped task is not counted, only the one given back by stop
+        assertEquals(1, wheel.getPendingCount());
+        Thread.sleep(TICK * 5);
+        assertTrue(dispatched.isEmpty());
+
+        //a wheel stopped before its start drops the tasks too
+        JobTimingWheel unused = newWheel();
+        assertTrue(unused.stop().isEmpty());
+        assertTrue(unused.schedule(() -> {}, 0, TimeUnit.MILLISECONDS).isCancelled());
+    }
+
+    private JobTimingWheel newWheel() {
+        return new JobTimingWheel("timing-wheel-test", TICK, TimeUnit.MILLISECONDS, WHEEL_SIZE, tasks -> {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        });
+    }
+
+    private Runnable record(String name, CountDownLatch done) {
+        return () -> {
+            dispatched.add(name);
+            done.countDown();
+        };
+    }
+}
@@ -0,0 +1,77 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The running job index of the memory job data provider.
+ */
+public class MemJobDataProviderTest {
+
+    private static final int ROUNDS = 50000;
+    private static final int LOOKUP_THREADS = 3;
+
+    @Test
+    public void testRunningJobSeenWhileStarting() throws Exception {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> lookups = new ArrayList<>();
+        for (int i = 0; i < LOOKUP_THREADS; i++) {
+            //look the job up while it is being started, seeing it either before or after the start
+            Thread lookup = new Thread(() -> {
+                while (!done.get()) {
+                    provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP);
+                }
+            });
+            lookup.setUncaughtExceptionHandler((thread, ex) -> failure.set(ex));
+            lookup.start();
+            lookups.add(lookup);
+        }
+        try {
+            for (int i = 0; i < ROUNDS; i++) {
+                Job job = provider.createJob(new Job("s", "a.o1", "DATASET", Job.JobType.NOOP));
+                job.setOwnerId("node1");
+                job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+                assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+
+                Job running = provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP);
+                assertNotNull("the running job was dropped from the index at round " + i, running);
+                assertEquals(job.getJobId(), running.getJobId());
+                assertEquals(1, provider.updateJobStatus(job, Job.Status.SUCCEEDED));
+                assertNull(provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP));
+            }
+        }
+        finally {
+            done.set(true);
+            for (Thread lookup : lookups) {
+                lookup.join();
+            }
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testRunningJobOfOtherObjectNotSeen() throws JobException {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        Job job = provider.createJob(new Job("s", "a.o1", "DATASET", Job.JobType.NOOP));
+        assertNull(provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP));
+        job.setOwnerId("node1");
+        job.setLeaseExpiry(new Timestamp(System.currentTimeMillis() + 60000));
+        assertEquals(1, provider.updateJobStatus(job, Job.Status.RUNNING));
+        assertNull(provider.getRunningJob("s", "a.o2", "DATASET", Job.JobType.NOOP));
+        assertEquals(job.getJobId(), provider.getRunningJob("s", "a.o1", "DATASET", Job.JobType.NOOP).getJobId());
+    }
+}
@@ -0,0 +1,55 @@
+package com.fishblack.async.job.bvt;
+
+import com.fishblack.async.job.Job;
+import com.fishblack.async.job.JobKey;
+import com.fishblack.async.job.exception.JobException;
+import com.fishblack.async.job.mem.MemJobDataProvider;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The retained heap per job of the memory provider, against the former store of {@link Job} copies by job id
+ * with the index of the latest jobs: the compact store must be at least 30% smaller.
+ */
+public class MemJobFootprintTest {
+
+    private static final int JOB_COUNT = 5000;
+    private static final String[] OBJECT_TYPES = {"DATASET", "DATAFLOW", "MODEL", "WORKBOOK"};
+
+    @Test
+    public void testCompactStoreFootprint() throws JobException {
+        MemJobDataProvider provider = new MemJobDataProvider();
+        Map<String, Job> formerJobs = new ConcurrentHashMap<>();
+        Map<JobKey, String> formerLatestJobIds = new ConcurrentHashMap<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < JOB_COUNT; i++) {
+            //new strings for every job, as when the jobs come from requests
+            Job job = new Job("stripe" + (i % 16), "schema.object" + i, OBJECT_TYPES[i % OBJECT_TYPES.length],
+                    Job.JobType.NOOP);
+            job.setNameSpace("namespace" + (i % 64));
+            job.setObjectName("object" + i);
+            provider.createJob(job);
+            provider.updateJobStatus(job, Job.Status.RUNNING);
+            provider.updateJobStatus(job, Job.Status.SUCCEEDED);
+
+            Job former = new Job(job);
+            former.setRequestTime(new Timestamp(now));
+            former.setStartTime(new Timestamp(now));
+            former.setLastPingTime(new Timestamp(now));
+            former.setEndTime(new Timestamp(now));
+            former.setStatus(Job.Status.SUCCEEDED);
+            formerJobs.put(former.getJobId(), former);
+            formerLatestJobIds.put(JobKey.of(former), former.getJobId());
+        }
+        long formerPerJob = GraphLayout.parseInstance(formerJobs, formerLatestJobIds).totalSize() / JOB_COUNT;
+        long compactPerJob = GraphLayout.parseInstance(provider).totalSize() / JOB_COUNT;
+        String sizes = String.format("%d bytes per job against %d before", compactPerJob, formerPerJob);
+        assertTrue(sizes, compactPerJob * 10 <= formerPerJob * 7);
+    }
+}